@@ -2,8 +2,10 @@ package com.akiramenai.backend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class BackendMain {
   public static void main(String[] args) {
     SpringApplication.run(BackendMain.class, args);
@@ -5,8 +5,10 @@ import com.akiramenai.backend.repo.CompletedCourseItemsRepo;
 import com.akiramenai.backend.repo.InstructorInfosRepo;
 import com.akiramenai.backend.repo.LearnerInfosRepo;
 import com.akiramenai.backend.repo.PurchaseRepo;
+import com.akiramenai.backend.service.CourseProgressService;
 import com.akiramenai.backend.service.CourseService;
 import com.akiramenai.backend.service.LoginActivityService;
+import com.akiramenai.backend.service.SalesRollupService;
 import com.akiramenai.backend.service.UserService;
 import com.akiramenai.backend.utility.HttpResponseWriter;
 import com.akiramenai.backend.utility.IdParser;
@@ -33,6 +35,8 @@ import java.util.*;
 public class AnalyticsController {
   private final LoginActivityService loginActivityService;
   private final CompletedCourseItemsRepo completedCourseItemsRepo;
+  private final SalesRollupService salesRollupService;
+  private final CourseProgressService courseProgressService;
   HttpResponseWriter responseWriter = new HttpResponseWriter();
   JsonSerializer jsonSerializer = new JsonSerializer();
 
@@ -44,12 +48,16 @@ public class AnalyticsController {
       UserService userService,
       InstructorInfosRepo instructorInfosRepo,
       PurchaseRepo purchaseRepo,
-      LoginActivityService loginActivityService, CompletedCourseItemsRepo completedCourseItemsRepo) {
+      LoginActivityService loginActivityService, CompletedCourseItemsRepo completedCourseItemsRepo,
+      SalesRollupService salesRollupService,
+      CourseProgressService courseProgressService) {
     this.userService = userService;
     this.instructorInfosRepo = instructorInfosRepo;
     this.purchaseRepo = purchaseRepo;
     this.loginActivityService = loginActivityService;
     this.completedCourseItemsRepo = completedCourseItemsRepo;
+    this.salesRollupService = salesRollupService;
+    this.courseProgressService = courseProgressService;
   }
 
   private record DateRange(LocalDateTime start, LocalDateTime end) {
@@ -150,32 +158,23 @@ public class AnalyticsController {
       return;
     }
 
-    List<Purchase> purchasesMade = purchaseRepo.findAllByAuthorIdAndPurchaseTimestampBetween(
+    // the rollup has one row per course and day, so this reads at most (days * courses) rows, summed up per day
+    List<DailySalesTotal> dailyTotals = salesRollupService.getDailyTotals(
         UUID.fromString(userId),
-        dateRange.start,
-        dateRange.end
+        dateRange.start.toLocalDate(),
+        dateRange.end.toLocalDate()
     );
 
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     List<CourseSellDatapoint> generatedDatapoints = new ArrayList<>();
-    Map<String, double[]> count = new HashMap<>();
-    purchasesMade.forEach(p -> {
-      if (!count.containsKey(p.getPurchaseDate().format(formatter))) {
-        count.put(p.getPurchaseDate().format(formatter), new double[]{0.0, 0.0});
-      }
-
-      count.get(p.getPurchaseDate().format(formatter))[0]++;
-      count.get(p.getPurchaseDate().format(formatter))[1] += p.getPrice();
-    });
-
-    count.forEach((s, d) -> {
+    dailyTotals.forEach(dailyTotal -> {
       CourseSellDatapoint dp =
           CourseSellDatapoint
               .builder()
-              .date(s)
-              .coursesSold((long) d[0])
-              .revenueGenerated(d[1])
+              .date(dailyTotal.saleDate().format(formatter))
+              .coursesSold(dailyTotal.coursesSold())
+              .revenueGenerated(dailyTotal.revenueGenerated())
               .build();
 
       generatedDatapoints.add(dp);
@@ -190,12 +189,6 @@ public class AnalyticsController {
             .datapoints(generatedDatapoints)
             .build();
 
-    CoursesSoldResponse responseObj =
-        CoursesSoldResponse
-            .builder()
-            .coursesSold(purchasesMade.size())
-            .build();
-
     Optional<String> responseJson = jsonSerializer.serialize(res);
     if (responseJson.isEmpty()) {
       responseWriter.writeFailedResponse(response, "Failed to serialize JSON response.", HttpStatus.INTERNAL_SERVER_ERROR);
@@ -246,6 +239,30 @@ public class AnalyticsController {
   }
 
 
+  // The progress of every course the learner has (most recently active first), read from `course_progress`
+  @GetMapping("api/protected/get/course-progress")
+  public void getCourseProgress(
+      HttpServletRequest request,
+      HttpServletResponse response
+  ) {
+    UUID userId = UUID.fromString(request.getAttribute("userId").toString());
+    String accountType = request.getAttribute("accountType").toString();
+
+    if (!accountType.equalsIgnoreCase("Learner")) {
+      responseWriter.writeFailedResponse(response, "Only learners can access this API endpoint.", HttpStatus.NOT_FOUND);
+      return;
+    }
+
+    List<CleanedCourseProgress> progress = courseProgressService.getLearnerProgress(userId);
+    Optional<String> responseJson = jsonSerializer.serialize(new CourseProgressResponse(progress.size(), progress));
+    if (responseJson.isEmpty()) {
+      responseWriter.writeFailedResponse(response, "Failed to serialize JSON response.", HttpStatus.INTERNAL_SERVER_ERROR);
+      return;
+    }
+
+    responseWriter.writeOkResponse(response, responseJson.get(), HttpStatus.OK);
+  }
+
   @GetMapping("api/protected/get/user/login-activity")
   public void getLoginActivityMonth(
       HttpServletRequest request,
@@ -256,26 +273,16 @@ public class AnalyticsController {
   ) {
     UUID userId = UUID.fromString(request.getAttribute("userId").toString());
 
-    Optional<List<Integer>> activitiesToReturn;
-    if (monthNumber == null) {
-      activitiesToReturn = loginActivityService.getLoginActivityForYear(
-          userId,
-          LocalDate.of(year, 1, 1)
-      );
-    } else {
-      activitiesToReturn = loginActivityService.getLoginActivityForMonth(
-          userId,
-          LocalDate.of(year, monthNumber, 1)
-      );
-    }
+    Optional<MonthActivityResponse> activity = (monthNumber == null)
+        ? loginActivityService.getActivityForYear(userId, LocalDate.of(year, 1, 1))
+        : loginActivityService.getActivityForMonth(userId, LocalDate.of(year, monthNumber, 1));
 
-    if (activitiesToReturn.isEmpty()) {
+    if (activity.isEmpty()) {
       responseWriter.writeFailedResponse(response, "Login activity for this month not found.", HttpStatus.NOT_FOUND);
       return;
     }
 
-    MonthActivityResponse resp = new MonthActivityResponse(activitiesToReturn.get());
-    Optional<String> responseJson = jsonSerializer.serialize(resp);
+    Optional<String> responseJson = jsonSerializer.serialize(activity.get());
     if (responseJson.isEmpty()) {
       responseWriter.writeFailedResponse(response, "Failed to serialize JSON response.", HttpStatus.INTERNAL_SERVER_ERROR);
       return;
@@ -2,10 +2,13 @@ package com.akiramenai.backend.controller;
 
 import com.akiramenai.backend.model.*;
 import com.akiramenai.backend.repo.LearnerInfosRepo;
-import com.akiramenai.backend.repo.PurchaseRepo;
 import com.akiramenai.backend.service.CourseService;
+import com.akiramenai.backend.service.CourseViewCache;
+import com.akiramenai.backend.service.ImageVariantService;
+import com.akiramenai.backend.service.MediaBlobService;
 import com.akiramenai.backend.service.StorageService;
 import com.akiramenai.backend.service.UserService;
+import com.akiramenai.backend.utility.HttpFileWriter;
 import com.akiramenai.backend.utility.HttpResponseWriter;
 import com.akiramenai.backend.utility.IdParser;
 import com.akiramenai.backend.utility.JsonSerializer;
@@ -13,7 +16,6 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -21,10 +23,8 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -33,13 +33,12 @@ import java.util.UUID;
 @RestController
 public class CourseController {
   private final StorageService storageService;
-  private final PurchaseRepo purchaseRepo;
+  private final ImageVariantService imageVariantService;
+  private final CourseViewCache courseViewCache;
   HttpResponseWriter httpResponseWriter = new HttpResponseWriter();
+  HttpFileWriter httpFileWriter = new HttpFileWriter();
   JsonSerializer jsonSerializer = new JsonSerializer();
 
-  @Value("${application.default-values.media.picture-directory}")
-  private String pictureDirectory;
-
   @Value("${application.default-values.default-course-thumbnail-filename}")
   private String defaultCourseThumbnailFilename;
 
@@ -47,12 +46,13 @@ public class CourseController {
   private final LearnerInfosRepo learnerInfosRepo;
   private final CourseService courseService;
 
-  public CourseController(CourseService courseService, UserService userService, LearnerInfosRepo learnerInfosRepo, StorageService storageService, PurchaseRepo purchaseRepo) {
+  public CourseController(CourseService courseService, UserService userService, LearnerInfosRepo learnerInfosRepo, StorageService storageService, ImageVariantService imageVariantService, CourseViewCache courseViewCache) {
     this.courseService = courseService;
     this.userService = userService;
     this.learnerInfosRepo = learnerInfosRepo;
     this.storageService = storageService;
-    this.purchaseRepo = purchaseRepo;
+    this.imageVariantService = imageVariantService;
+    this.courseViewCache = courseViewCache;
   }
 
   private Sort.Direction getSortDirection(String sorting) {
@@ -75,71 +75,62 @@ public class CourseController {
       return;
     }
 
-    Optional<Course> targetCourse = courseService.getCourse(courseUUID.get());
-    if (targetCourse.isEmpty()) {
+    Optional<CourseViewCache.CourseView> courseView = courseViewCache.getCourseView(courseUUID.get());
+    if (courseView.isEmpty()) {
       httpResponseWriter.writeFailedResponse(httpResponse, "Failed to retrieve the course. Course not found.", HttpStatus.NOT_FOUND);
       return;
     }
 
-    Optional<Long> coursePurchaseCount = purchaseRepo.countByCourseId(courseUUID.get());
-    if (coursePurchaseCount.isEmpty()) {
-      httpResponseWriter.writeFailedResponse(httpResponse, "Failed retrieve purchase info.", HttpStatus.INTERNAL_SERVER_ERROR);
-      return;
-    }
-
-    Optional<String> respJson = jsonSerializer.serialize(new DetailedCourse(targetCourse.get(), coursePurchaseCount.get()));
-    if (respJson.isEmpty()) {
-      httpResponseWriter.writeFailedResponse(httpResponse, "Failed to serialize the response JSON.", HttpStatus.INTERNAL_SERVER_ERROR);
-      return;
-    }
-
-    httpResponseWriter.writeOkResponse(httpResponse, respJson.get(), HttpStatus.OK);
+    httpResponseWriter.writeOkResponse(httpResponse, courseView.get().json(), HttpStatus.OK);
   }
 
   @GetMapping("api/public/get/course-thumbnail/{course-id}")
-  public ResponseEntity<InputStreamResource> getCourseThumbnail(
+  public void getCourseThumbnail(
       HttpServletRequest httpRequest,
       HttpServletResponse httpResponse,
-      @PathVariable(name = "course-id") String courseId
+      @PathVariable(name = "course-id") String courseId,
+      @RequestParam(name = "size", required = false, defaultValue = "original") String size
   ) {
+    Optional<ImageSizes> imageSize = ImageSizes.fromParam(size);
+    if (imageSize.isEmpty()) {
+      httpResponseWriter.writeFailedResponse(httpResponse, "Invalid size provided.", HttpStatus.BAD_REQUEST);
+      return;
+    }
+
     Optional<UUID> courseUUID = IdParser.parseId(courseId);
     if (courseUUID.isEmpty()) {
-      return ResponseEntity.internalServerError().build();
+      httpResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+      return;
     }
     Optional<Course> targetCourse = courseService.getCourse(courseUUID.get());
     if (targetCourse.isEmpty()) {
-      return ResponseEntity.notFound().build();
+      httpResponse.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
     }
 
+    // if the course has no thumbnail, return the default thumbnail. Otherwise, return the
+    // course's thumbnail
+    String thumbnailFilename = targetCourse.get().getThumbnailImageName() == null
+        ? defaultCourseThumbnailFilename
+        : targetCourse.get().getThumbnailImageName();
 
-    InputStream is = null;
-    MediaType imageType = null;
-    try {
-      // if the course has no thumbnail, return the default thumbnail. Otherwise, return the
-      // course's thumbnail
-      if (targetCourse.get().getThumbnailImageName() == null) {
-        Path defaultPicturePath = Paths.get(pictureDirectory, defaultCourseThumbnailFilename);
-        is = new FileInputStream(defaultPicturePath.toFile());
-        imageType = StorageService.getFileType(defaultPicturePath);
-      } else {
-        Path pfpFilePath = Paths.get(pictureDirectory, targetCourse.get().getThumbnailImageName());
-        is = new FileInputStream(pfpFilePath.toFile());
-        imageType = StorageService.getFileType(pfpFilePath);
-      }
-    } catch (Exception e) {
-      log.error("Failed to get the thumbnail of the course. Reason: {}", e.getMessage());
-
-      return ResponseEntity.internalServerError().build();
-    }
-
-    if (!imageType.equals(MediaType.IMAGE_JPEG) && !imageType.equals(MediaType.IMAGE_PNG)) {
-      return ResponseEntity.internalServerError().build();
+    Optional<ImageVariantService.CachedImage> thumbnail = imageVariantService.getImage(thumbnailFilename, imageSize.get());
+    if (thumbnail.isEmpty()) {
+      log.error("Failed to get the thumbnail of the course {}.", courseId);
+      httpResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+      return;
     }
 
-    return ResponseEntity
-        .ok()
-        .contentType(imageType)
-        .body(new InputStreamResource(is));
+    // The URL stays the same when the thumbnail is changed, so it has to be revalidated. Use the
+    // `api/public/get/image` endpoint with `thumbnailImageName` for long-lived caching.
+    httpFileWriter.writeBuffer(
+        httpRequest,
+        httpResponse,
+        ByteBuffer.wrap(thumbnail.get().content()),
+        thumbnail.get().lastModifiedMillis(),
+        thumbnail.get().contentType(),
+        "public, no-cache"
+    );
   }
 
   @GetMapping("api/public/get/courses")
@@ -147,8 +138,29 @@ public class CourseController {
       HttpServletResponse httpResponse,
       @RequestParam(value = "page", required = false, defaultValue = "0") int page,
       @RequestParam(value = "page-size", required = false, defaultValue = "5") int pageSize,
-      @RequestParam(value = "sorting", required = false, defaultValue = "ASC") String sorting
+      @RequestParam(value = "sorting", required = false, defaultValue = "ASC") String sorting,
+      @RequestParam(value = "cursor", required = false) String cursor,
+      @RequestParam(value = "include-total", required = false, defaultValue = "false") boolean includeTotal
   ) {
+    // the presence of `cursor` (even an empty one, for the first page) selects the keyset pagination mode
+    if (cursor != null) {
+      ResultOrError<CursorPaginatedCourses<CleanedCourse>, BackendOperationErrors> cursorResponse =
+          courseService.getAllCoursesAfterCursor(cursor, pageSize, getSortDirection(sorting), includeTotal);
+      if (cursorResponse.errorType() != null) {
+        httpResponseWriter.writeFailedResponse(httpResponse, cursorResponse.errorMessage(), HttpStatus.BAD_REQUEST);
+        return;
+      }
+
+      Optional<String> cursorRespJson = jsonSerializer.serialize(cursorResponse.result());
+      if (cursorRespJson.isPresent()) {
+        httpResponseWriter.writeOkResponse(httpResponse, cursorRespJson.get(), HttpStatus.OK);
+        return;
+      }
+
+      httpResponseWriter.writeFailedResponse(httpResponse, "Internal server error occurred.", HttpStatus.INTERNAL_SERVER_ERROR);
+      return;
+    }
+
     PaginatedCourses<CleanedCourse> response = courseService.getAllCoursesPaginated(pageSize, page, getSortDirection(sorting));
 
     Optional<String> respJson = jsonSerializer.serialize(response);
@@ -251,6 +263,24 @@ public class CourseController {
 
     long imageSize = newThumbnail.getSize();
 
+    Optional<UUID> userId = IdParser.parseId(request.getAttribute("userId").toString());
+    if (userId.isEmpty()) {
+      httpResponseWriter.writeFailedResponse(response, "Invalid userId provided.", HttpStatus.BAD_REQUEST);
+      return;
+    }
+
+    Optional<UUID> courseUUID = IdParser.parseId(courseId);
+    if (courseUUID.isEmpty()) {
+      httpResponseWriter.writeFailedResponse(response, "Invalid course ID provided.", HttpStatus.BAD_REQUEST);
+      return;
+    }
+
+    Optional<Course> targetCourse = courseService.getCourse(courseUUID.get());
+    if (targetCourse.isEmpty()) {
+      httpResponseWriter.writeFailedResponse(response, "Course not found.", HttpStatus.NOT_FOUND);
+      return;
+    }
+
     ResultOrError<String, FileUploadErrorTypes> savedThumbnail = storageService.saveImage(newThumbnail);
     if (savedThumbnail.errorType() != null) {
       switch (savedThumbnail.errorType()) {
@@ -259,8 +289,21 @@ public class CourseController {
         case InvalidUploadDir, FailedToCreateUploadDir, FailedToSaveFile ->
             httpResponseWriter.writeFailedResponse(response, savedThumbnail.errorMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
       }
+      return;
     }
 
+    applyNewThumbnail(response, targetCourse.get(), userId.get(), savedThumbnail.result(), imageSize);
+  }
+
+  // Same as `change-course-thumbnail`, but the picture is the raw request body, so it's written to disk only once
+  // (a multipart upload is first buffered to a temporary file). The upload is cut off once it exceeds the
+  // instructor's free storage.
+  @PostMapping("api/protected/upload/course-thumbnail")
+  public void uploadCourseThumbnail(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      @RequestParam(name = "course-id") String courseId
+  ) {
     Optional<UUID> userId = IdParser.parseId(request.getAttribute("userId").toString());
     if (userId.isEmpty()) {
       httpResponseWriter.writeFailedResponse(response, "Invalid userId provided.", HttpStatus.BAD_REQUEST);
@@ -278,14 +321,74 @@ public class CourseController {
       httpResponseWriter.writeFailedResponse(response, "Course not found.", HttpStatus.NOT_FOUND);
       return;
     }
+    if (!targetCourse.get().getInstructorId().equals(userId.get())) {
+      httpResponseWriter.writeFailedResponse(
+          response,
+          "You can't change the thumbnail of the course because you're not the author of this course.",
+          HttpStatus.BAD_REQUEST
+      );
+      return;
+    }
 
-    ResultOrError<Boolean, BackendOperationErrors> res = courseService.updateCourseThumbnail(
-        courseUUID.get(),
+    Optional<Users> instructor = userService.findUserById(userId.get());
+    if (instructor.isEmpty()) {
+      httpResponseWriter.writeFailedResponse(response, "User not found.", HttpStatus.NOT_FOUND);
+      return;
+    }
+    long freeStorage = instructor.get().getTotalStorageInBytes() - instructor.get().getUsedStorageInBytes();
+    if (request.getContentLengthLong() > freeStorage) {
+      httpResponseWriter.writeFailedResponse(
+          response,
+          "Not enough free storage available. Either free up space by deleting things or buy more storage.",
+          HttpStatus.INSUFFICIENT_STORAGE
+      );
+      return;
+    }
+
+    ResultOrError<MediaBlobService.StoredBlob, FileUploadErrorTypes> savedThumbnail;
+    try {
+      savedThumbnail = storageService.saveImage(request.getInputStream(), freeStorage);
+    } catch (IOException e) {
+      httpResponseWriter.writeFailedResponse(response, "Failed to read the uploaded picture.", HttpStatus.BAD_REQUEST);
+      return;
+    }
+    if (savedThumbnail.errorType() != null) {
+      switch (savedThumbnail.errorType()) {
+        case UnsupportedFileType, FileIsEmpty ->
+            httpResponseWriter.writeFailedResponse(response, savedThumbnail.errorMessage(), HttpStatus.BAD_REQUEST);
+        case FileTooLarge ->
+            httpResponseWriter.writeFailedResponse(response, savedThumbnail.errorMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
+        case InvalidUploadDir, FailedToCreateUploadDir, FailedToSaveFile ->
+            httpResponseWriter.writeFailedResponse(response, savedThumbnail.errorMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+      }
+      return;
+    }
+
+    applyNewThumbnail(
+        response,
+        targetCourse.get(),
         userId.get(),
-        savedThumbnail.result(),
+        savedThumbnail.result().path().getFileName().toString(),
+        savedThumbnail.result().sizeBytes()
+    );
+  }
+
+  private void applyNewThumbnail(
+      HttpServletResponse response,
+      Course targetCourse,
+      UUID userId,
+      String thumbnailFilename,
+      long imageSize
+  ) {
+    ResultOrError<Boolean, BackendOperationErrors> res = courseService.updateCourseThumbnail(
+        targetCourse.getId(),
+        userId,
+        thumbnailFilename,
         imageSize
     );
     if (res.errorType() != null) {
+      // the uploaded picture isn't used by the course, so its reference is given back
+      storageService.releaseImage(thumbnailFilename);
       switch (res.errorType()) {
         case CourseNotFound, ItemNotFound ->
             httpResponseWriter.writeFailedResponse(response, res.errorMessage(), HttpStatus.NOT_FOUND);
@@ -294,9 +397,10 @@ public class CourseController {
         case AttemptingToModifyOthersItem ->
             httpResponseWriter.writeFailedResponse(response, res.errorMessage(), HttpStatus.BAD_REQUEST);
       }
+      return;
     }
 
-    httpResponseWriter.writeIdResponse(response, targetCourse.get().getId().toString(), HttpStatus.OK);
+    httpResponseWriter.writeIdResponse(response, targetCourse.getId().toString(), HttpStatus.OK);
   }
 
   @PostMapping("api/protected/remove/course")
@@ -3,12 +3,16 @@ package com.akiramenai.backend.controller;
 
 import com.akiramenai.backend.model.*;
 import com.akiramenai.backend.repo.*;
+import com.akiramenai.backend.service.CourseOutlineService;
+import com.akiramenai.backend.service.CourseProgressService;
+import com.akiramenai.backend.service.HlsDescriptorCache;
 import com.akiramenai.backend.service.StorageService;
 import com.akiramenai.backend.service.TerminalTestService;
 import com.akiramenai.backend.utility.HttpResponseWriter;
 import com.akiramenai.backend.utility.IdParser;
 import com.akiramenai.backend.utility.JsonSerializer;
 import com.akiramenai.backend.utility.VttHelper;
+import com.fasterxml.jackson.core.JsonGenerator;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -29,6 +33,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -39,6 +44,9 @@ public class CourseItemController {
   private final StorageService storageService;
   private final TerminalTestRepo terminalTestRepo;
   private final TerminalTestService terminalTestService;
+  private final HlsDescriptorCache hlsDescriptorCache;
+  private final CourseOutlineService courseOutlineService;
+  private final CourseProgressService courseProgressService;
   HttpResponseWriter httpResponseWriter = new HttpResponseWriter();
   JsonSerializer jsonSerializer = new JsonSerializer();
 
@@ -51,7 +59,7 @@ public class CourseItemController {
   private final LearnerInfosRepo learnerInfosRepo;
   private final CompletedCourseItemsRepo completedCourseItemsRepo;
 
-  public CourseItemController(QuizRepo quizRepo, VideoMetadataRepo videoMetadataRepo, CodingTestRepo codingTestRepo, LearnerInfosRepo learnerInfosRepo, CompletedCourseItemsRepo completedCourseItemsRepo, StorageService storageService, TerminalTestRepo terminalTestRepo, TerminalTestService terminalTestService) {
+  public CourseItemController(QuizRepo quizRepo, VideoMetadataRepo videoMetadataRepo, CodingTestRepo codingTestRepo, LearnerInfosRepo learnerInfosRepo, CompletedCourseItemsRepo completedCourseItemsRepo, StorageService storageService, TerminalTestRepo terminalTestRepo, TerminalTestService terminalTestService, HlsDescriptorCache hlsDescriptorCache, CourseOutlineService courseOutlineService, CourseProgressService courseProgressService) {
     this.quizRepo = quizRepo;
     this.videoMetadataRepo = videoMetadataRepo;
     this.codingTestRepo = codingTestRepo;
@@ -60,6 +68,9 @@ public class CourseItemController {
     this.storageService = storageService;
     this.terminalTestRepo = terminalTestRepo;
     this.terminalTestService = terminalTestService;
+    this.hlsDescriptorCache = hlsDescriptorCache;
+    this.courseOutlineService = courseOutlineService;
+    this.courseProgressService = courseProgressService;
   }
 
   @GetMapping("get/course-item")
@@ -143,6 +154,50 @@ public class CourseItemController {
     }
   }
 
+  // All the items of a course in one response, instead of one `get/course-item` request per item. The JSON is
+  // written to the response as it's generated.
+  @GetMapping("get/course-outline")
+  public void getCourseOutline(
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse,
+
+      @RequestParam(required = true) String courseId
+  ) {
+    UUID userId = UUID.fromString(httpRequest.getAttribute("userId").toString());
+    Optional<UUID> parsedCourseId = IdParser.parseId(courseId);
+    if (parsedCourseId.isEmpty()) {
+      httpResponseWriter.writeFailedResponse(httpResponse, "Failed to parse provided courseId.", HttpStatus.BAD_REQUEST);
+      return;
+    }
+
+    ResultOrError<List<CourseOutlineService.OutlineItem>, BackendOperationErrors> outline = courseOutlineService
+        .getOutline(userId, parsedCourseId.get());
+    if (outline.errorType() != null) {
+      httpResponseWriter.writeFailedResponse(httpResponse, outline.errorMessage(), HttpStatus.NOT_FOUND);
+      return;
+    }
+
+    httpResponse.setContentType("application/json");
+    httpResponse.setStatus(HttpStatus.OK.value());
+    try (JsonGenerator generator = jsonSerializer.createGenerator(httpResponse.getOutputStream())) {
+      generator.writeStartObject();
+      generator.writeStringField("courseId", parsedCourseId.get().toString());
+      generator.writeNumberField("itemCount", outline.result().size());
+      generator.writeArrayFieldStart("items");
+      for (CourseOutlineService.OutlineItem item : outline.result()) {
+        generator.writeStartObject();
+        generator.writeStringField("itemType", item.itemType().name());
+        generator.writeObjectField("item", item.item());
+        generator.writeEndObject();
+      }
+      generator.writeEndArray();
+      generator.writeEndObject();
+    } catch (Exception e) {
+      // the status has already been sent, the client sees a truncated body
+      log.error("Failed to write the outline of course `{}`. Reason: {}", courseId, e.toString());
+    }
+  }
+
   @GetMapping("get/terminal-test/eval-script")
   public ResponseEntity<InputStreamResource> getAllCourseItems(
       HttpServletRequest httpRequest,
@@ -204,21 +259,18 @@ public class CourseItemController {
       return;
     }
 
-    // if the course item is already marked as completed
-    if (completedCourseItemsRepo.existsByLearnerIdAndItemId(userId, courseItemCompletionRequest.itemId())) {
+    boolean isNewlyCompleted = courseProgressService.recordCompletion(
+        userId,
+        courseId.get(),
+        courseItemCompletionRequest.itemId(),
+        itemInfo.get().itemType()
+    );
+    // if the course item was already marked as completed
+    if (!isNewlyCompleted) {
       httpResponseWriter.writeOkResponse(httpResponse, respJson.get(), HttpStatus.OK);
       return;
     }
 
-    // if the course item haven't been marked as completed
-    CompletedCourseItems completedItem = CompletedCourseItems
-        .builder()
-        .learnerId(userId)
-        .associatedCourseId(courseId.get())
-        .itemId(courseItemCompletionRequest.itemId())
-        .itemType(itemInfo.get().itemType())
-        .build();
-    completedCourseItemsRepo.save(completedItem);
     httpResponseWriter.writeOkResponse(httpResponse, respJson.get(), HttpStatus.CREATED);
   }
 
@@ -323,6 +375,8 @@ public class CourseItemController {
         log.warn("Failed to delete temp VTT file: {}", oldVttFilePath.toFile().getAbsolutePath());
       }
       Files.move(savedVttPath.result(), oldVttFilePath, StandardCopyOption.REPLACE_EXISTING);
+      // the HLS endpoint has to pick up the new size and modification time
+      hlsDescriptorCache.invalidate(videoMetadataItemId.substring(3));
     } catch (Exception e) {
       log.error("Failed to modify VTT file: {}", savedVttPath.result().toAbsolutePath());
 
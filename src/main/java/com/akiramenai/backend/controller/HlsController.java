@@ -1,97 +1,128 @@
-package com.akiramenai.backend.controller;
-
-import com.akiramenai.backend.service.StorageService;
-import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
-
-import java.net.MalformedURLException;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-
-@Slf4j
-@RestController
-@RequestMapping("/hls")
-public class HlsController {
-
-  private final StorageService storageService;
-
-  public HlsController(StorageService storageService) {
-    this.storageService = storageService;
-  }
-
-  @GetMapping("/{videoName}/{fileName:.+}")
-  public ResponseEntity<Resource> getVideoSegment(
-      @PathVariable String videoName,
-      @PathVariable String fileName) throws MalformedURLException {
-
-    videoName = videoName.substring(3);
-
-    Path filePath = Paths.get(storageService.videoDirectoryString).resolve(videoName).resolve(fileName).normalize();
-    Resource resource = new UrlResource(filePath.toUri());
-
-    if (!resource.exists()) {
-      log.error("Resource not found: {}", filePath.toAbsolutePath().toString());
-      return ResponseEntity.notFound().build();
-    }
-
-    String contentType;
-    if (fileName.endsWith(".m3u8")) {
-      contentType = "application/vnd.apple.mpegurl";
-    } else if (fileName.endsWith(".ts")) {
-      contentType = "video/MP2T";
-    } else if (fileName.endsWith(".vtt")) {
-      contentType = "text/vtt";
-    } else {
-      contentType = "application/octet-stream";
-    }
-
-    return ResponseEntity.ok()
-        .header(HttpHeaders.CONTENT_TYPE, contentType)
-        .header("Access-Control-Allow-Origin", "*")
-        .header("Access-Control-Allow-Headers", "Origin, X-Requested-With, Content-Type, Accept")
-        .body(resource);
-  }
-
-
-  @GetMapping("/{videoName}/{subdir}/{fileName:.+}")
-  public ResponseEntity<Resource> getVideoSegment(
-      @PathVariable String videoName,
-      @PathVariable String subdir,
-      @PathVariable String fileName
-  ) throws MalformedURLException {
-
-    videoName = videoName.substring(3);
-
-    Path filePath = Paths.get(storageService.videoDirectoryString).resolve(videoName).resolve(subdir).resolve(fileName).normalize();
-    Resource resource = new UrlResource(filePath.toUri());
-
-    if (!resource.exists()) {
-      log.error("Resource not found: {}", filePath.toAbsolutePath().toString());
-      return ResponseEntity.notFound().build();
-    }
-
-    String contentType;
-    if (fileName.endsWith(".m3u8")) {
-      contentType = "application/vnd.apple.mpegurl";
-    } else if (fileName.endsWith(".ts")) {
-      contentType = "video/MP2T";
-    } else if (fileName.endsWith(".vtt")) {
-      contentType = "text/vtt";
-    } else {
-      contentType = "application/octet-stream";
-    }
-
-    return ResponseEntity.ok()
-        .header(HttpHeaders.CONTENT_TYPE, contentType)
-        .header("Access-Control-Allow-Origin", "*")
-        .header("Access-Control-Allow-Headers", "Origin, X-Requested-With, Content-Type, Accept")
-        .body(resource);
-  }
-}
+package com.akiramenai.backend.controller;
+
+import com.akiramenai.backend.model.HlsFileInfo;
+import com.akiramenai.backend.service.HlsDescriptorCache;
+import com.akiramenai.backend.service.HlsSegmentCache;
+import com.akiramenai.backend.utility.HttpFileWriter;
+import com.akiramenai.backend.utility.IdParser;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Optional;
+
+@Slf4j
+@RestController
+@RequestMapping("/hls")
+public class HlsController {
+  HttpFileWriter httpFileWriter = new HttpFileWriter();
+
+  private final HlsDescriptorCache hlsDescriptorCache;
+  private final HlsSegmentCache hlsSegmentCache;
+
+  // segments are never rewritten once a video has been processed
+  @Value("${application.hls.segment-max-age-seconds:31536000}")
+  private long segmentMaxAgeSeconds;
+
+  @Value("${application.hls.playlist-max-age-seconds:10}")
+  private long playlistMaxAgeSeconds;
+
+  public HlsController(HlsDescriptorCache hlsDescriptorCache, HlsSegmentCache hlsSegmentCache) {
+    this.hlsDescriptorCache = hlsDescriptorCache;
+    this.hlsSegmentCache = hlsSegmentCache;
+  }
+
+  @GetMapping("/{videoName}/{fileName:.+}")
+  public void getVideoSegment(
+      HttpServletRequest request,
+      HttpServletResponse response,
+
+      @PathVariable String videoName,
+      @PathVariable String fileName
+  ) {
+    sendHlsFile(request, response, videoName, fileName);
+  }
+
+
+  @GetMapping("/{videoName}/{subdir}/{fileName:.+}")
+  public void getVideoSegment(
+      HttpServletRequest request,
+      HttpServletResponse response,
+
+      @PathVariable String videoName,
+      @PathVariable String subdir,
+      @PathVariable String fileName
+  ) {
+    sendHlsFile(request, response, videoName, subdir + "/" + fileName);
+  }
+
+  private void sendHlsFile(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      String videoName,
+      String relativePath
+  ) {
+    response.setHeader("Access-Control-Allow-Origin", "*");
+    response.setHeader("Access-Control-Allow-Headers", "Origin, X-Requested-With, Content-Type, Accept, Range");
+    response.setHeader("Access-Control-Expose-Headers", "Content-Length, Content-Range, ETag");
+
+    // only the files listed in the video's descriptor can be served, so the path can't escape the directory
+    if (videoName.length() <= 3 || IdParser.parseId(videoName.substring(3)).isEmpty()) {
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+
+    Optional<HlsFileInfo> fileInfo = hlsDescriptorCache.find(videoName.substring(3), relativePath);
+    if (fileInfo.isEmpty()) {
+      log.error("Resource not found: {}/{}", videoName, relativePath);
+      response.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+
+    if (HlsSegmentCache.isCacheable(relativePath)) {
+      Optional<HlsSegmentCache.CachedFile> cachedFile = hlsSegmentCache.get(fileInfo.get());
+      if (cachedFile.isPresent()) {
+        httpFileWriter.writeBuffer(
+            request,
+            response,
+            cachedFile.get().content(),
+            cachedFile.get().lastModifiedMillis(),
+            fileInfo.get().contentType(),
+            getCacheControl(fileInfo.get())
+        );
+        return;
+      }
+    }
+
+    httpFileWriter.writeFile(
+        request,
+        response,
+        fileInfo.get().path(),
+        fileInfo.get().size(),
+        fileInfo.get().lastModifiedMillis(),
+        fileInfo.get().contentType(),
+        getCacheControl(fileInfo.get())
+    );
+  }
+
+  private String getCacheControl(HlsFileInfo fileInfo) {
+    String fileName = fileInfo.path().getFileName().toString();
+    if (!fileInfo.isFinal()) {
+      // the video is still being processed, this may be a partly written file
+      return "no-store";
+    } else if (fileName.endsWith(".ts")) {
+      return "public, max-age=" + segmentMaxAgeSeconds + ", immutable";
+    } else if (fileName.endsWith(".vtt")) {
+      // the instructor can replace the subtitles at any time, so they're always revalidated (cheap with the ETag)
+      return "public, no-cache";
+    } else {
+      return "public, max-age=" + playlistMaxAgeSeconds;
+    }
+  }
+}
@@ -0,0 +1,61 @@
+package com.akiramenai.backend.controller;
+
+import com.akiramenai.backend.model.ImageSizes;
+import com.akiramenai.backend.service.ImageVariantService;
+import com.akiramenai.backend.utility.HttpFileWriter;
+import com.akiramenai.backend.utility.HttpResponseWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+@Slf4j
+@RestController
+public class ImageController {
+  HttpResponseWriter httpResponseWriter = new HttpResponseWriter();
+  HttpFileWriter httpFileWriter = new HttpFileWriter();
+
+  private final ImageVariantService imageVariantService;
+
+  public ImageController(ImageVariantService imageVariantService) {
+    this.imageVariantService = imageVariantService;
+  }
+
+  // Pictures by file name (`thumbnailImageName`, `pfpPath`, `authorProfilePicture`). The file names are the
+  // hash of the content, so the responses can be cached forever.
+  @GetMapping("api/public/get/image/{file-name}")
+  public void getImage(
+      HttpServletRequest httpRequest,
+      HttpServletResponse httpResponse,
+      @PathVariable(name = "file-name") String fileName,
+      @RequestParam(name = "size", required = false, defaultValue = "original") String size
+  ) {
+    Optional<ImageSizes> imageSize = ImageSizes.fromParam(size);
+    if (imageSize.isEmpty()) {
+      httpResponseWriter.writeFailedResponse(httpResponse, "Invalid size provided.", HttpStatus.BAD_REQUEST);
+      return;
+    }
+
+    Optional<ImageVariantService.CachedImage> image = imageVariantService.getImage(fileName, imageSize.get());
+    if (image.isEmpty()) {
+      httpResponse.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
+    }
+
+    httpFileWriter.writeBuffer(
+        httpRequest,
+        httpResponse,
+        ByteBuffer.wrap(image.get().content()),
+        image.get().lastModifiedMillis(),
+        image.get().contentType(),
+        "public, max-age=31536000, immutable"
+    );
+  }
+}
@@ -1,11 +1,11 @@
 package com.akiramenai.backend.controller;
 
 import com.akiramenai.backend.model.AddQuizRequest;
-import com.akiramenai.backend.service.MeiliService;
+import com.akiramenai.backend.model.CourseSearchResults;
+import com.akiramenai.backend.service.CourseSearchService;
 import com.akiramenai.backend.service.QuizService;
 import com.akiramenai.backend.utility.HttpResponseWriter;
 import com.akiramenai.backend.utility.JsonSerializer;
-import com.meilisearch.sdk.model.SearchResultPaginated;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
@@ -20,10 +20,10 @@ public class SearchController {
   HttpResponseWriter httpResponseWriter = new HttpResponseWriter();
   JsonSerializer jsonSerializer = new JsonSerializer();
 
-  private final MeiliService meiliService;
+  private final CourseSearchService courseSearchService;
 
-  public SearchController(MeiliService meiliService) {
-    this.meiliService = meiliService;
+  public SearchController(CourseSearchService courseSearchService) {
+    this.courseSearchService = courseSearchService;
   }
 
   @GetMapping("api/public/search/courses")
@@ -35,7 +35,7 @@ public class SearchController {
       @RequestParam(name = "page-number", required = false, defaultValue = "1") String pageNumber,
       @RequestParam(name = "page-size", required = false, defaultValue = "10") String pageSize
   ) {
-    Optional<SearchResultPaginated> paginatedResults = meiliService.searchCourses(
+    Optional<CourseSearchResults> paginatedResults = courseSearchService.searchCourses(
         query,
         Integer.parseInt(pageNumber),
         Integer.parseInt(pageSize)
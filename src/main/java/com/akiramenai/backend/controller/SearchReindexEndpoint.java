@@ -0,0 +1,34 @@
+package com.akiramenai.backend.controller;
+
+import com.akiramenai.backend.service.CourseReindexService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+// `GET /actuator/searchreindex` shows the progress of the courses index rebuild, `POST` starts one. Only exposed on
+// the management port, which isn't public.
+@Component
+@Endpoint(id = "searchreindex")
+public class SearchReindexEndpoint {
+  private final CourseReindexService courseReindexService;
+
+  public SearchReindexEndpoint(CourseReindexService courseReindexService) {
+    this.courseReindexService = courseReindexService;
+  }
+
+  @ReadOperation
+  public Map<String, Object> status() {
+    return Map.of(
+        "running", courseReindexService.isRunning(),
+        "indexedCourseCount", courseReindexService.getIndexedCourseCount()
+    );
+  }
+
+  @WriteOperation
+  public Map<String, Object> start() {
+    return Map.of("started", courseReindexService.startReindex());
+  }
+}
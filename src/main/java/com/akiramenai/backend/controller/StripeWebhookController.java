@@ -1,9 +1,7 @@
 package com.akiramenai.backend.controller;
 
 import com.akiramenai.backend.model.PurchaseTypes;
-import com.akiramenai.backend.repo.UserRepo;
-import com.akiramenai.backend.service.CourseService;
-import com.akiramenai.backend.service.StripeService;
+import com.akiramenai.backend.service.StripeEventDeduplicator;
 import com.stripe.model.Event;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.StripeObject;
@@ -11,7 +9,6 @@ import com.stripe.model.checkout.Session;
 import com.stripe.net.Webhook;
 import lombok.extern.slf4j.Slf4j;
 import com.akiramenai.backend.model.PurchaseInfo;
-import com.akiramenai.backend.utility.PurchaseProcessor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -21,8 +18,6 @@ import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.util.Optional;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 
 @Slf4j
 @RestController
@@ -30,18 +25,10 @@ public class StripeWebhookController {
   @Value("${application.stripe.webhook-secret}")
   private String webhookSecret;
 
-  private final PurchaseProcessor purchaseProcessor;
-  private final BlockingQueue<PurchaseInfo> purchaseInfoBlockingQueue;
+  private final StripeEventDeduplicator stripeEventDeduplicator;
 
-  public StripeWebhookController(UserRepo userRepo, CourseService courseService) {
-    this.purchaseInfoBlockingQueue = new ArrayBlockingQueue<>(1024);
-    this.purchaseProcessor = new PurchaseProcessor(
-        this.purchaseInfoBlockingQueue,
-        userRepo,
-        courseService
-    );
-
-    this.purchaseProcessor.start();
+  public StripeWebhookController(StripeEventDeduplicator stripeEventDeduplicator) {
+    this.stripeEventDeduplicator = stripeEventDeduplicator;
   }
 
   @PostMapping("/webhook")
@@ -61,32 +48,49 @@ public class StripeWebhookController {
     // Handle the event based on its type
     switch (event.getType()) {
       case "checkout.session.completed": {
+        // Stripe redelivers events it didn't get a 2xx for (or thinks it didn't), acknowledge the repeats right away
+        if (stripeEventDeduplicator.isRecentlySeen(event.getId())) {
+          log.info("Ignoring the redelivery of event `{}`.", event.getId());
+          break;
+        }
 
-        // queue a task to a different thread
+        // store the purchase, the outbox workers fulfill it
         Optional<StripeObject> wrappedSession = event.getDataObjectDeserializer().getObject();
         if (wrappedSession.isEmpty()) {
           log.error("Something went wrong while deserializing the event to get the metadata.");
           break;
         }
         Session session = (Session) wrappedSession.get();
+        if (stripeEventDeduplicator.isRecentlySeen(session.getId())) {
+          log.info("Ignoring event `{}` of the already processed session `{}`.", event.getId(), session.getId());
+          break;
+        }
 
         String userId = session.getMetadata().get("userId");
         String itemType = session.getMetadata().get("purchaseTypes");
         String courseId = session.getMetadata().get("courseId");
         String storageToAddInGBs = session.getMetadata().get("storageBoughtInGBs");
 
+        PurchaseInfo purchaseInfo;
         if (itemType.equals("Course")) {
-          this.purchaseInfoBlockingQueue.add(
-              new PurchaseInfo(userId, PurchaseTypes.Course, courseId, null)
-          );
+          purchaseInfo = new PurchaseInfo(userId, PurchaseTypes.Course, courseId, null);
         } else {
-          this.purchaseInfoBlockingQueue.add(
-              new PurchaseInfo(
-                  userId, PurchaseTypes.Storage, null, Integer.parseInt(storageToAddInGBs)
-              )
+          purchaseInfo = new PurchaseInfo(
+              userId, PurchaseTypes.Storage, null, Integer.parseInt(storageToAddInGBs)
           );
         }
 
+        try {
+          boolean isStored = stripeEventDeduplicator.enqueueOnce(event.getId(), session.getId(), purchaseInfo);
+          if (!isStored) {
+            log.info("Ignoring the duplicate event `{}` of session `{}`.", event.getId(), session.getId());
+          }
+        } catch (Exception e) {
+          log.error("Failed to store the purchase of user `{}`. Reason: {}", userId, e.toString());
+
+          // a non-2xx response makes Stripe deliver the event again later
+          return new ResponseEntity<>("Failed to store the purchase", HttpStatus.INTERNAL_SERVER_ERROR);
+        }
 
         break;
       }
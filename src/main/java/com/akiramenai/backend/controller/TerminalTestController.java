@@ -59,6 +59,7 @@ public class TerminalTestController {
           responseWriter.writeFailedResponse(response, savedScriptPath.errorMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
         }
       }
+      return;
     }
 
     AddTerminalTestRequest req = new AddTerminalTestRequest(courseId, question, description, savedScriptPath.result());
@@ -66,6 +67,9 @@ public class TerminalTestController {
         req,
         UUID.fromString(request.getAttribute("userId").toString())
     );
+    if (resp.errorType() != null) {
+      storageService.releaseScript(savedScriptPath.result().getFileName().toString());
+    }
     httpResponseWriter.handleDifferentResponses(response, resp, HttpStatus.CREATED);
   }
 
@@ -101,6 +105,7 @@ public class TerminalTestController {
             responseWriter.writeFailedResponse(httpResponse, savedScriptPath.errorMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
           }
         }
+        return;
       }
     }
 
@@ -115,6 +120,9 @@ public class TerminalTestController {
         req,
         UUID.fromString(httpRequest.getAttribute("userId").toString())
     );
+    if (resp.errorType() != null && savedScriptPath != null) {
+      storageService.releaseScript(savedScriptPath.result().getFileName().toString());
+    }
     httpResponseWriter.handleDifferentResponses(httpResponse, resp, HttpStatus.CREATED);
   }
 
@@ -1,9 +1,12 @@
 package com.akiramenai.backend.controller;
 
 import com.akiramenai.backend.model.*;
+import com.akiramenai.backend.service.ImageVariantService;
 import com.akiramenai.backend.service.JWTService;
+import com.akiramenai.backend.service.MediaBlobService;
 import com.akiramenai.backend.service.StorageService;
 import com.akiramenai.backend.service.UserService;
+import com.akiramenai.backend.utility.HttpFileWriter;
 import com.akiramenai.backend.utility.HttpResponseWriter;
 import com.akiramenai.backend.utility.JsonSerializer;
 import com.akiramenai.backend.utility.RefreshTokenHandler;
@@ -14,18 +17,14 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.FileInputStream;
-import java.io.InputStream;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -33,11 +32,13 @@ import java.util.UUID;
 @RestController
 public class UserController {
   private final HttpResponseWriter httpResponseWriter = new HttpResponseWriter();
+  private final HttpFileWriter httpFileWriter = new HttpFileWriter();
   private final JsonSerializer jsonSerializer = new JsonSerializer();
 
   private final UserService userService;
   private final StorageService storageService;
   private final JWTService jwtService;
+  private final ImageVariantService imageVariantService;
 
   @Value("${application.security.jwt.refresh-token-validity-duration}")
   private String refreshTokenValidityDuration;
@@ -45,16 +46,14 @@ public class UserController {
   @Value("${application.security.jwt.https-only-cookie}")
   private String shouldCookieBeSentUsingHttpsOnly;
 
-  @Value("${application.default-values.media.picture-directory}")
-  private String pictureDirectory;
-
   @Value("${application.default-values.default-user-pfp-filename}")
   private String defaultPfpFilename;
 
-  public UserController(UserService service, StorageService storageService, JWTService jwtService) {
+  public UserController(UserService service, StorageService storageService, JWTService jwtService, ImageVariantService imageVariantService) {
     this.userService = service;
     this.storageService = storageService;
     this.jwtService = jwtService;
+    this.imageVariantService = imageVariantService;
   }
 
   @PostMapping("api/public/register")
@@ -201,6 +200,44 @@ public class UserController {
     UUID userId = UUID.fromString(request.getAttribute("userId").toString());
     Optional<String> resp = userService.updatePfp(userId, savedFilename.result());
     if (resp.isPresent()) {
+      storageService.releaseImage(savedFilename.result());
+      httpResponseWriter.writeFailedResponse(response, resp.get(), HttpStatus.INTERNAL_SERVER_ERROR);
+      return;
+    }
+
+    httpResponseWriter.writeIdResponse(response, userId.toString(), HttpStatus.OK);
+  }
+
+  // Same as `change-profile-picture`, but the picture is the raw request body, so it's written to disk only once
+  @PostMapping("api/protected/upload/profile-picture")
+  public void uploadProfilePicture(
+      HttpServletRequest request,
+      HttpServletResponse response
+  ) {
+    ResultOrError<MediaBlobService.StoredBlob, FileUploadErrorTypes> savedPicture;
+    try {
+      savedPicture = storageService.saveImage(request.getInputStream(), Long.MAX_VALUE);
+    } catch (IOException e) {
+      httpResponseWriter.writeFailedResponse(response, "Failed to read the uploaded picture.", HttpStatus.BAD_REQUEST);
+      return;
+    }
+    if (savedPicture.errorType() != null) {
+      switch (savedPicture.errorType()) {
+        case UnsupportedFileType, FileIsEmpty ->
+            httpResponseWriter.writeFailedResponse(response, savedPicture.errorMessage(), HttpStatus.BAD_REQUEST);
+        case FileTooLarge ->
+            httpResponseWriter.writeFailedResponse(response, savedPicture.errorMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
+        case InvalidUploadDir, FailedToCreateUploadDir, FailedToSaveFile ->
+            httpResponseWriter.writeFailedResponse(response, savedPicture.errorMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+      }
+      return;
+    }
+
+    String savedFilename = savedPicture.result().path().getFileName().toString();
+    UUID userId = UUID.fromString(request.getAttribute("userId").toString());
+    Optional<String> resp = userService.updatePfp(userId, savedFilename);
+    if (resp.isPresent()) {
+      storageService.releaseImage(savedFilename);
       httpResponseWriter.writeFailedResponse(response, resp.get(), HttpStatus.INTERNAL_SERVER_ERROR);
       return;
     }
@@ -233,43 +270,45 @@ public class UserController {
   }
 
   @GetMapping("api/public/get/user-profile-picture/{user-id}")
-  public ResponseEntity<InputStreamResource> getUserProfilePicture(
+  public void getUserProfilePicture(
       HttpServletRequest httpRequest,
       HttpServletResponse httpResponse,
-      @PathVariable(name = "user-id") String userId
+      @PathVariable(name = "user-id") String userId,
+      @RequestParam(name = "size", required = false, defaultValue = "original") String size
   ) {
+    Optional<ImageSizes> imageSize = ImageSizes.fromParam(size);
+    if (imageSize.isEmpty()) {
+      httpResponseWriter.writeFailedResponse(httpResponse, "Invalid size provided.", HttpStatus.BAD_REQUEST);
+      return;
+    }
+
     Optional<Users> targetUser = userService.findUserById(UUID.fromString(userId));
     if (targetUser.isEmpty()) {
-      return ResponseEntity.notFound().build();
+      httpResponse.setStatus(HttpStatus.NOT_FOUND.value());
+      return;
     }
 
-    InputStream is = null;
-    MediaType imageType = null;
-    try {
-      // if the user has no pfp, return the default pfp. Otherwise, return their pfp
-      if (targetUser.get().getPfpFileName() == null) {
-        Path defaultPicturePath = Paths.get(pictureDirectory, defaultPfpFilename);
-        is = new FileInputStream(defaultPicturePath.toFile());
-        imageType = StorageService.getFileType(defaultPicturePath);
-      } else {
-        Path pfpFilePath = Paths.get(pictureDirectory, targetUser.get().getPfpFileName());
-        is = new FileInputStream(pfpFilePath.toFile());
-        imageType = StorageService.getFileType(pfpFilePath);
-      }
-    } catch (Exception e) {
-      log.error("Failed to get user's profile picture. Reason: {}", e.getMessage());
+    // if the user has no pfp, return the default pfp. Otherwise, return their pfp
+    String pfpFilename = targetUser.get().getPfpFileName() == null
+        ? defaultPfpFilename
+        : targetUser.get().getPfpFileName();
 
-      return ResponseEntity.internalServerError().build();
-    }
-
-    if (!imageType.equals(MediaType.IMAGE_JPEG) && !imageType.equals(MediaType.IMAGE_PNG)) {
-      return ResponseEntity.internalServerError().build();
+    Optional<ImageVariantService.CachedImage> pfp = imageVariantService.getImage(pfpFilename, imageSize.get());
+    if (pfp.isEmpty()) {
+      log.error("Failed to get the profile picture of user {}.", userId);
+      httpResponse.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+      return;
     }
 
-    return ResponseEntity
-        .ok()
-        .contentType(imageType)
-        .body(new InputStreamResource(is));
+    // the URL stays the same when the picture is changed, so it has to be revalidated
+    httpFileWriter.writeBuffer(
+        httpRequest,
+        httpResponse,
+        ByteBuffer.wrap(pfp.get().content()),
+        pfp.get().lastModifiedMillis(),
+        pfp.get().contentType(),
+        "public, no-cache"
+    );
   }
 
   @PostMapping("api/public/logout")
@@ -1,9 +1,7 @@
 package com.akiramenai.backend.filters;
 
-import com.akiramenai.backend.model.Users;
-import com.akiramenai.backend.repo.UserRepo;
-import com.akiramenai.backend.service.LoginActivityService;
-import com.akiramenai.backend.service.UserService;
+import com.akiramenai.backend.service.LoginActivityTracker;
+import com.akiramenai.backend.utility.IdParser;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -15,21 +13,16 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
 @Component
 public class ActivityFilter extends OncePerRequestFilter {
-  private final UserService userService;
-  private final UserRepo userRepo;
-  private final LoginActivityService loginActivityService;
+  private final LoginActivityTracker loginActivityTracker;
 
-  public ActivityFilter(UserService userService, UserRepo userRepo, LoginActivityService loginActivityService) {
-    this.userService = userService;
-    this.userRepo = userRepo;
-    this.loginActivityService = loginActivityService;
+  public ActivityFilter(LoginActivityTracker loginActivityTracker) {
+    this.loginActivityTracker = loginActivityTracker;
   }
 
   @Override
@@ -44,33 +37,15 @@ public class ActivityFilter extends OncePerRequestFilter {
       return;
     }
 
-    UUID userID = UUID.fromString(userIdStr.toString());
-    Optional<Users> targetUser = userService.findUserById(userID);
-    if (targetUser.isEmpty()) {
-      log.warn("Invalid user ID provided. User with ID `{}` not found.", userID);
+    Optional<UUID> userID = IdParser.parseId(userIdStr.toString());
+    if (userID.isEmpty()) {
+      log.warn("Invalid user ID provided: `{}`.", userIdStr);
       filterChain.doFilter(request, response);
       return;
     }
 
-    LocalDate lastUserLoginDate = targetUser.get().getLastLoginDate();
-    LocalDate dateToday = LocalDate.now();
-
-    loginActivityService.addLoginActivity(userID, dateToday);
-
-    if (lastUserLoginDate.equals(dateToday)) {
-      filterChain.doFilter(request, response);
-      return;
-    }
-
-    long dayDiff = ChronoUnit.DAYS.between(lastUserLoginDate, dateToday);
-    if (dayDiff == 1) {
-      targetUser.get().setLoginStreak(targetUser.get().getLoginStreak() + 1);
-    }
-    if (dayDiff > 1) {
-      targetUser.get().setLoginStreak(1);
-    }
-    targetUser.get().setLastLoginDate(dateToday);
-    userRepo.save(targetUser.get());
+    // The login activity and the login streak are written in the background by the tracker
+    loginActivityTracker.recordActivity(userID.get(), LocalDate.now());
 
     filterChain.doFilter(request, response);
   }
@@ -8,7 +8,6 @@ import com.akiramenai.backend.utility.RefreshTokenHandler;
 import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
-import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.lang.NonNull;
@@ -17,7 +16,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Optional;
 
 @Component
@@ -35,15 +33,6 @@ public class JwtFilter extends OncePerRequestFilter {
       @NonNull FilterChain filterChain
   ) throws ServletException, IOException {
     String authHeader = request.getHeader("Authorization");
-    Optional<String> refreshToken = RefreshTokenHandler.getFromCookie(request);
-
-    Optional<Claims> refreshTokenClaims = Optional.empty();
-    if (refreshToken.isPresent()) {
-      ResultOrError<Claims, JwtErrorTypes> extractedClaims = jwtService.extractClaim(refreshToken.get());
-      if (extractedClaims.errorType() == null) {
-        refreshTokenClaims = Optional.of(extractedClaims.result());
-      }
-    }
 
     Optional<Claims> accessTokenClaims = Optional.empty();
     if (authHeader != null && authHeader.startsWith("Bearer ")) {
@@ -56,6 +45,20 @@ public class JwtFilter extends OncePerRequestFilter {
       }
     }
 
+    // The refresh token is only needed when the access token is missing or no longer valid, so we
+    // don't pay for verifying it on every request.
+    Optional<String> refreshToken = Optional.empty();
+    Optional<Claims> refreshTokenClaims = Optional.empty();
+    if (accessTokenClaims.isEmpty()) {
+      refreshToken = RefreshTokenHandler.getFromCookie(request);
+      if (refreshToken.isPresent()) {
+        ResultOrError<Claims, JwtErrorTypes> extractedClaims = jwtService.extractClaim(refreshToken.get());
+        if (extractedClaims.errorType() == null) {
+          refreshTokenClaims = Optional.of(extractedClaims.result());
+        }
+      }
+    }
+
     Claims validClaims = null;
     if (accessTokenClaims.isEmpty()) {
       if (refreshTokenClaims.isPresent()) {
@@ -0,0 +1,11 @@
+package com.akiramenai.backend.model;
+
+import java.util.UUID;
+
+// The bits of a user that are shown next to the things they've authored
+public record AuthorInfo(
+    UUID id,
+    String username,
+    String pfpFileName
+) {
+}
@@ -2,6 +2,7 @@ package com.akiramenai.backend.model;
 
 import lombok.Builder;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.UUID;
 
@@ -41,4 +42,57 @@ public record CleanedCourse(
         course.getLastModifiedAt().toString()
     );
   }
+
+  // Used by the repository projections, which select the columns directly instead of loading `Course` entities.
+  // The tags and items live in their own tables and are attached afterwards with `withCollections()`.
+  public CleanedCourse(
+      UUID id,
+      UUID instructorId,
+      String instructorName,
+      String title,
+      String description,
+      String thumbnailImageName,
+      double price,
+      Long totalStars,
+      Long usersWhoRatedCount,
+      LocalDateTime createdAt,
+      LocalDateTime lastModifiedAt
+  ) {
+    this(
+        id,
+        instructorId,
+        instructorName,
+        title,
+        description,
+        thumbnailImageName,
+        List.of(),
+        List.of(),
+        price,
+        (usersWhoRatedCount > 0L
+            ? (double) totalStars / (double) usersWhoRatedCount
+            : 0.0
+        ),
+        usersWhoRatedCount,
+        createdAt.toString(),
+        lastModifiedAt.toString()
+    );
+  }
+
+  public CleanedCourse withCollections(List<String> tags, List<String> courseItemIds) {
+    return new CleanedCourse(
+        id,
+        instructorId,
+        instructorName,
+        title,
+        description,
+        thumbnailImageName,
+        tags,
+        courseItemIds,
+        price,
+        rating,
+        voterCount,
+        createdAt,
+        lastModifiedAt
+    );
+  }
 }
@@ -0,0 +1,22 @@
+package com.akiramenai.backend.model;
+
+public record CleanedCourseProgress(
+    String courseId,
+    long completedCount,
+    long totalCount,
+    double completionPercentage,
+    String lastActivity
+) {
+  public CleanedCourseProgress(CourseProgress progress, long totalCount) {
+    this(
+        progress.getCourseId().toString(),
+        progress.getCompletedCount(),
+        totalCount,
+        (totalCount > 0L
+            ? Math.min(100.0, 100.0 * progress.getCompletedCount() / totalCount)
+            : 0.0
+        ),
+        progress.getLastActivity().toString()
+    );
+  }
+}
@@ -13,7 +13,7 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "coding_tests")
+@Table(name = "coding_tests", indexes = @Index(name = "idx_coding_tests_item_id", columnList = "itemId"))
 public class CodingTest {
   @Id
   @GeneratedValue(strategy = GenerationType.UUID)
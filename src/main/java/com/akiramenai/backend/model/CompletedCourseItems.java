@@ -8,7 +8,14 @@ import java.time.LocalDate;
 import java.util.UUID;
 
 @Entity
-@Table(name = "completed_course_items")
+@Table(
+    name = "completed_course_items",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_completed_course_items_learner_item",
+        columnNames = {"learner_id", "item_id"}
+    ),
+    indexes = @Index(name = "idx_completed_course_items_learner_course", columnList = "learnerId, associatedCourseId")
+)
 @Getter
 @Setter
 @Builder
@@ -4,6 +4,9 @@ import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import lombok.*;
 import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.Fetch;
+import org.hibernate.annotations.FetchMode;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
 
@@ -12,7 +15,11 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "courses")
+@Table(
+    name = "courses",
+    indexes = @Index(name = "idx_courses_catalog", columnList = "is_published, is_hidden, created_at, id")
+)
+@DynamicUpdate
 @Getter
 @Setter
 @Builder
@@ -43,22 +50,47 @@ public class Course {
 
   private String thumbnailImageName;
 
+  // The tags and the items are kept in their own ordered tables (`course_tag` and `course_item`), so adding or
+  // removing one only inserts/deletes its row (and shifts the positions after it) instead of rewriting the
+  // whole list in the course's row. Change them in place, replacing the list makes Hibernate recreate every row.
   @NotNull
+  @ElementCollection(fetch = FetchType.EAGER)
+  @Fetch(FetchMode.SUBSELECT)
+  @CollectionTable(
+      name = "course_tag",
+      joinColumns = @JoinColumn(name = "course_id"),
+      indexes = @Index(name = "idx_course_tag_tag", columnList = "tag")
+  )
+  @OrderColumn(name = "position")
+  @Column(name = "tag", nullable = false)
   private List<String> tags;
 
   @NotNull
+  @ElementCollection(fetch = FetchType.EAGER)
+  @Fetch(FetchMode.SUBSELECT)
+  @CollectionTable(
+      name = "course_item",
+      joinColumns = @JoinColumn(name = "course_id"),
+      indexes = @Index(name = "idx_course_item_item_id", columnList = "item_id")
+  )
+  @OrderColumn(name = "position")
+  @Column(name = "item_id", nullable = false)
   private List<String> courseItemIds;
 
   @DecimalMin("1.0")
   @ColumnDefault("0.0")
   private double price;
 
+  // Only changed by `CourseRepo.addRatings()`. Saving a course that was loaded before a rating was applied would
+  // otherwise write the old values back.
   @NotNull
   @ColumnDefault("0")
+  @Column(updatable = false)
   private Long totalStars;
 
   @NotNull
   @ColumnDefault("0")
+  @Column(updatable = false)
   private Long usersWhoRatedCount;
 
   @CreatedDate
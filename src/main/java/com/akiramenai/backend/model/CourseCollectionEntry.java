@@ -0,0 +1,10 @@
+package com.akiramenai.backend.model;
+
+import java.util.UUID;
+
+// One row of `course_tag` or `course_item`: a tag or an item ID and the course it belongs to
+public record CourseCollectionEntry(
+    UUID courseId,
+    String value
+) {
+}
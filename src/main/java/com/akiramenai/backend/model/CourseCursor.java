@@ -0,0 +1,11 @@
+package com.akiramenai.backend.model;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Position of a course in the catalog's (createdAt, id) ordering
+public record CourseCursor(
+    LocalDateTime createdAt,
+    UUID id
+) {
+}
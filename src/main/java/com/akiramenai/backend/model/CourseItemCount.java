@@ -0,0 +1,9 @@
+package com.akiramenai.backend.model;
+
+import java.util.UUID;
+
+public record CourseItemCount(
+    UUID courseId,
+    long itemCount
+) {
+}
@@ -0,0 +1,48 @@
+package com.akiramenai.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// How far a learner has got in a course, kept up to date as they complete items (see `CourseProgressService`),
+// so that it doesn't have to be counted from `completed_course_items` every time. The total is counted from
+// `course_item` when the progress is read, since items are also added by the video microservice.
+@Entity
+@Table(
+    name = "course_progress",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_course_progress_learner_course",
+        columnNames = {"learner_id", "course_id"}
+    ),
+    indexes = @Index(name = "idx_course_progress_course_id", columnList = "course_id")
+)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CourseProgress {
+  @Id
+  @GeneratedValue(strategy = GenerationType.UUID)
+  private UUID id;
+
+  @NotNull
+  @Column(name = "learner_id")
+  private UUID learnerId;
+
+  @NotNull
+  @Column(name = "course_id")
+  private UUID courseId;
+
+  // completed items that are (still) part of the course
+  @NotNull
+  @Column(name = "completed_count")
+  private Long completedCount;
+
+  @NotNull
+  @Column(name = "last_activity")
+  private LocalDateTime lastActivity;
+}
@@ -0,0 +1,9 @@
+package com.akiramenai.backend.model;
+
+import java.util.List;
+
+public record CourseProgressResponse(
+    int courseCount,
+    List<CleanedCourseProgress> courses
+) {
+}
@@ -0,0 +1,21 @@
+package com.akiramenai.backend.model;
+
+import lombok.Builder;
+
+import java.util.List;
+import java.util.Map;
+
+// Same shape as Meilisearch's paginated search results, so that the response doesn't depend on the engine used
+@Builder
+public record CourseSearchResults(
+    int totalHits,
+    int hitsPerPage,
+    int page,
+    int totalPages,
+    List<Map<String, Object>> hits,
+    Object facetDistribution,
+    Object facetStats,
+    long processingTimeMs,
+    String query
+) {
+}
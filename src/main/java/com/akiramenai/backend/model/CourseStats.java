@@ -0,0 +1,31 @@
+package com.akiramenai.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// Counters of a course that would otherwise be counted from `purchases` on every view. `soldCount` is incremented
+// in the same transaction as the purchase (see `CourseStatsService`).
+@Entity
+@Table(name = "course_stats")
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CourseStats {
+  @Id
+  @Column(name = "course_id")
+  private UUID courseId;
+
+  @NotNull
+  @Column(name = "sold_count", nullable = false)
+  private Long soldCount;
+
+  @NotNull
+  @Column(name = "updated_at", nullable = false)
+  private LocalDateTime updatedAt;
+}
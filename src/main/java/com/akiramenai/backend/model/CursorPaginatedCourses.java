@@ -0,0 +1,16 @@
+package com.akiramenai.backend.model;
+
+import lombok.Builder;
+
+import java.util.List;
+
+@Builder
+public record CursorPaginatedCourses<T>(
+    int retrievedCourseCount,
+    List<T> retrievedCourses,
+
+    int pageSize,
+    String nextCursor, // null when there are no more courses
+    Long totalCourseCount // null unless it was requested
+) {
+}
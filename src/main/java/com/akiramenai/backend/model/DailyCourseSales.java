@@ -0,0 +1,48 @@
+package com.akiramenai.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDate;
+import java.util.UUID;
+
+// Rollup of the `purchases` table: the number of copies of a course sold on a day, and the revenue they made.
+// It's updated in the same transaction as the purchase itself (see `SalesRollupService`).
+@Entity
+@Table(
+    name = "daily_course_sales",
+    uniqueConstraints = @UniqueConstraint(
+        name = "uk_daily_course_sales_author_course_date",
+        columnNames = {"author_id", "course_id", "sale_date"}
+    ),
+    indexes = @Index(name = "idx_daily_course_sales_author_date", columnList = "author_id, sale_date")
+)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyCourseSales {
+  @Id
+  @GeneratedValue(strategy = GenerationType.UUID)
+  private UUID id;
+
+  @NotNull
+  @Column(name = "author_id", nullable = false)
+  private UUID authorId;
+
+  @NotNull
+  @Column(name = "course_id", nullable = false)
+  private UUID courseId;
+
+  @NotNull
+  @Column(name = "sale_date", nullable = false)
+  private LocalDate saleDate;
+
+  @Column(name = "courses_sold", nullable = false)
+  private long coursesSold;
+
+  @Column(name = "revenue", nullable = false)
+  private double revenue;
+}
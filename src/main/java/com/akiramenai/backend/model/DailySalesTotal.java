@@ -0,0 +1,11 @@
+package com.akiramenai.backend.model;
+
+import java.time.LocalDate;
+
+// Sales of all the courses of an author on one day
+public record DailySalesTotal(
+    LocalDate saleDate,
+    Long coursesSold,
+    Double revenueGenerated
+) {
+}
@@ -23,6 +23,7 @@ public record DetailedCourse(
     String createdAt,
     String lastModifiedAt
 ) {
+  // The lists are copied, since these are cached long after the `Course` (and its Hibernate collections) is gone
   public DetailedCourse(Course course, long courseSoldCount) {
     this(
         course.getId(),
@@ -31,8 +32,8 @@ public record DetailedCourse(
         course.getTitle(),
         course.getDescription(),
         course.getThumbnailImageName(),
-        course.getTags(),
-        course.getCourseItemIds(),
+        List.copyOf(course.getTags()),
+        List.copyOf(course.getCourseItemIds()),
         course.getPrice(),
         (course.getUsersWhoRatedCount() > 0L
             ? (double) course.getTotalStars() / (double) course.getUsersWhoRatedCount()
@@ -44,4 +45,11 @@ public record DetailedCourse(
         course.getLastModifiedAt().toString()
     );
   }
+
+  public DetailedCourse withCourseSoldCount(long courseSoldCount) {
+    return new DetailedCourse(
+        id, instructorId, instructorName, title, description, thumbnailImageName, tags, courseItemIds, price,
+        rating, voterCount, courseSoldCount, createdAt, lastModifiedAt
+    );
+  }
 }
@@ -6,4 +6,5 @@ public enum FileUploadErrorTypes {
   UnsupportedFileType,
   FailedToCreateUploadDir,
   FailedToSaveFile,
+  FileTooLarge,
 }
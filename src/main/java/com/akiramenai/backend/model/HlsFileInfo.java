@@ -0,0 +1,13 @@
+package com.akiramenai.backend.model;
+
+import java.nio.file.Path;
+
+// `isFinal` is true once the video has been processed, and the file won't change anymore
+public record HlsFileInfo(
+    Path path,
+    long size,
+    long lastModifiedMillis,
+    String contentType,
+    boolean isFinal
+) {
+}
@@ -0,0 +1,14 @@
+package com.akiramenai.backend.model;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+// The HLS files of one video, keyed by their path relative to the video's directory (e.g. `720p/segment001.ts`).
+// `isProcessed` is false while the video is still being processed, when the files can still change.
+public record HlsVideoDescriptor(
+    Path directory,
+    Map<String, HlsFileInfo> files,
+    long scannedAtMillis,
+    boolean isProcessed
+) {
+}
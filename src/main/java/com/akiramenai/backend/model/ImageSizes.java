@@ -0,0 +1,29 @@
+package com.akiramenai.backend.model;
+
+import java.util.Optional;
+
+// The variants every uploaded picture is available in. The variants keep the aspect ratio of the original
+// and are never larger than it.
+public enum ImageSizes {
+  Small(160),
+  Medium(480),
+  Large(1024),
+  Original(Integer.MAX_VALUE);
+
+  public final int maxWidth;
+
+  ImageSizes(int maxWidth) {
+    this.maxWidth = maxWidth;
+  }
+
+  // parses the `size` request parameter (`small`, `medium`, `large` or `original`)
+  public static Optional<ImageSizes> fromParam(String param) {
+    for (ImageSizes size : values()) {
+      if (size.name().equalsIgnoreCase(param)) {
+        return Optional.of(size);
+      }
+    }
+
+    return Optional.empty();
+  }
+}
@@ -1,5 +1,6 @@
 package com.akiramenai.backend.model;
 
+import com.akiramenai.backend.utility.ActivityBitmap;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
@@ -30,9 +31,15 @@ public class LoginActivity {
   @NotNull
   private int year;
 
+  // One bit per day of the year. See `ActivityBitmap` for the layout.
+  @Column(name = "activity_bits", length = ActivityBitmap.BYTE_LENGTH)
+  private byte[] activityBits;
+
+  // The encoding used before `activityBits`. It's only read to migrate old rows and is null for new ones.
   // We use the following notation in the array:
   // 0 -> Didn't log in that day
   // 1 -> Logged in that day
   // -1 -> To indicate that day is the unavailable leap year day (for non-leap years)
-  private ArrayList<Integer> activity;
+  @Column(name = "activity")
+  private ArrayList<Integer> legacyActivity;
 }
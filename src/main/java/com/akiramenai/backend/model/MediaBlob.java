@@ -0,0 +1,48 @@
+package com.akiramenai.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// An uploaded file stored under the hash of its content. Every course, user or terminal test that points
+// at the file holds one reference, and the file is deleted once the last one is released.
+@Entity
+@Table(
+    name = "media_blobs",
+    uniqueConstraints = @UniqueConstraint(name = "uk_media_blobs_store_file_name", columnNames = {"store", "file_name"})
+)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaBlob {
+  @Id
+  @GeneratedValue(strategy = GenerationType.UUID)
+  private UUID id;
+
+  @NotNull
+  @Enumerated(EnumType.STRING)
+  @Column(name = "store")
+  private MediaStores store;
+
+  // SHA-256 of the content (hex) plus the extension
+  @NotNull
+  @Column(name = "file_name")
+  private String fileName;
+
+  @NotNull
+  @Column(name = "size_bytes")
+  private Long sizeBytes;
+
+  @NotNull
+  @Column(name = "reference_count")
+  private Long referenceCount;
+
+  @NotNull
+  @Column(name = "created_at")
+  private LocalDateTime createdAt;
+}
@@ -0,0 +1,7 @@
+package com.akiramenai.backend.model;
+
+// the directories whose uploads are stored by content (see `MediaBlobService`)
+public enum MediaStores {
+  Pictures,
+  Scripts
+}
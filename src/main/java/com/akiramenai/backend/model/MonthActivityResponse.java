@@ -3,6 +3,7 @@ package com.akiramenai.backend.model;
 import java.util.List;
 
 public record MonthActivityResponse(
-    List<Integer> activityInMonth
+    List<Integer> activityInMonth,
+    long activeDays
 ) {
 }
@@ -0,0 +1,8 @@
+package com.akiramenai.backend.model;
+
+public enum OutboxStatus {
+  Pending,
+  Processing,
+  Done,
+  Failed
+}
@@ -0,0 +1,33 @@
+package com.akiramenai.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+// Stripe events (and checkout sessions) whose purchase has already been stored. Stripe delivers events at
+// least once, the unique constraints make sure that every delivery after the first one is ignored.
+@Entity
+@Table(
+    name = "processed_stripe_events",
+    uniqueConstraints = @UniqueConstraint(name = "uk_processed_stripe_events_session", columnNames = "session_id"),
+    indexes = @Index(name = "idx_processed_stripe_events_received_at", columnList = "received_at")
+)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProcessedStripeEvent {
+  @Id
+  @Column(name = "event_id")
+  private String eventId;
+
+  @Column(name = "session_id")
+  private String sessionId;
+
+  @NotNull
+  @Column(name = "received_at")
+  private LocalDateTime receivedAt;
+}
@@ -9,7 +9,7 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "purchases")
+@Table(name = "purchases", indexes = @Index(name = "idx_purchases_course_id", columnList = "courseId"))
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,58 @@
+package com.akiramenai.backend.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// A paid purchase that still has to be fulfilled. Rows are written by the Stripe webhook and consumed by the
+// workers of `PurchaseOutboxService`, so nothing is lost if the server restarts in between.
+@Entity
+@Table(
+    name = "purchase_outbox",
+    indexes = @Index(name = "idx_purchase_outbox_status_next_attempt", columnList = "status, next_attempt_at")
+)
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PurchaseOutbox {
+  @Id
+  @GeneratedValue(strategy = GenerationType.UUID)
+  private UUID id;
+
+  @NotNull
+  @Enumerated(EnumType.STRING)
+  private PurchaseTypes purchaseType;
+
+  @NotNull
+  private UUID userId;
+
+  private UUID courseId;
+
+  private Integer storageToAddInGBs;
+
+  @NotNull
+  @Enumerated(EnumType.STRING)
+  private OutboxStatus status;
+
+  private int attempts;
+
+  @NotNull
+  @Column(name = "next_attempt_at")
+  private LocalDateTime nextAttemptAt;
+
+  // when a worker took the row, used to give the rows of crashed workers to someone else
+  private LocalDateTime claimedAt;
+
+  @NotNull
+  private LocalDateTime createdAt;
+
+  private LocalDateTime completedAt;
+
+  @Column(length = 1000)
+  private String lastError;
+}
@@ -15,7 +15,7 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "quizzes")
+@Table(name = "quizzes", indexes = @Index(name = "idx_quizzes_item_id", columnList = "itemId"))
 public class Quiz {
   @Id
   @GeneratedValue(strategy = GenerationType.UUID)
@@ -0,0 +1,7 @@
+package com.akiramenai.backend.model;
+
+public enum SearchEngines {
+  Meili,
+  Local,
+  MeiliWithFallback
+}
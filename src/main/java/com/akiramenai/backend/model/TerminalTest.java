@@ -13,7 +13,7 @@ import java.util.UUID;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "terminal_tests")
+@Table(name = "terminal_tests", indexes = @Index(name = "idx_terminal_tests_item_id", columnList = "itemId"))
 public class TerminalTest {
   @Id
   @GeneratedValue(strategy = GenerationType.UUID)
@@ -8,12 +8,14 @@ import jakarta.validation.constraints.Size;
 import lombok.Getter;
 import lombok.Setter;
 import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
 import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDate;
 import java.util.UUID;
 
 @Entity
+@DynamicUpdate
 @Table(name = "users")
 @Getter
 @Setter
@@ -50,10 +52,14 @@ public class Users {
   @Enumerated(EnumType.STRING)
   private UserType userType;
 
+  // The storage columns are only written on insert. Afterwards they're changed by the conditional updates of
+  // `StorageQuotaService` alone, so saving a (possibly stale) user can't undo a concurrent reservation.
   @NotNull
+  @Column(updatable = false)
   private long totalStorageInBytes;
 
   @NotNull
+  @Column(updatable = false)
   private long usedStorageInBytes;
 
   @UpdateTimestamp
@@ -13,7 +13,7 @@ import java.util.UUID;
 @Setter
 @Builder
 @Entity
-@Table(name = "video_metadata")
+@Table(name = "video_metadata", indexes = @Index(name = "idx_video_metadata_item_id", columnList = "itemId"))
 @NoArgsConstructor
 @AllArgsConstructor
 public class VideoMetadata {
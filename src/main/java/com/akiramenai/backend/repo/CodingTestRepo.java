@@ -3,6 +3,8 @@ package com.akiramenai.backend.repo;
 import com.akiramenai.backend.model.CodingTest;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -10,4 +12,6 @@ public interface CodingTestRepo extends JpaRepository<CodingTest, UUID> {
   Optional<CodingTest> findCodingTestById(UUID id);
 
   Optional<CodingTest> findCodingTestByItemId(String itemId);
+
+  List<CodingTest> findAllByItemIdIn(Collection<String> itemIds);
 }
@@ -3,7 +3,11 @@ package com.akiramenai.backend.repo;
 import com.akiramenai.backend.model.CompletedCourseItems;
 import com.akiramenai.backend.model.CourseItems;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -22,4 +26,26 @@ public interface CompletedCourseItemsRepo extends JpaRepository<CompletedCourseI
   );
 
   boolean existsByLearnerIdAndItemId(UUID learnerId, String itemId);
+
+  // Returns 0 if the learner has already completed the item (unique on learner_id, item_id)
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO completed_course_items (id, learner_id, associated_course_id, item_id, item_type, completed_at)
+      VALUES (gen_random_uuid(), :learnerId, :courseId, :itemId, :itemType, :completedAt)
+      ON CONFLICT DO NOTHING
+      """)
+  int addIfAbsent(
+      @Param("learnerId") UUID learnerId,
+      @Param("courseId") UUID courseId,
+      @Param("itemId") String itemId,
+      @Param("itemType") int itemType,
+      @Param("completedAt") LocalDate completedAt
+  );
+
+  @Query("""
+      SELECT c.itemId FROM CompletedCourseItems c
+      WHERE c.learnerId = :learnerId AND c.associatedCourseId = :courseId
+      """)
+  List<String> findCompletedItemIds(@Param("learnerId") UUID learnerId, @Param("courseId") UUID courseId);
 }
@@ -0,0 +1,94 @@
+package com.akiramenai.backend.repo;
+
+import com.akiramenai.backend.model.CourseProgress;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface CourseProgressRepo extends JpaRepository<CourseProgress, UUID> {
+  List<CourseProgress> findAllByLearnerIdOrderByLastActivityDesc(UUID learnerId);
+
+  // Creates the learner's progress row for a course they just bought (nothing completed yet)
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO course_progress (id, learner_id, course_id, completed_count, last_activity)
+      VALUES (gen_random_uuid(), :learnerId, :courseId, 0, :now)
+      ON CONFLICT (learner_id, course_id) DO NOTHING
+      """)
+  int addCourse(@Param("learnerId") UUID learnerId, @Param("courseId") UUID courseId, @Param("now") LocalDateTime now);
+
+  // Counts one more completed item, if the item is part of the course
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO course_progress (id, learner_id, course_id, completed_count, last_activity)
+      SELECT gen_random_uuid(), :learnerId, :courseId, 1, :now
+      WHERE EXISTS (SELECT 1 FROM course_item ci WHERE ci.course_id = :courseId AND ci.item_id = :itemId)
+      ON CONFLICT (learner_id, course_id) DO UPDATE
+      SET completed_count = course_progress.completed_count + 1,
+          last_activity = EXCLUDED.last_activity
+      """)
+  int addCompletedItem(
+      @Param("learnerId") UUID learnerId,
+      @Param("courseId") UUID courseId,
+      @Param("itemId") String itemId,
+      @Param("now") LocalDateTime now
+  );
+
+  // Recounts the completed items of every learner of the course, after items were removed from it. Completions
+  // of items that are no longer part of the course don't count.
+  @Modifying(flushAutomatically = true)
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      UPDATE course_progress p
+      SET completed_count = (
+        SELECT COUNT(*)
+        FROM completed_course_items c
+        JOIN course_item ci ON ci.course_id = c.associated_course_id AND ci.item_id = c.item_id
+        WHERE c.learner_id = p.learner_id AND c.associated_course_id = p.course_id
+      )
+      WHERE p.course_id = :courseId
+      """)
+  int recountCourse(@Param("courseId") UUID courseId);
+
+  // Creates the missing progress rows of the purchases (e.g. the ones made before the progress was tracked)
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO course_progress (id, learner_id, course_id, completed_count, last_activity)
+      SELECT
+        gen_random_uuid(), p.buyer_id, p.course_id,
+        (
+          SELECT COUNT(*)
+          FROM completed_course_items c
+          JOIN course_item ci ON ci.course_id = c.associated_course_id AND ci.item_id = c.item_id
+          WHERE c.learner_id = p.buyer_id AND c.associated_course_id = p.course_id
+        ),
+        COALESCE(
+          GREATEST(
+            p.purchase_timestamp,
+            (
+              SELECT MAX(c.completed_at)::timestamp
+              FROM completed_course_items c
+              WHERE c.learner_id = p.buyer_id AND c.associated_course_id = p.course_id
+            )
+          ),
+          now()
+        )
+      FROM purchases p
+      WHERE NOT EXISTS (
+        SELECT 1 FROM course_progress cp WHERE cp.learner_id = p.buyer_id AND cp.course_id = p.course_id
+      )
+      ON CONFLICT (learner_id, course_id) DO NOTHING
+      """)
+  int addMissingPurchases();
+}
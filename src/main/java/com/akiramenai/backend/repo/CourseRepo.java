@@ -1,6 +1,9 @@
 package com.akiramenai.backend.repo;
 
+import com.akiramenai.backend.model.CleanedCourse;
 import com.akiramenai.backend.model.Course;
+import com.akiramenai.backend.model.CourseCollectionEntry;
+import com.akiramenai.backend.model.CourseItemCount;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -10,7 +13,10 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -18,6 +24,10 @@ import java.util.UUID;
 public interface CourseRepo extends JpaRepository<Course, UUID> {
   Optional<Course> findCourseById(UUID id);
 
+  // with the instructor, so that a `DetailedCourse` can be built outside of the session
+  @Query("SELECT c FROM Course c JOIN FETCH c.instructor WHERE c.id = :id")
+  Optional<Course> findCourseWithInstructorById(@Param("id") UUID id);
+
   Page<Course> findAllByIsPublishedAndIsHidden(Boolean isPublished, Boolean isHidden, Pageable pageable);
 
   Page<Course> findAllByInstructorId(UUID instructorId, Pageable pageable);
@@ -26,11 +36,137 @@ public interface CourseRepo extends JpaRepository<Course, UUID> {
 
   Optional<Course> findCourseByTitle(String title);
 
+  @Query("SELECT c.id FROM Course c WHERE c.instructorId = :userId")
+  List<UUID> findIdsByInstructorId(@Param("userId") UUID userId);
+
+  // Bypasses the course change events, use `CourseService.hideCoursesOf()` so that the search index is updated too
+  @Modifying
+  @Transactional
+  @Query("UPDATE Course c SET c.isHidden = true, c.lastModifiedAt = :now WHERE c.instructorId = :userId")
+  void hideCoursesByUserId(@Param("userId") UUID userId, @Param("now") LocalDateTime now);
+
+  // Only touches the rating columns, so concurrent ratings (or edits of the course) can't overwrite each other
   @Modifying
   @Transactional
-  @Query("UPDATE Course c SET c.isHidden = true WHERE c.instructorId = :userId")
-  void hideCoursesByUserId(@Param("userId") UUID userId);
+  @Query("""
+      UPDATE Course c SET
+          c.totalStars = c.totalStars + :stars,
+          c.usersWhoRatedCount = c.usersWhoRatedCount + :ratings,
+          c.lastModifiedAt = :modifiedAt
+      WHERE c.id = :courseId
+      """)
+  int addRatings(
+      @Param("courseId") UUID courseId,
+      @Param("stars") long stars,
+      @Param("ratings") long ratings,
+      @Param("modifiedAt") LocalDateTime modifiedAt
+  );
 
   @Query("SELECT title from Course where isPublished = true")
   ArrayList<String> getPublishedCourseTitles();
+
+  @Query("""
+      SELECT new com.akiramenai.backend.model.CleanedCourse(
+        c.id, c.instructorId, u.username, c.title, c.description, c.thumbnailImageName, c.price,
+        c.totalStars, c.usersWhoRatedCount, c.createdAt, c.lastModifiedAt
+      )
+      FROM Course c JOIN c.instructor u
+      WHERE c.id IN :ids
+      """)
+  List<CleanedCourse> findCleanedCoursesByIdIn(@Param("ids") Collection<UUID> ids);
+
+  // The tags and items of several courses at once (the projections above don't include them), in their order
+  @Query("""
+      SELECT new com.akiramenai.backend.model.CourseCollectionEntry(c.id, t)
+      FROM Course c JOIN c.tags t
+      WHERE c.id IN :ids
+      ORDER BY c.id, index(t)
+      """)
+  List<CourseCollectionEntry> findTagsByCourseIdIn(@Param("ids") Collection<UUID> ids);
+
+  @Query("""
+      SELECT new com.akiramenai.backend.model.CourseCollectionEntry(c.id, i)
+      FROM Course c JOIN c.courseItemIds i
+      WHERE c.id IN :ids
+      ORDER BY c.id, index(i)
+      """)
+  List<CourseCollectionEntry> findItemIdsByCourseIdIn(@Param("ids") Collection<UUID> ids);
+
+  // Courses without items aren't returned
+  @Query("""
+      SELECT new com.akiramenai.backend.model.CourseItemCount(c.id, COUNT(i))
+      FROM Course c JOIN c.courseItemIds i
+      WHERE c.id IN :ids
+      GROUP BY c.id
+      """)
+  List<CourseItemCount> countItemsByCourseIdIn(@Param("ids") Collection<UUID> ids);
+
+  long countByIsPublishedAndIsHidden(Boolean isPublished, Boolean isHidden);
+
+  // Keyset pagination of the public catalog. These are served by the (is_published, is_hidden, created_at, id)
+  // index and never scan the rows of the previous pages. The page size comes from the `Pageable`, no count query
+  // is issued for it since the return type is a `List`.
+  @Query("""
+      SELECT new com.akiramenai.backend.model.CleanedCourse(
+        c.id, c.instructorId, u.username, c.title, c.description, c.thumbnailImageName, c.price,
+        c.totalStars, c.usersWhoRatedCount, c.createdAt, c.lastModifiedAt
+      )
+      FROM Course c JOIN c.instructor u
+      WHERE c.isPublished = true AND c.isHidden = false
+      ORDER BY c.createdAt ASC, c.id ASC
+      """)
+  List<CleanedCourse> findFirstPublishedCoursesAsc(Pageable pageable);
+
+  @Query("""
+      SELECT new com.akiramenai.backend.model.CleanedCourse(
+        c.id, c.instructorId, u.username, c.title, c.description, c.thumbnailImageName, c.price,
+        c.totalStars, c.usersWhoRatedCount, c.createdAt, c.lastModifiedAt
+      )
+      FROM Course c JOIN c.instructor u
+      WHERE c.isPublished = true AND c.isHidden = false
+      ORDER BY c.createdAt DESC, c.id DESC
+      """)
+  List<CleanedCourse> findFirstPublishedCoursesDesc(Pageable pageable);
+
+  @Query("""
+      SELECT new com.akiramenai.backend.model.CleanedCourse(
+        c.id, c.instructorId, u.username, c.title, c.description, c.thumbnailImageName, c.price,
+        c.totalStars, c.usersWhoRatedCount, c.createdAt, c.lastModifiedAt
+      )
+      FROM Course c JOIN c.instructor u
+      WHERE c.isPublished = true AND c.isHidden = false
+        AND (c.createdAt, c.id) > (:createdAt, :id)
+      ORDER BY c.createdAt ASC, c.id ASC
+      """)
+  List<CleanedCourse> findPublishedCoursesAfter(
+      @Param("createdAt") LocalDateTime createdAt,
+      @Param("id") UUID id,
+      Pageable pageable
+  );
+
+  @Query("""
+      SELECT new com.akiramenai.backend.model.CleanedCourse(
+        c.id, c.instructorId, u.username, c.title, c.description, c.thumbnailImageName, c.price,
+        c.totalStars, c.usersWhoRatedCount, c.createdAt, c.lastModifiedAt
+      )
+      FROM Course c JOIN c.instructor u
+      WHERE c.isPublished = true AND c.isHidden = false
+        AND (c.createdAt, c.id) < (:createdAt, :id)
+      ORDER BY c.createdAt DESC, c.id DESC
+      """)
+  List<CleanedCourse> findPublishedCoursesBefore(
+      @Param("createdAt") LocalDateTime createdAt,
+      @Param("id") UUID id,
+      Pageable pageable
+  );
+
+  // Walks the searchable courses in `id` order, one chunk at a time, for the search reindex
+  @Query("""
+      SELECT c FROM Course c
+      WHERE c.isPublished = true AND c.isHidden = false AND c.id > :afterId
+      ORDER BY c.id
+      """)
+  List<Course> findSearchableCoursesAfterId(@Param("afterId") UUID afterId, Pageable pageable);
+
+  List<Course> findAllByLastModifiedAtAfter(LocalDateTime lastModifiedAt);
 }
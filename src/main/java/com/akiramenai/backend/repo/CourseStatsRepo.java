@@ -0,0 +1,47 @@
+package com.akiramenai.backend.repo;
+
+import com.akiramenai.backend.model.CourseStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface CourseStatsRepo extends JpaRepository<CourseStats, UUID> {
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO course_stats (course_id, sold_count, updated_at)
+      VALUES (:courseId, 1, clock_timestamp())
+      ON CONFLICT (course_id) DO UPDATE
+      SET sold_count = course_stats.sold_count + 1,
+          updated_at = clock_timestamp()
+      """)
+  void addSale(@Param("courseId") UUID courseId);
+
+  @Query("SELECT s.soldCount FROM CourseStats s WHERE s.courseId = :courseId")
+  Optional<Long> findSoldCountByCourseId(@Param("courseId") UUID courseId);
+
+  // Recounts the sales of every course from the purchases (the source of truth) and fixes the counters that
+  // drifted. Counters that were incremented after this statement started are left alone, their purchase may
+  // not be part of the count.
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO course_stats (course_id, sold_count, updated_at)
+      SELECT p.course_id, COUNT(*), clock_timestamp()
+      FROM purchases p
+      GROUP BY p.course_id
+      ON CONFLICT (course_id) DO UPDATE
+      SET sold_count = EXCLUDED.sold_count,
+          updated_at = EXCLUDED.updated_at
+      WHERE course_stats.sold_count <> EXCLUDED.sold_count
+        AND course_stats.updated_at < statement_timestamp()
+      """)
+  int reconcileWithPurchases();
+}
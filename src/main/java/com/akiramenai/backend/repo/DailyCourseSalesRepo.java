@@ -0,0 +1,62 @@
+package com.akiramenai.backend.repo;
+
+import com.akiramenai.backend.model.DailyCourseSales;
+import com.akiramenai.backend.model.DailySalesTotal;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+@Repository
+public interface DailyCourseSalesRepo extends JpaRepository<DailyCourseSales, UUID> {
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO daily_course_sales (id, author_id, course_id, sale_date, courses_sold, revenue)
+      VALUES (gen_random_uuid(), :authorId, :courseId, :saleDate, 1, :price)
+      ON CONFLICT (author_id, course_id, sale_date) DO UPDATE
+      SET courses_sold = daily_course_sales.courses_sold + 1,
+          revenue = daily_course_sales.revenue + EXCLUDED.revenue
+      """)
+  void addSale(
+      @Param("authorId") UUID authorId,
+      @Param("courseId") UUID courseId,
+      @Param("saleDate") LocalDate saleDate,
+      @Param("price") double price
+  );
+
+  // Recomputes the rollup of every (author, course, day) from the purchases. The purchases are the source of truth,
+  // so existing rows are overwritten. The sales added while it runs would be lost, so the caller has to lock the
+  // table first (see `SalesRollupService.backfillIfNotDone()`).
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO daily_course_sales (id, author_id, course_id, sale_date, courses_sold, revenue)
+      SELECT gen_random_uuid(), p.author_id, p.course_id, p.purchase_date, COUNT(*), SUM(p.price)
+      FROM purchases p
+      GROUP BY p.author_id, p.course_id, p.purchase_date
+      ON CONFLICT (author_id, course_id, sale_date) DO UPDATE
+      SET courses_sold = EXCLUDED.courses_sold,
+          revenue = EXCLUDED.revenue
+      """)
+  int rebuildFromPurchases();
+
+  @Query("""
+      SELECT new com.akiramenai.backend.model.DailySalesTotal(d.saleDate, SUM(d.coursesSold), SUM(d.revenue))
+      FROM DailyCourseSales d
+      WHERE d.authorId = :authorId AND d.saleDate BETWEEN :startDate AND :endDate
+      GROUP BY d.saleDate
+      ORDER BY d.saleDate
+      """)
+  List<DailySalesTotal> findDailyTotals(
+      @Param("authorId") UUID authorId,
+      @Param("startDate") LocalDate startDate,
+      @Param("endDate") LocalDate endDate
+  );
+}
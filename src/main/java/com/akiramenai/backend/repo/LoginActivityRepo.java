@@ -4,9 +4,15 @@ import com.akiramenai.backend.model.LoginActivity;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface LoginActivityRepo extends JpaRepository<LoginActivity, UUID> {
   Optional<LoginActivity> findLoginActivitiesByAssociatedUserIdAndYear(UUID associatedUser_id, @NotNull int year);
+
+  List<LoginActivity> findAllByAssociatedUserIdInAndYear(Collection<UUID> associatedUserIds, int year);
+
+  List<LoginActivity> findTop500ByActivityBitsIsNull();
 }
@@ -0,0 +1,39 @@
+package com.akiramenai.backend.repo;
+
+import com.akiramenai.backend.model.MediaBlob;
+import com.akiramenai.backend.model.MediaStores;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface MediaBlobRepo extends JpaRepository<MediaBlob, UUID> {
+  // Adds a reference to the blob, creating its row if it's the first one. The row stays locked until the
+  // surrounding transaction ends, so a concurrent release can't delete the file in between.
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO media_blobs (id, store, file_name, size_bytes, reference_count, created_at)
+      VALUES (gen_random_uuid(), :store, :fileName, :sizeBytes, 1, :createdAt)
+      ON CONFLICT (store, file_name) DO UPDATE SET reference_count = media_blobs.reference_count + 1
+      """)
+  int addReference(
+      @Param("store") String store,
+      @Param("fileName") String fileName,
+      @Param("sizeBytes") long sizeBytes,
+      @Param("createdAt") LocalDateTime createdAt
+  );
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("SELECT b FROM MediaBlob b WHERE b.store = :store AND b.fileName = :fileName")
+  Optional<MediaBlob> lockByStoreAndFileName(@Param("store") MediaStores store, @Param("fileName") String fileName);
+}
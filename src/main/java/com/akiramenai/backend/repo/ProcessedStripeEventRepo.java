@@ -0,0 +1,34 @@
+package com.akiramenai.backend.repo;
+
+import com.akiramenai.backend.model.ProcessedStripeEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ProcessedStripeEventRepo extends JpaRepository<ProcessedStripeEvent, String> {
+  // Returns 0 if the event or its session was already recorded, 1 otherwise. Concurrent deliveries of the same
+  // event wait for each other on the unique index, so exactly one of them gets a 1.
+  @Modifying
+  @Transactional
+  @Query(nativeQuery = true, value = """
+      INSERT INTO processed_stripe_events (event_id, session_id, received_at)
+      VALUES (:eventId, :sessionId, :receivedAt)
+      ON CONFLICT DO NOTHING
+      """)
+  int insertIfAbsent(
+      @Param("eventId") String eventId,
+      @Param("sessionId") String sessionId,
+      @Param("receivedAt") LocalDateTime receivedAt
+  );
+
+  @Modifying
+  @Transactional
+  @Query("DELETE FROM ProcessedStripeEvent e WHERE e.receivedAt < :receivedBefore")
+  int deleteReceivedBefore(@Param("receivedBefore") LocalDateTime receivedBefore);
+}
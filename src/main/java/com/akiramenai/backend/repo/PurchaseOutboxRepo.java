@@ -0,0 +1,42 @@
+package com.akiramenai.backend.repo;
+
+import com.akiramenai.backend.model.OutboxStatus;
+import com.akiramenai.backend.model.PurchaseOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface PurchaseOutboxRepo extends JpaRepository<PurchaseOutbox, UUID> {
+  // Locks the next due rows. Rows locked by other workers (on this node or on others) are skipped instead of
+  // waited for, so the workers never claim the same row. Has to be called in a transaction.
+  @Query(nativeQuery = true, value = """
+      SELECT * FROM purchase_outbox
+      WHERE status = 'Pending' AND next_attempt_at <= :now
+      ORDER BY next_attempt_at
+      LIMIT :batchSize
+      FOR UPDATE SKIP LOCKED
+      """)
+  List<PurchaseOutbox> lockDueEntries(@Param("now") LocalDateTime now, @Param("batchSize") int batchSize);
+
+  @Modifying
+  @Transactional
+  @Query("""
+      UPDATE PurchaseOutbox o SET o.status = com.akiramenai.backend.model.OutboxStatus.Pending, o.claimedAt = null
+      WHERE o.status = com.akiramenai.backend.model.OutboxStatus.Processing AND o.claimedAt < :claimedBefore
+      """)
+  int releaseStaleClaims(@Param("claimedBefore") LocalDateTime claimedBefore);
+
+  long countByStatusIn(Collection<OutboxStatus> statuses);
+
+  Optional<PurchaseOutbox> findFirstByStatusOrderByCreatedAtAsc(OutboxStatus status);
+}
@@ -3,6 +3,8 @@ package com.akiramenai.backend.repo;
 import com.akiramenai.backend.model.Quiz;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -10,4 +12,6 @@ public interface QuizRepo extends JpaRepository<Quiz, UUID> {
   Optional<Quiz> findQuizById(UUID id);
 
   Optional<Quiz> findQuizByItemId(String itemId);
+
+  List<Quiz> findAllByItemIdIn(Collection<String> itemIds);
 }
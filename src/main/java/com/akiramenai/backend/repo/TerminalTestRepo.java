@@ -4,9 +4,13 @@ import com.akiramenai.backend.model.TerminalTest;
 import jakarta.validation.constraints.NotNull;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 public interface TerminalTestRepo extends JpaRepository<TerminalTest, UUID> {
   Optional<TerminalTest> findTerminalTestByItemId(@NotNull String itemId);
+
+  List<TerminalTest> findAllByItemIdIn(Collection<String> itemIds);
 }
@@ -1,9 +1,17 @@
 package com.akiramenai.backend.repo;
 
+import com.akiramenai.backend.model.AuthorInfo;
 import com.akiramenai.backend.model.Users;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -16,4 +24,40 @@ public interface UserRepo extends JpaRepository<Users, UUID> {
   Optional<Users> findUsersByEmail(String email);
 
   Optional<Users> getUsersByEmail(String email);
+
+  @Query("SELECT new com.akiramenai.backend.model.AuthorInfo(u.id, u.username, u.pfpFileName) FROM Users u WHERE u.id IN :ids")
+  List<AuthorInfo> findAuthorInfosByIdIn(@Param("ids") Collection<UUID> ids);
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE Users u SET u.loginStreak = :loginStreak, u.lastLoginDate = :lastLoginDate WHERE u.id = :userId")
+  int updateLoginStreak(
+      @Param("userId") UUID userId,
+      @Param("loginStreak") int loginStreak,
+      @Param("lastLoginDate") LocalDate lastLoginDate
+  );
+
+  @Modifying
+  @Transactional
+  @Query("UPDATE Users u SET u.totalStorageInBytes = u.totalStorageInBytes + :bytes WHERE u.id = :userId")
+  int addTotalStorage(@Param("userId") UUID userId, @Param("bytes") long bytes);
+
+  // Only succeeds (returns 1) if the user has enough free storage. The check and the increment happen in one
+  // statement, so concurrent reservations can't overdraw the quota.
+  @Modifying
+  @Transactional
+  @Query("""
+      UPDATE Users u SET u.usedStorageInBytes = u.usedStorageInBytes + :bytes
+      WHERE u.id = :userId AND u.usedStorageInBytes + :bytes <= u.totalStorageInBytes
+      """)
+  int reserveUsedStorage(@Param("userId") UUID userId, @Param("bytes") long bytes);
+
+  @Modifying
+  @Transactional
+  @Query("""
+      UPDATE Users u SET u.usedStorageInBytes =
+          CASE WHEN u.usedStorageInBytes > :bytes THEN u.usedStorageInBytes - :bytes ELSE 0 END
+      WHERE u.id = :userId
+      """)
+  int releaseUsedStorage(@Param("userId") UUID userId, @Param("bytes") long bytes);
 }
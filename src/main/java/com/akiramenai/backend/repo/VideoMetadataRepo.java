@@ -3,6 +3,8 @@ package com.akiramenai.backend.repo;
 import com.akiramenai.backend.model.VideoMetadata;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -10,4 +12,6 @@ public interface VideoMetadataRepo extends JpaRepository<VideoMetadata, UUID> {
   Optional<VideoMetadata> findVideoMetadataById(UUID id);
 
   Optional<VideoMetadata> findVideoMetadataByItemId(String itemId);
+
+  List<VideoMetadata> findAllByItemIdIn(Collection<String> itemIds);
 }
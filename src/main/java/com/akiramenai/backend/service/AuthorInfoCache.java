@@ -0,0 +1,73 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.AuthorInfo;
+import com.akiramenai.backend.repo.UserRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+// Bounded LRU cache of author display info (username and profile picture). Anything that changes those
+// has to call `invalidate()`, otherwise comments keep showing the old values.
+@Slf4j
+@Service
+public class AuthorInfoCache {
+  private final UserRepo userRepo;
+
+  @Value("${application.author-info-cache.max-size:10000}")
+  private int maxSize;
+
+  private final LinkedHashMap<UUID, AuthorInfo> cache = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<UUID, AuthorInfo> eldest) {
+      return size() > maxSize;
+    }
+  };
+
+  // bumped on every invalidation, so that a lookup that raced with one doesn't cache what it read
+  private long invalidationCount = 0;
+
+  public AuthorInfoCache(UserRepo userRepo) {
+    this.userRepo = userRepo;
+  }
+
+  // Returns the info of every author that exists. The ones that aren't cached are fetched with a single query.
+  public Map<UUID, AuthorInfo> resolve(Collection<UUID> authorIds) {
+    Map<UUID, AuthorInfo> resolved = new HashMap<>();
+    Set<UUID> missing = new HashSet<>();
+    long invalidationCountBeforeLoad;
+
+    synchronized (this) {
+      for (UUID authorId : authorIds) {
+        AuthorInfo cached = cache.get(authorId);
+        if (cached != null) {
+          resolved.put(authorId, cached);
+        } else {
+          missing.add(authorId);
+        }
+      }
+      invalidationCountBeforeLoad = invalidationCount;
+    }
+
+    if (missing.isEmpty()) {
+      return resolved;
+    }
+
+    List<AuthorInfo> loaded = userRepo.findAuthorInfosByIdIn(missing);
+    loaded.forEach(authorInfo -> resolved.put(authorInfo.id(), authorInfo));
+
+    synchronized (this) {
+      if (invalidationCount == invalidationCountBeforeLoad) {
+        loaded.forEach(authorInfo -> cache.put(authorInfo.id(), authorInfo));
+      }
+    }
+
+    return resolved;
+  }
+
+  public synchronized void invalidate(UUID authorId) {
+    cache.remove(authorId);
+    invalidationCount++;
+  }
+}
@@ -17,10 +17,14 @@ public class CodingTestService {
 
   private final CourseRepo courseRepo;
   private final CodingTestRepo codingTestRepo;
+  private final CourseViewCache courseViewCache;
+  private final CourseProgressService courseProgressService;
 
-  public CodingTestService(CodingTestRepo codingTestRepo, CourseRepo courseRepo) {
+  public CodingTestService(CodingTestRepo codingTestRepo, CourseRepo courseRepo, CourseViewCache courseViewCache, CourseProgressService courseProgressService) {
     this.codingTestRepo = codingTestRepo;
     this.courseRepo = courseRepo;
+    this.courseViewCache = courseViewCache;
+    this.courseProgressService = courseProgressService;
   }
 
   public ResultOrError<String, BackendOperationErrors> addCodingTest(
@@ -72,6 +76,7 @@ public class CodingTestService {
       codingTestRepo.save(codingTestToAdd);
       targetCourse.get().getCourseItemIds().add(codingTestToAdd.getItemId());
       courseRepo.save(targetCourse.get());
+      courseViewCache.invalidate(targetCourse.get().getId());
 
       ItemId responseObj = new ItemId(codingTestToAdd.getItemId());
       Optional<String> respJson = jsonSerializer.serialize(responseObj);
@@ -139,6 +144,8 @@ public class CodingTestService {
     try {
       targetCourse.get().getCourseItemIds().remove(retrievedCodingTest.get().getItemId());
       courseRepo.save(targetCourse.get());
+      courseViewCache.invalidate(targetCourse.get().getId());
+      courseProgressService.onCourseItemsRemoved(targetCourse.get().getId());
 
       codingTestRepo.delete(retrievedCodingTest.get());
     } catch (Exception e) {
@@ -13,24 +13,57 @@ import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 
 @Slf4j
 @Service
 public class CommentService {
   private final VideoMetadataRepo videoMetadataRepo;
   private final UserRepo userRepo;
+  private final AuthorInfoCache authorInfoCache;
   JsonSerializer jsonSerializer = new JsonSerializer();
 
   private final CommentRepo commentRepo;
 
-  public CommentService(CommentRepo commentRepo, VideoMetadataRepo videoMetadataRepo, UserRepo userRepo) {
+  public CommentService(
+      CommentRepo commentRepo,
+      VideoMetadataRepo videoMetadataRepo,
+      UserRepo userRepo,
+      AuthorInfoCache authorInfoCache
+  ) {
     this.commentRepo = commentRepo;
     this.videoMetadataRepo = videoMetadataRepo;
     this.userRepo = userRepo;
+    this.authorInfoCache = authorInfoCache;
+  }
+
+  // resolves the authors of the whole page at once instead of looking them up comment by comment
+  private List<CleanedComment> cleanComments(List<Comment> pageContent) {
+    Set<UUID> authorIds = new HashSet<>();
+    pageContent.forEach(comment -> authorIds.add(comment.getAuthorId()));
+    Map<UUID, AuthorInfo> authors = authorInfoCache.resolve(authorIds);
+
+    List<CleanedComment> comments = new ArrayList<>();
+    pageContent.forEach(comment -> {
+      AuthorInfo author = authors.get(comment.getAuthorId());
+      if (author == null) {
+        return;
+      }
+
+      var cc = CleanedComment
+          .builder()
+          .commentId(comment.getId().toString())
+          .authorId(author.id().toString())
+          .authorName(author.username())
+          .authorProfilePicture(author.pfpFileName())
+          .content(comment.getContent())
+          .createdAt(comment.getCreatedAt().toString())
+          .lastModifiedAt(comment.getLastModifiedAt().toString());
+
+      comments.add(cc.build());
+    });
+
+    return comments;
   }
 
   public ResultOrError<String, BackendOperationErrors> getCommentsForVideo(
@@ -59,25 +92,7 @@ public class CommentService {
         PageRequest.of(pageNumber, N, Sort.by(sorting, "createdAt"))
     );
 
-    List<CleanedComment> comments = new ArrayList<>();
-    page.getContent().forEach(comment -> {
-      Optional<Users> targetUser = userRepo.findUsersById(comment.getAuthorId());
-      if (targetUser.isEmpty()) {
-        return;
-      }
-
-      var cc = CleanedComment
-          .builder()
-          .commentId(comment.getId().toString())
-          .authorId(targetUser.get().getId().toString())
-          .authorName(targetUser.get().getUsername())
-          .authorProfilePicture(targetUser.get().getPfpFileName())
-          .content(comment.getContent())
-          .createdAt(comment.getCreatedAt().toString())
-          .lastModifiedAt(comment.getLastModifiedAt().toString());
-
-      comments.add(cc.build());
-    });
+    List<CleanedComment> comments = cleanComments(page.getContent());
 
     PaginatedComments pagedComments = PaginatedComments
         .builder()
@@ -118,25 +133,7 @@ public class CommentService {
         PageRequest.of(pageNumber, N, Sort.by(sorting, "createdAt"))
     );
 
-    List<CleanedComment> comments = new ArrayList<>();
-    page.getContent().forEach(comment -> {
-      Optional<Users> targetUser = userRepo.findUsersById(comment.getAuthorId());
-      if (targetUser.isEmpty()) {
-        return;
-      }
-
-      var cc = CleanedComment
-          .builder()
-          .commentId(comment.getId().toString())
-          .authorName(targetUser.get().getUsername())
-          .authorId(targetUser.get().getId().toString())
-          .authorProfilePicture(targetUser.get().getPfpFileName())
-          .content(comment.getContent())
-          .createdAt(comment.getCreatedAt().toString())
-          .lastModifiedAt(comment.getLastModifiedAt().toString());
-
-      comments.add(cc.build());
-    });
+    List<CleanedComment> comments = cleanComments(page.getContent());
 
     PaginatedComments pagedComments = PaginatedComments
         .builder()
@@ -0,0 +1,144 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.*;
+import com.akiramenai.backend.repo.*;
+import com.akiramenai.backend.utility.IdParser;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.function.Function;
+
+// Every item of a course (with whether the learner has completed it), in the course's order. The item IDs are
+// grouped by their type and each group is fetched with a single `IN` query, so an outline costs the same handful
+// of queries no matter how many items the course has.
+@Slf4j
+@Service
+public class CourseOutlineService {
+  public record OutlineItem(String itemId, CourseItems itemType, Object item) {
+  }
+
+  private final CourseRepo courseRepo;
+  private final QuizRepo quizRepo;
+  private final VideoMetadataRepo videoMetadataRepo;
+  private final CodingTestRepo codingTestRepo;
+  private final TerminalTestRepo terminalTestRepo;
+  private final CompletedCourseItemsRepo completedCourseItemsRepo;
+  private final JdbcTemplate jdbcTemplate;
+
+  public CourseOutlineService(
+      CourseRepo courseRepo,
+      QuizRepo quizRepo,
+      VideoMetadataRepo videoMetadataRepo,
+      CodingTestRepo codingTestRepo,
+      TerminalTestRepo terminalTestRepo,
+      CompletedCourseItemsRepo completedCourseItemsRepo,
+      JdbcTemplate jdbcTemplate
+  ) {
+    this.courseRepo = courseRepo;
+    this.quizRepo = quizRepo;
+    this.videoMetadataRepo = videoMetadataRepo;
+    this.codingTestRepo = codingTestRepo;
+    this.terminalTestRepo = terminalTestRepo;
+    this.completedCourseItemsRepo = completedCourseItemsRepo;
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  // `ddl-auto: create-only` only creates the indexes of new tables, so existing databases get them here
+  @PostConstruct
+  void ensureIndexesExist() {
+    List<String> statements = List.of(
+        "CREATE INDEX IF NOT EXISTS idx_quizzes_item_id ON quizzes (item_id)",
+        "CREATE INDEX IF NOT EXISTS idx_video_metadata_item_id ON video_metadata (item_id)",
+        "CREATE INDEX IF NOT EXISTS idx_coding_tests_item_id ON coding_tests (item_id)",
+        "CREATE INDEX IF NOT EXISTS idx_terminal_tests_item_id ON terminal_tests (item_id)",
+        "CREATE INDEX IF NOT EXISTS idx_completed_course_items_learner_course " +
+            "ON completed_course_items (learner_id, associated_course_id)"
+    );
+
+    for (String statement : statements) {
+      try {
+        jdbcTemplate.execute(statement);
+      } catch (Exception e) {
+        log.error("Failed to create index (`{}`). Reason: {}", statement, e.toString());
+      }
+    }
+  }
+
+  public ResultOrError<List<OutlineItem>, BackendOperationErrors> getOutline(UUID learnerId, UUID courseId) {
+    var res = ResultOrError.<List<OutlineItem>, BackendOperationErrors>builder();
+
+    Optional<Course> course = courseRepo.findCourseById(courseId);
+    if (course.isEmpty()) {
+      return res
+          .errorMessage("No course with that ID exists.")
+          .errorType(BackendOperationErrors.CourseNotFound)
+          .build();
+    }
+    List<String> itemIds = course.get().getCourseItemIds();
+
+    Map<CourseItems, List<String>> itemIdsByType = new EnumMap<>(CourseItems.class);
+    for (String itemId : itemIds) {
+      IdParser.parseItemId(itemId).ifPresent(info ->
+          itemIdsByType.computeIfAbsent(info.itemType(), type -> new ArrayList<>()).add(itemId)
+      );
+    }
+
+    Set<String> completedItemIds = itemIds.isEmpty()
+        ? Set.of()
+        : new HashSet<>(completedCourseItemsRepo.findCompletedItemIds(learnerId, courseId));
+
+    Map<String, OutlineItem> itemsById = new HashMap<>();
+    fetch(itemIdsByType.get(CourseItems.Quiz), quizRepo::findAllByItemIdIn).forEach(quiz ->
+        itemsById.put(quiz.getItemId(), new OutlineItem(
+            quiz.getItemId(),
+            CourseItems.Quiz,
+            new CleanedQuiz(quiz, completedItemIds.contains(quiz.getItemId()))
+        ))
+    );
+    fetch(itemIdsByType.get(CourseItems.VideoMetadata), videoMetadataRepo::findAllByItemIdIn).forEach(video ->
+        itemsById.put(video.getItemId(), new OutlineItem(
+            video.getItemId(),
+            CourseItems.VideoMetadata,
+            new CleanedVideoMetadata(video, completedItemIds.contains(video.getItemId()))
+        ))
+    );
+    fetch(itemIdsByType.get(CourseItems.CodingTest), codingTestRepo::findAllByItemIdIn).forEach(codingTest ->
+        itemsById.put(codingTest.getItemId(), new OutlineItem(
+            codingTest.getItemId(),
+            CourseItems.CodingTest,
+            new CleanedCodingTest(codingTest, completedItemIds.contains(codingTest.getItemId()))
+        ))
+    );
+    fetch(itemIdsByType.get(CourseItems.TerminalTest), terminalTestRepo::findAllByItemIdIn).forEach(terminalTest ->
+        itemsById.put(terminalTest.getItemId(), new OutlineItem(
+            terminalTest.getItemId(),
+            CourseItems.TerminalTest,
+            new CleanedTerminalTest(terminalTest)
+        ))
+    );
+
+    List<OutlineItem> outline = new ArrayList<>(itemIds.size());
+    for (String itemId : itemIds) {
+      OutlineItem item = itemsById.get(itemId);
+      if (item == null) {
+        log.warn("Course `{}` lists item `{}`, which doesn't exist.", courseId, itemId);
+        continue;
+      }
+      outline.add(item);
+    }
+
+    return res
+        .result(outline)
+        .build();
+  }
+
+  private static <T> List<T> fetch(List<String> itemIds, Function<Collection<String>, List<T>> query) {
+    if (itemIds == null || itemIds.isEmpty()) {
+      return List.of();
+    }
+    return query.apply(itemIds);
+  }
+}
@@ -0,0 +1,164 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.CleanedCourseProgress;
+import com.akiramenai.backend.model.CourseItems;
+import com.akiramenai.backend.model.CourseProgress;
+import com.akiramenai.backend.repo.CompletedCourseItemsRepo;
+import com.akiramenai.backend.repo.CourseProgressRepo;
+import com.akiramenai.backend.repo.CourseRepo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// Keeps `course_progress` (completed items per learner and course) up to date: a completion is counted in the
+// same transaction that saves it, a purchase creates the row, and the rows of a course are recounted when its
+// items are removed. The total number of items isn't stored, the video microservice adds items without going
+// through this service, so it's counted from `course_item` (one grouped query) when the progress is read.
+@Slf4j
+@Service
+public class CourseProgressService {
+  private final CourseProgressRepo courseProgressRepo;
+  private final CompletedCourseItemsRepo completedCourseItemsRepo;
+  private final CourseRepo courseRepo;
+  private final TransactionTemplate transactionTemplate;
+  private final JdbcTemplate jdbcTemplate;
+
+  public CourseProgressService(
+      CourseProgressRepo courseProgressRepo,
+      CompletedCourseItemsRepo completedCourseItemsRepo,
+      CourseRepo courseRepo,
+      TransactionTemplate transactionTemplate,
+      JdbcTemplate jdbcTemplate
+  ) {
+    this.courseProgressRepo = courseProgressRepo;
+    this.completedCourseItemsRepo = completedCourseItemsRepo;
+    this.courseRepo = courseRepo;
+    this.transactionTemplate = transactionTemplate;
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  // `ddl-auto: create-only` doesn't add constraints to existing tables. A completion is only counted if it was
+  // actually inserted, so the learner/item pairs have to be unique (the duplicates the old check-then-insert
+  // could create are dropped, keeping the earliest completion).
+  @PostConstruct
+  void ensureCompletionsAreUnique() {
+    try {
+      jdbcTemplate.execute("""
+          DO $$
+          BEGIN
+            IF NOT EXISTS (
+              SELECT 1 FROM pg_indexes
+              WHERE schemaname = current_schema() AND indexname = 'uk_completed_course_items_learner_item'
+            ) THEN
+              DELETE FROM completed_course_items a
+              USING completed_course_items b
+              WHERE a.learner_id = b.learner_id AND a.item_id = b.item_id
+                AND (a.completed_at, a.id) > (b.completed_at, b.id);
+              CREATE UNIQUE INDEX uk_completed_course_items_learner_item
+                ON completed_course_items (learner_id, item_id);
+            END IF;
+          END $$
+          """);
+    } catch (Exception e) {
+      log.error("Failed to make the completed course items unique. Reason: {}", e.toString());
+    }
+  }
+
+  // The first version of `course_progress` stored the total item count. The column isn't written anymore, so it
+  // mustn't reject the new rows.
+  @PostConstruct
+  void relaxTotalCountColumn() {
+    try {
+      jdbcTemplate.execute("""
+          DO $$
+          BEGIN
+            IF EXISTS (
+              SELECT 1 FROM information_schema.columns
+              WHERE table_schema = current_schema() AND table_name = 'course_progress' AND column_name = 'total_count'
+            ) THEN
+              ALTER TABLE course_progress ALTER COLUMN total_count DROP NOT NULL;
+            END IF;
+          END $$
+          """);
+    } catch (Exception e) {
+      log.error("Failed to make `course_progress.total_count` nullable. Reason: {}", e.toString());
+    }
+  }
+
+  // Saves the completion and counts it towards the course's progress. Returns false if the learner had already
+  // completed the item.
+  public boolean recordCompletion(UUID learnerId, UUID courseId, String itemId, CourseItems itemType) {
+    Boolean isNew = transactionTemplate.execute(status -> {
+      // `item_type` is stored by its ordinal
+      int insertedRowCount = completedCourseItemsRepo.addIfAbsent(
+          learnerId,
+          courseId,
+          itemId,
+          itemType.ordinal(),
+          LocalDate.now()
+      );
+      if (insertedRowCount == 0) {
+        return false;
+      }
+
+      courseProgressRepo.addCompletedItem(learnerId, courseId, itemId, LocalDateTime.now());
+      return true;
+    });
+
+    return Boolean.TRUE.equals(isNew);
+  }
+
+  // Has to be called in the transaction that saves the purchase
+  public void onCoursePurchased(UUID learnerId, UUID courseId) {
+    courseProgressRepo.addCourse(learnerId, courseId, LocalDateTime.now());
+  }
+
+  // Called after items were removed from the course (adding items doesn't change what's been completed)
+  public void onCourseItemsRemoved(UUID courseId) {
+    try {
+      courseProgressRepo.recountCourse(courseId);
+    } catch (Exception e) {
+      log.error("Failed to recount the progress of course `{}`. Reason: {}", courseId, e.toString());
+    }
+  }
+
+  public List<CleanedCourseProgress> getLearnerProgress(UUID learnerId) {
+    List<CourseProgress> progress = courseProgressRepo.findAllByLearnerIdOrderByLastActivityDesc(learnerId);
+    if (progress.isEmpty()) {
+      return List.of();
+    }
+
+    Map<UUID, Long> itemCounts = new HashMap<>();
+    courseRepo
+        .countItemsByCourseIdIn(progress.stream().map(CourseProgress::getCourseId).toList())
+        .forEach(count -> itemCounts.put(count.courseId(), count.itemCount()));
+
+    return progress
+        .stream()
+        .map(p -> new CleanedCourseProgress(p, itemCounts.getOrDefault(p.getCourseId(), 0L)))
+        .toList();
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void addMissingProgressOnStartup() {
+    try {
+      int addedRowCount = courseProgressRepo.addMissingPurchases();
+      if (addedRowCount > 0) {
+        log.info("Created the course progress of {} purchase(s).", addedRowCount);
+      }
+    } catch (Exception e) {
+      log.error("Failed to create the missing course progress. Reason: {}", e.toString());
+    }
+  }
+}
@@ -0,0 +1,160 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.Course;
+import com.akiramenai.backend.repo.CourseRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Adds up the ratings of each course in memory and applies them to the DB in batches, with one atomic
+// increment per course. Every rating used to load and save the whole course (and push it to the search
+// index), so a popular course turned into a queue of transactions waiting for the lock of its row, and
+// concurrent ratings overwrote each other.
+//
+// The search index is refreshed from the flushed aggregate, once per course and flush.
+//
+// The requests never flush themselves. When half of `max-pending-courses` have pending ratings an early flush
+// is started in the background (unless the last flush failed, the scheduled one retries then), and once it's
+// full the ratings of courses that aren't pending yet are dropped.
+@Slf4j
+@Service
+public class CourseRatingAccumulator {
+  private record PendingRatings(long stars, long ratings) {
+    PendingRatings plus(PendingRatings other) {
+      return new PendingRatings(stars + other.stars, ratings + other.ratings);
+    }
+  }
+
+  private final CourseRepo courseRepo;
+  private final CourseSearchService courseSearchService;
+  private final CourseViewCache courseViewCache;
+
+  @Value("${application.ratings.max-pending-courses:10000}")
+  private int maxPendingCourses;
+
+  private final Map<UUID, PendingRatings> pending = new ConcurrentHashMap<>();
+
+  private final AtomicBoolean earlyFlushRequested = new AtomicBoolean();
+  private volatile boolean lastFlushFailed = false;
+  private final ExecutorService earlyFlushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "ratings-flush");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Counter droppedCounter;
+
+  public CourseRatingAccumulator(
+      CourseRepo courseRepo,
+      CourseSearchService courseSearchService,
+      CourseViewCache courseViewCache,
+      MeterRegistry meterRegistry
+  ) {
+    this.courseRepo = courseRepo;
+    this.courseSearchService = courseSearchService;
+    this.courseViewCache = courseViewCache;
+
+    this.droppedCounter = Counter.builder("ratings.dropped")
+        .description("Ratings dropped because the write-behind buffer was full")
+        .register(meterRegistry);
+  }
+
+  public void record(UUID courseId, int starRating) {
+    add(courseId, new PendingRatings(starRating, 1));
+
+    if (pending.size() >= maxPendingCourses / 2) {
+      requestEarlyFlush();
+    }
+  }
+
+  private void add(UUID courseId, PendingRatings ratings) {
+    // ratings of courses that are already pending don't take any extra space
+    if (pending.size() >= maxPendingCourses && !pending.containsKey(courseId)) {
+      droppedCounter.increment(ratings.ratings());
+      log.warn("Pending ratings buffer is full. Dropped {} rating(s) of course `{}`.", ratings.ratings(), courseId);
+      return;
+    }
+
+    pending.merge(courseId, ratings, PendingRatings::plus);
+  }
+
+  private void requestEarlyFlush() {
+    if (lastFlushFailed || !earlyFlushRequested.compareAndSet(false, true)) {
+      return;
+    }
+
+    earlyFlushExecutor.execute(() -> {
+      try {
+        flush();
+      } finally {
+        earlyFlushRequested.set(false);
+      }
+    });
+  }
+
+  @Scheduled(
+      fixedDelayString = "${application.ratings.flush-interval-ms:5000}",
+      initialDelayString = "${application.ratings.flush-interval-ms:5000}"
+  )
+  public synchronized void flush() {
+    if (pending.isEmpty()) {
+      lastFlushFailed = false;
+      return;
+    }
+
+    boolean failed = false;
+    LocalDateTime now = LocalDateTime.now();
+    List<UUID> flushedCourseIds = new ArrayList<>();
+    for (UUID courseId : new ArrayList<>(pending.keySet())) {
+      PendingRatings ratings = pending.remove(courseId);
+      if (ratings == null) {
+        continue;
+      }
+
+      try {
+        if (courseRepo.addRatings(courseId, ratings.stars(), ratings.ratings(), now) == 0) {
+          log.warn("Dropped {} rating(s) of course `{}`, it no longer exists.", ratings.ratings(), courseId);
+          continue;
+        }
+        flushedCourseIds.add(courseId);
+        courseViewCache.invalidate(courseId);
+      } catch (Exception e) {
+        log.error("Failed to flush {} rating(s) of course `{}`. Reason: {}", ratings.ratings(), courseId, e.toString());
+        failed = true;
+
+        // put them back so that the next flush retries them (as long as they fit)
+        add(courseId, ratings);
+      }
+    }
+    lastFlushFailed = failed;
+
+    if (flushedCourseIds.isEmpty()) {
+      return;
+    }
+    try {
+      for (Course course : courseRepo.findAllById(flushedCourseIds)) {
+        courseSearchService.onCourseChanged(course);
+      }
+    } catch (Exception e) {
+      log.error("Failed to refresh the search index after flushing ratings. Reason: {}", e.toString());
+    }
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    earlyFlushExecutor.shutdownNow();
+    log.info("Flushing the pending ratings of {} course(s) before shutdown.", pending.size());
+    flush();
+  }
+}
@@ -0,0 +1,204 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.AuthorInfo;
+import com.akiramenai.backend.model.Course;
+import com.akiramenai.backend.repo.CourseRepo;
+import com.akiramenai.backend.repo.UserRepo;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Rebuilds the Meilisearch courses index from the database.
+//
+// The searchable courses are read in `id` order, one chunk at a time, so the memory used doesn't depend on the
+// size of the catalog. They're written to a shadow index which then atomically replaces the live one, so search
+// keeps working (with the old data) during the rebuild. The courses modified while the rebuild was running are
+// sent again afterward (or removed, if they were hidden or unpublished meanwhile), since their changes went to
+// the old index.
+//
+// Besides on startup, a rebuild can be started with `POST /actuator/searchreindex` on the management port.
+@Slf4j
+@Service
+public class CourseReindexService {
+  private static final String SHADOW_INDEX_UID = MeiliService.COURSES_INDEX_UID + "_reindex";
+
+  private final CourseRepo courseRepo;
+  private final UserRepo userRepo;
+  private final MeiliService meiliService;
+  private final MeiliIndexingPipeline meiliIndexingPipeline;
+
+  @Value("${application.meili-search.reindex.chunk-size:1000}")
+  private int chunkSize;
+
+  @Value("${application.meili-search.reindex.on-startup:false}")
+  private boolean reindexOnStartup;
+
+  private final AtomicBoolean isRunning = new AtomicBoolean(false);
+  private final AtomicLong indexedCourseCount = new AtomicLong();
+  private final AtomicLong coursesPerSecond = new AtomicLong();
+
+  public CourseReindexService(
+      CourseRepo courseRepo,
+      UserRepo userRepo,
+      MeiliService meiliService,
+      MeiliIndexingPipeline meiliIndexingPipeline,
+      MeterRegistry meterRegistry
+  ) {
+    this.courseRepo = courseRepo;
+    this.userRepo = userRepo;
+    this.meiliService = meiliService;
+    this.meiliIndexingPipeline = meiliIndexingPipeline;
+
+    Gauge.builder("search.reindex.running", isRunning, running -> running.get() ? 1 : 0)
+        .register(meterRegistry);
+    Gauge.builder("search.reindex.indexed", indexedCourseCount, AtomicLong::get)
+        .description("Courses sent to the shadow index by the current (or last) reindex")
+        .register(meterRegistry);
+    Gauge.builder("search.reindex.throughput", coursesPerSecond, AtomicLong::get)
+        .description("Courses per second sent by the current (or last) reindex")
+        .register(meterRegistry);
+  }
+
+  // Rebuilds the index when asked to (e.g. `--application.meili-search.reindex.on-startup=true`), or when it's
+  // missing or empty (e.g. Meilisearch lost its data)
+  @EventListener(ApplicationReadyEvent.class)
+  public void reindexIfNeeded() {
+    Optional<Long> documentCount = meiliService.getCourseDocumentCount();
+    if (!reindexOnStartup && documentCount.isPresent() && documentCount.get() > 0) {
+      return;
+    }
+
+    startReindex();
+  }
+
+  public boolean isRunning() {
+    return isRunning.get();
+  }
+
+  public long getIndexedCourseCount() {
+    return indexedCourseCount.get();
+  }
+
+  // Starts a rebuild in the background. Returns false if one is already running.
+  public boolean startReindex() {
+    if (!isRunning.compareAndSet(false, true)) {
+      return false;
+    }
+
+    Thread reindexThread = new Thread(() -> {
+      try {
+        reindex();
+      } catch (Exception e) {
+        log.error("Course reindex failed. Reason: {}", e.toString());
+      } finally {
+        isRunning.set(false);
+      }
+    }, "course-reindex");
+    reindexThread.setDaemon(true);
+    reindexThread.start();
+
+    return true;
+  }
+
+  private void reindex() {
+    LocalDateTime startedAt = LocalDateTime.now();
+    long startedAtNanos = System.nanoTime();
+    indexedCourseCount.set(0);
+    coursesPerSecond.set(0);
+    log.info("Rebuilding the courses index.");
+
+    if (!meiliService.createEmptyCopyOfCoursesIndex(SHADOW_INDEX_UID)) {
+      return;
+    }
+
+    List<Integer> taskUids = new ArrayList<>();
+    UUID lastCourseId = new UUID(0L, 0L);
+    while (true) {
+      List<Course> chunk = courseRepo.findSearchableCoursesAfterId(lastCourseId, PageRequest.of(0, chunkSize));
+      if (chunk.isEmpty()) {
+        break;
+      }
+
+      Optional<Integer> taskUid = meiliService.addDocumentsToIndex(SHADOW_INDEX_UID, toDocuments(chunk).toString());
+      if (taskUid.isEmpty()) {
+        log.error("Aborting the course reindex after {} course(s).", indexedCourseCount.get());
+        return;
+      }
+      taskUids.add(taskUid.get());
+
+      lastCourseId = chunk.get(chunk.size() - 1).getId();
+      indexedCourseCount.addAndGet(chunk.size());
+      long elapsedMillis = Math.max(1, Duration.ofNanos(System.nanoTime() - startedAtNanos).toMillis());
+      coursesPerSecond.set(indexedCourseCount.get() * 1000 / elapsedMillis);
+      log.info("Reindex progress: {} course(s) sent ({}/s).", indexedCourseCount.get(), coursesPerSecond.get());
+
+      if (chunk.size() < chunkSize) {
+        break;
+      }
+    }
+
+    if (!meiliService.haveTasksSucceeded(taskUids)) {
+      log.error("Meilisearch failed to index the courses. Keeping the current courses index.");
+      return;
+    }
+    if (!meiliService.replaceCoursesIndexWith(SHADOW_INDEX_UID)) {
+      return;
+    }
+
+    // the changes made during the rebuild were sent to the old index, send them again
+    List<Course> modifiedCourses = courseRepo.findAllByLastModifiedAtAfter(startedAt);
+    Map<UUID, AuthorInfo> instructors = resolveInstructors(modifiedCourses);
+    modifiedCourses.forEach(course -> {
+      if (course.getIsPublished() && !course.getIsHidden()) {
+        meiliIndexingPipeline.enqueue(course, instructorNameOf(course, instructors));
+      } else {
+        meiliIndexingPipeline.enqueueRemoval(course.getId());
+      }
+    });
+
+    log.info(
+        "Rebuilt the courses index with {} course(s) in {}s ({} modified meanwhile).",
+        indexedCourseCount.get(), Duration.ofNanos(System.nanoTime() - startedAtNanos).toSeconds(), modifiedCourses.size()
+    );
+  }
+
+  private JSONArray toDocuments(List<Course> courses) {
+    Map<UUID, AuthorInfo> instructors = resolveInstructors(courses);
+
+    JSONArray documents = new JSONArray();
+    courses.forEach(course -> documents.put(meiliService.getExtractedCourseJson(course, instructorNameOf(course, instructors))));
+
+    return documents;
+  }
+
+  // one query for the instructors of the whole chunk. This bypasses `AuthorInfoCache` on purpose, a full scan
+  // would just evict the authors it's holding for the comment pages.
+  private Map<UUID, AuthorInfo> resolveInstructors(List<Course> courses) {
+    Set<UUID> instructorIds = new HashSet<>();
+    courses.forEach(course -> instructorIds.add(course.getInstructorId()));
+
+    Map<UUID, AuthorInfo> instructors = new HashMap<>();
+    if (!instructorIds.isEmpty()) {
+      userRepo.findAuthorInfosByIdIn(instructorIds).forEach(instructor -> instructors.put(instructor.id(), instructor));
+    }
+
+    return instructors;
+  }
+
+  private static String instructorNameOf(Course course, Map<UUID, AuthorInfo> instructors) {
+    AuthorInfo instructor = instructors.get(course.getInstructorId());
+    return instructor == null ? null : instructor.username();
+  }
+}
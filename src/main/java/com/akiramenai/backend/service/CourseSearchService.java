@@ -0,0 +1,256 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.Course;
+import com.akiramenai.backend.model.CourseSearchResults;
+import com.akiramenai.backend.model.SearchEngines;
+import com.akiramenai.backend.repo.CourseRepo;
+import com.akiramenai.backend.repo.UserRepo;
+import com.meilisearch.sdk.model.SearchResultPaginated;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// Entry point of course search, and of the course changes that search has to know about.
+//
+// Depending on `application.search.engine` the searches are served by Meilisearch, by the in-process
+// `LocalCourseSearchIndex`, or by Meilisearch with the local index as a fallback whenever Meilisearch fails
+// or doesn't answer within the latency budget.
+@Slf4j
+@Service
+public class CourseSearchService {
+  private final MeiliService meiliService;
+  private final MeiliIndexingPipeline meiliIndexingPipeline;
+  private final LocalCourseSearchIndex localCourseSearchIndex;
+  private final CourseRepo courseRepo;
+  private final UserRepo userRepo;
+
+  @Value("${application.search.engine:MeiliWithFallback}")
+  private SearchEngines searchEngine;
+
+  @Value("${application.search.meili-latency-budget-ms:300}")
+  private long meiliLatencyBudgetMs;
+
+  // after a failure Meilisearch is skipped for a while, so that every search doesn't wait for the budget
+  @Value("${application.search.meili-cooldown-ms:5000}")
+  private long meiliCooldownMs;
+
+  @Value("${application.search.local-index-load-chunk-size:1000}")
+  private int localIndexLoadChunkSize;
+
+  private volatile long meiliSkippedUntilMillis = 0;
+
+  // bounded, so that a hanging Meilisearch can't pile up threads. Searches that don't get a thread use the fallback.
+  private final ExecutorService meiliSearchPool = new ThreadPoolExecutor(
+      4, 16, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+      runnable -> {
+        Thread thread = new Thread(runnable, "meili-search");
+        thread.setDaemon(true);
+        return thread;
+      }
+  );
+
+  private final Counter fallbackCounter;
+
+  public CourseSearchService(
+      MeiliService meiliService,
+      MeiliIndexingPipeline meiliIndexingPipeline,
+      LocalCourseSearchIndex localCourseSearchIndex,
+      CourseRepo courseRepo,
+      UserRepo userRepo,
+      MeterRegistry meterRegistry
+  ) {
+    this.meiliService = meiliService;
+    this.meiliIndexingPipeline = meiliIndexingPipeline;
+    this.localCourseSearchIndex = localCourseSearchIndex;
+    this.courseRepo = courseRepo;
+    this.userRepo = userRepo;
+
+    this.fallbackCounter = Counter.builder("search.fallbacks")
+        .description("Searches served by the local index because Meilisearch failed or was too slow")
+        .register(meterRegistry);
+  }
+
+  private boolean usesMeili() {
+    return searchEngine != SearchEngines.Local;
+  }
+
+  private boolean usesLocalIndex() {
+    return searchEngine != SearchEngines.Meili;
+  }
+
+  // `instructorName` is only needed when the course becomes searchable for the first time
+  public void onCourseChanged(Course course, @Nullable String instructorName) {
+    if (!course.getIsPublished() || course.getIsHidden()) {
+      onCoursesHidden(List.of(course.getId()));
+      return;
+    }
+
+    if (usesMeili()) {
+      meiliIndexingPipeline.enqueue(course, instructorName);
+    }
+    if (usesLocalIndex()) {
+      localCourseSearchIndex.upsert(course.getId(), toLocalDocument(course, instructorName));
+    }
+  }
+
+  // For the courses that stopped being searchable (hidden or unpublished), including by bulk updates that don't
+  // load the courses
+  public void onCoursesHidden(List<UUID> courseIds) {
+    courseIds.forEach(courseId -> {
+      if (usesMeili()) {
+        meiliIndexingPipeline.enqueueRemoval(courseId);
+      }
+      if (usesLocalIndex()) {
+        localCourseSearchIndex.remove(courseId);
+      }
+    });
+  }
+
+  public void onCourseChanged(Course course) {
+    onCourseChanged(course, null);
+  }
+
+  // the same document Meilisearch gets, with plain JSON values
+  private Map<String, Object> toLocalDocument(Course course, @Nullable String instructorName) {
+    JSONObject document = meiliService.getExtractedCourseJson(course, instructorName);
+    return new JSONObject(document.toString()).toMap();
+  }
+
+  public Optional<CourseSearchResults> searchCourses(String query, int pageNumber, int pageSize) {
+    switch (searchEngine) {
+      case Local: {
+        return Optional.of(localCourseSearchIndex.search(query, pageNumber, pageSize));
+      }
+
+      case Meili: {
+        return meiliService.searchCourses(query, pageNumber, pageSize).map(this::fromMeiliResults);
+      }
+
+      default: {
+        Optional<CourseSearchResults> meiliResults = searchMeiliWithinBudget(query, pageNumber, pageSize);
+        if (meiliResults.isPresent()) {
+          return meiliResults;
+        }
+
+        fallbackCounter.increment();
+        return Optional.of(localCourseSearchIndex.search(query, pageNumber, pageSize));
+      }
+    }
+  }
+
+  private Optional<CourseSearchResults> searchMeiliWithinBudget(String query, int pageNumber, int pageSize) {
+    if (System.currentTimeMillis() < meiliSkippedUntilMillis) {
+      return Optional.empty();
+    }
+
+    Future<Optional<SearchResultPaginated>> pendingResults;
+    try {
+      pendingResults = meiliSearchPool.submit(() -> meiliService.searchCourses(query, pageNumber, pageSize));
+    } catch (RejectedExecutionException e) {
+      return Optional.empty();
+    }
+
+    try {
+      Optional<SearchResultPaginated> results = pendingResults.get(meiliLatencyBudgetMs, TimeUnit.MILLISECONDS);
+      if (results.isEmpty()) {
+        skipMeiliForAWhile("it failed to search");
+      }
+
+      return results.map(this::fromMeiliResults);
+    } catch (TimeoutException e) {
+      pendingResults.cancel(true);
+      skipMeiliForAWhile("it didn't answer within " + meiliLatencyBudgetMs + "ms");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      skipMeiliForAWhile(e.getCause().toString());
+    }
+
+    return Optional.empty();
+  }
+
+  private void skipMeiliForAWhile(String reason) {
+    meiliSkippedUntilMillis = System.currentTimeMillis() + meiliCooldownMs;
+    log.warn("Using the local search index for the next {}ms because Meilisearch is unavailable: {}", meiliCooldownMs, reason);
+  }
+
+  private CourseSearchResults fromMeiliResults(SearchResultPaginated results) {
+    List<Map<String, Object>> hits = new ArrayList<>();
+    if (results.getHits() != null) {
+      hits.addAll(results.getHits());
+    }
+
+    return CourseSearchResults
+        .builder()
+        .totalHits(results.getTotalHits())
+        .hitsPerPage(results.getHitsPerPage())
+        .page(results.getPage())
+        .totalPages(results.getTotalPages())
+        .hits(hits)
+        .facetDistribution(results.getFacetDistribution())
+        .facetStats(results.getFacetStats())
+        .processingTimeMs(results.getProcessingTimeMs())
+        .query(results.getQuery())
+        .build();
+  }
+
+  // Fills the local index from the DB, in chunks and in the background so that startup isn't held up by it.
+  // Until it's done, the local index only knows about part of the catalog.
+  @EventListener(ApplicationReadyEvent.class)
+  public void loadLocalIndex() {
+    if (!usesLocalIndex()) {
+      return;
+    }
+
+    Thread loaderThread = new Thread(() -> {
+      try {
+        UUID lastCourseId = new UUID(0L, 0L);
+        while (true) {
+          List<Course> chunk = courseRepo.findSearchableCoursesAfterId(lastCourseId, PageRequest.of(0, localIndexLoadChunkSize));
+          if (chunk.isEmpty()) {
+            break;
+          }
+
+          Set<UUID> instructorIds = new HashSet<>();
+          chunk.forEach(course -> instructorIds.add(course.getInstructorId()));
+          Map<UUID, String> instructorNames = new HashMap<>();
+          userRepo.findAuthorInfosByIdIn(instructorIds).forEach(author -> instructorNames.put(author.id(), author.username()));
+
+          // courses changed since the chunk was read already have a newer document
+          chunk.forEach(course ->
+              localCourseSearchIndex.addIfAbsent(course.getId(), toLocalDocument(course, instructorNames.get(course.getInstructorId())))
+          );
+
+          lastCourseId = chunk.get(chunk.size() - 1).getId();
+          if (chunk.size() < localIndexLoadChunkSize) {
+            break;
+          }
+        }
+
+        log.info("Loaded {} course(s) into the local search index.", localCourseSearchIndex.size());
+      } catch (Exception e) {
+        log.error("Failed to load the local search index. Reason: {}", e.toString());
+      } finally {
+        localCourseSearchIndex.forgetRemovals();
+      }
+    }, "local-search-index-loader");
+    loaderThread.setDaemon(true);
+    loaderThread.start();
+  }
+
+  @PreDestroy
+  public void stopMeiliSearchPool() {
+    meiliSearchPool.shutdownNow();
+  }
+}
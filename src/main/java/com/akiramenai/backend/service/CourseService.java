@@ -4,13 +4,17 @@ import com.akiramenai.backend.model.*;
 import com.akiramenai.backend.repo.CourseRepo;
 import com.akiramenai.backend.repo.LearnerInfosRepo;
 import com.akiramenai.backend.repo.PurchaseRepo;
-import com.akiramenai.backend.repo.UserRepo;
+import com.akiramenai.backend.utility.CursorCodec;
 import com.akiramenai.backend.utility.JsonSerializer;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -18,15 +22,28 @@ import java.util.*;
 @Slf4j
 @Service
 public class CourseService {
-  private final UserRepo userRepo;
+  public static final String ALREADY_PURCHASED_ERROR = "Learner has already purchased this course.";
+
+  // larger cursor pages are cut down to this size
+  public static final int MAX_CURSOR_PAGE_SIZE = 100;
+
   JsonSerializer jsonSerializer = new JsonSerializer();
 
   private final LearnerInfosRepo learnerInfosRepo;
   private final UserService userService;
-  private final MeiliService meiliService;
+  private final CourseSearchService courseSearchService;
   private final CourseRepo courseRepo;
   private final PurchaseRepo purchaseRepo;
   private final InstructorInfosService instructorInfosService;
+  private final JdbcTemplate jdbcTemplate;
+  private final SalesRollupService salesRollupService;
+  private final HlsSegmentCache hlsSegmentCache;
+  private final StorageService storageService;
+  private final StorageQuotaService storageQuotaService;
+  private final CourseRatingAccumulator courseRatingAccumulator;
+  private final CourseViewCache courseViewCache;
+  private final CourseStatsService courseStatsService;
+  private final CourseProgressService courseProgressService;
 
   public CourseService(
       CourseRepo courseRepo,
@@ -34,15 +51,248 @@ public class CourseService {
       InstructorInfosService instructorInfosService,
       LearnerInfosRepo learnerInfosRepo,
       UserService userService,
-      MeiliService meiliService,
-      UserRepo userRepo) {
+      CourseSearchService courseSearchService,
+      JdbcTemplate jdbcTemplate,
+      SalesRollupService salesRollupService,
+      HlsSegmentCache hlsSegmentCache,
+      StorageService storageService,
+      StorageQuotaService storageQuotaService,
+      CourseRatingAccumulator courseRatingAccumulator,
+      CourseViewCache courseViewCache,
+      CourseStatsService courseStatsService,
+      CourseProgressService courseProgressService) {
     this.courseRepo = courseRepo;
     this.purchaseRepo = purchaseRepo;
     this.instructorInfosService = instructorInfosService;
     this.learnerInfosRepo = learnerInfosRepo;
     this.userService = userService;
-    this.meiliService = meiliService;
-    this.userRepo = userRepo;
+    this.courseSearchService = courseSearchService;
+    this.jdbcTemplate = jdbcTemplate;
+    this.salesRollupService = salesRollupService;
+    this.hlsSegmentCache = hlsSegmentCache;
+    this.storageService = storageService;
+    this.storageQuotaService = storageQuotaService;
+    this.courseRatingAccumulator = courseRatingAccumulator;
+    this.courseViewCache = courseViewCache;
+    this.courseStatsService = courseStatsService;
+    this.courseProgressService = courseProgressService;
+  }
+
+  // `ddl-auto: create-only` only creates the indexes of new tables, so existing databases get the catalog index here
+  @PostConstruct
+  void ensureCatalogIndexExists() {
+    try {
+      jdbcTemplate.execute(
+          "CREATE INDEX IF NOT EXISTS idx_courses_catalog ON courses (is_published, is_hidden, created_at, id)"
+      );
+    } catch (Exception e) {
+      log.error("Failed to create the course catalog index. Reason: {}", e.toString());
+    }
+  }
+
+  // The tags and item IDs used to be array columns of `courses`, and the video microservice still appends the IDs
+  // of new videos to `courses.course_item_ids`. So the old columns are kept and synced with `course_item` and
+  // `course_tag` by triggers:
+  // - changes of `course_item_ids` (the video service) are copied into `course_item`
+  // - changes of `course_item`/`course_tag` (this service) are copied back into the arrays, once per course and
+  //   transaction
+  // The courses whose rows haven't been copied yet are copied here. The columns can be dropped (in a separate,
+  // explicit migration) once the video service writes `course_item` itself. This fails the startup if it fails,
+  // the items would silently go out of sync otherwise.
+  @PostConstruct
+  void syncCourseCollections() {
+    jdbcTemplate.execute("""
+        DO $$
+        BEGIN
+          -- several nodes may start at the same time
+          PERFORM pg_advisory_xact_lock(hashtext('course_collections_sync'));
+
+          ALTER TABLE courses ADD COLUMN IF NOT EXISTS course_item_ids varchar(255)[] NOT NULL DEFAULT '{}';
+          -- this service doesn't insert them anymore
+          ALTER TABLE courses ALTER COLUMN course_item_ids SET DEFAULT '{}';
+
+          INSERT INTO course_item (course_id, position, item_id)
+          SELECT c.id, i.ordinality - 1, i.item_id
+          FROM courses c CROSS JOIN LATERAL unnest(c.course_item_ids) WITH ORDINALITY AS i(item_id, ordinality)
+          WHERE NOT EXISTS (SELECT 1 FROM course_item ci WHERE ci.course_id = c.id)
+          ON CONFLICT DO NOTHING;
+
+          CREATE OR REPLACE FUNCTION course_item_ids_to_rows() RETURNS trigger AS $fn$
+          BEGIN
+            -- the array was written by `rebuild_course_collection_array`, the rows are already up to date
+            IF pg_trigger_depth() > 1 THEN
+              RETURN NULL;
+            END IF;
+
+            DELETE FROM course_item WHERE course_id = NEW.id;
+            INSERT INTO course_item (course_id, position, item_id)
+            SELECT NEW.id, i.ordinality - 1, i.item_id
+            FROM unnest(NEW.course_item_ids) WITH ORDINALITY AS i(item_id, ordinality);
+            RETURN NULL;
+          END
+          $fn$ LANGUAGE plpgsql;
+
+          -- The changes of `course_item`/`course_tag` only mark the course as changed, and the arrays are rebuilt once
+          -- per course when the transaction commits (by a deferred trigger on the marks). Rebuilding them for every
+          -- changed row would rewrite the whole array for each of the rows an insert in the middle or a reorder shifts.
+          CREATE TABLE IF NOT EXISTS course_collection_change (
+            course_id uuid NOT NULL,
+            collection varchar(4) NOT NULL,
+            PRIMARY KEY (course_id, collection)
+          );
+
+          CREATE OR REPLACE FUNCTION mark_course_collection_changed() RETURNS trigger AS $fn$
+          BEGIN
+            -- the rows were written by `course_item_ids_to_rows`, the array is already up to date
+            IF pg_trigger_depth() > 1 THEN
+              RETURN NULL;
+            END IF;
+
+            IF TG_OP IN ('INSERT', 'UPDATE') THEN
+              INSERT INTO course_collection_change (course_id, collection)
+              SELECT DISTINCT course_id, TG_ARGV[0] FROM new_rows
+              ON CONFLICT DO NOTHING;
+            END IF;
+            IF TG_OP IN ('UPDATE', 'DELETE') THEN
+              INSERT INTO course_collection_change (course_id, collection)
+              SELECT DISTINCT course_id, TG_ARGV[0] FROM old_rows
+              ON CONFLICT DO NOTHING;
+            END IF;
+            RETURN NULL;
+          END
+          $fn$ LANGUAGE plpgsql;
+
+          CREATE OR REPLACE FUNCTION rebuild_course_collection_array() RETURNS trigger AS $fn$
+          BEGIN
+            DELETE FROM course_collection_change WHERE course_id = NEW.course_id AND collection = NEW.collection;
+
+            IF NEW.collection = 'item' THEN
+              UPDATE courses
+              SET course_item_ids = COALESCE(
+                (SELECT array_agg(ci.item_id ORDER BY ci.position) FROM course_item ci WHERE ci.course_id = NEW.course_id),
+                '{}'
+              )
+              WHERE id = NEW.course_id;
+            ELSE
+              UPDATE courses
+              SET tags = COALESCE(
+                (SELECT array_agg(ct.tag ORDER BY ct.position) FROM course_tag ct WHERE ct.course_id = NEW.course_id),
+                '{}'
+              )
+              WHERE id = NEW.course_id;
+            END IF;
+            RETURN NULL;
+          END
+          $fn$ LANGUAGE plpgsql;
+
+          DROP TRIGGER IF EXISTS trg_course_collection_change ON course_collection_change;
+          CREATE CONSTRAINT TRIGGER trg_course_collection_change
+            AFTER INSERT ON course_collection_change
+            DEFERRABLE INITIALLY DEFERRED
+            FOR EACH ROW EXECUTE FUNCTION rebuild_course_collection_array();
+
+          DROP TRIGGER IF EXISTS trg_courses_course_item_ids ON courses;
+          CREATE TRIGGER trg_courses_course_item_ids
+            AFTER UPDATE OF course_item_ids ON courses
+            FOR EACH ROW WHEN (OLD.course_item_ids IS DISTINCT FROM NEW.course_item_ids)
+            EXECUTE FUNCTION course_item_ids_to_rows();
+
+          -- the row-level triggers that rebuilt the arrays for every changed row
+          DROP TRIGGER IF EXISTS trg_course_item_to_array ON course_item;
+          DROP TRIGGER IF EXISTS trg_course_tag_to_array ON course_tag;
+          DROP FUNCTION IF EXISTS course_item_to_array();
+          DROP FUNCTION IF EXISTS course_tag_to_array();
+
+          -- transition tables can't be used by a trigger on several events, so there's one trigger per event
+          DROP TRIGGER IF EXISTS trg_course_item_inserted ON course_item;
+          CREATE TRIGGER trg_course_item_inserted
+            AFTER INSERT ON course_item REFERENCING NEW TABLE AS new_rows
+            FOR EACH STATEMENT EXECUTE FUNCTION mark_course_collection_changed('item');
+          DROP TRIGGER IF EXISTS trg_course_item_updated ON course_item;
+          CREATE TRIGGER trg_course_item_updated
+            AFTER UPDATE ON course_item REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+            FOR EACH STATEMENT EXECUTE FUNCTION mark_course_collection_changed('item');
+          DROP TRIGGER IF EXISTS trg_course_item_deleted ON course_item;
+          CREATE TRIGGER trg_course_item_deleted
+            AFTER DELETE ON course_item REFERENCING OLD TABLE AS old_rows
+            FOR EACH STATEMENT EXECUTE FUNCTION mark_course_collection_changed('item');
+
+          -- only this service writes the tags, so they're only synced one way (for whatever still reads the column)
+          IF EXISTS (
+            SELECT 1 FROM information_schema.columns
+            WHERE table_schema = current_schema() AND table_name = 'courses' AND column_name = 'tags'
+          ) THEN
+            ALTER TABLE courses ALTER COLUMN tags SET DEFAULT '{}';
+
+            INSERT INTO course_tag (course_id, position, tag)
+            SELECT c.id, t.ordinality - 1, t.tag
+            FROM courses c CROSS JOIN LATERAL unnest(c.tags) WITH ORDINALITY AS t(tag, ordinality)
+            WHERE NOT EXISTS (SELECT 1 FROM course_tag ct WHERE ct.course_id = c.id)
+            ON CONFLICT DO NOTHING;
+
+            DROP TRIGGER IF EXISTS trg_course_tag_inserted ON course_tag;
+            CREATE TRIGGER trg_course_tag_inserted
+              AFTER INSERT ON course_tag REFERENCING NEW TABLE AS new_rows
+              FOR EACH STATEMENT EXECUTE FUNCTION mark_course_collection_changed('tag');
+            DROP TRIGGER IF EXISTS trg_course_tag_updated ON course_tag;
+            CREATE TRIGGER trg_course_tag_updated
+              AFTER UPDATE ON course_tag REFERENCING OLD TABLE AS old_rows NEW TABLE AS new_rows
+              FOR EACH STATEMENT EXECUTE FUNCTION mark_course_collection_changed('tag');
+            DROP TRIGGER IF EXISTS trg_course_tag_deleted ON course_tag;
+            CREATE TRIGGER trg_course_tag_deleted
+              AFTER DELETE ON course_tag REFERENCING OLD TABLE AS old_rows
+              FOR EACH STATEMENT EXECUTE FUNCTION mark_course_collection_changed('tag');
+          END IF;
+
+          -- the item type (the ID's prefix), so that the items can be filtered by type in SQL
+          ALTER TABLE course_item
+            ADD COLUMN IF NOT EXISTS item_type varchar(2) GENERATED ALWAYS AS (left(item_id, 2)) STORED;
+        END $$
+        """);
+  }
+
+  // Makes `current` equal to `replacement` by only changing the elements that differ, so that Hibernate updates
+  // just the rows whose position changed instead of deleting and inserting the whole list
+  private static void replaceInPlace(List<String> current, List<String> replacement) {
+    for (int i = 0; i < replacement.size(); i++) {
+      if (i >= current.size()) {
+        current.add(replacement.get(i));
+      } else if (!current.get(i).equals(replacement.get(i))) {
+        current.set(i, replacement.get(i));
+      }
+    }
+    while (current.size() > replacement.size()) {
+      current.remove(current.size() - 1);
+    }
+  }
+
+  // Fills in the tags and item IDs of courses fetched with the `CleanedCourse` projections, with one query each
+  // for the whole page
+  private List<CleanedCourse> withCollections(List<CleanedCourse> courses) {
+    if (courses.isEmpty()) {
+      return courses;
+    }
+
+    List<UUID> courseIds = courses.stream().map(CleanedCourse::id).toList();
+    Map<UUID, List<String>> tags = groupByCourse(courseRepo.findTagsByCourseIdIn(courseIds));
+    Map<UUID, List<String>> itemIds = groupByCourse(courseRepo.findItemIdsByCourseIdIn(courseIds));
+
+    List<CleanedCourse> result = new ArrayList<>(courses.size());
+    for (CleanedCourse course : courses) {
+      result.add(course.withCollections(
+          tags.getOrDefault(course.id(), List.of()),
+          itemIds.getOrDefault(course.id(), List.of())
+      ));
+    }
+    return result;
+  }
+
+  private static Map<UUID, List<String>> groupByCourse(List<CourseCollectionEntry> entries) {
+    Map<UUID, List<String>> grouped = new HashMap<>();
+    for (CourseCollectionEntry entry : entries) {
+      grouped.computeIfAbsent(entry.courseId(), id -> new ArrayList<>()).add(entry.value());
+    }
+    return grouped;
   }
 
   private Optional<String> basicCourseModificationRequestValidation(CourseModificationRequest courseModificationRequest) {
@@ -144,6 +394,8 @@ public class CourseService {
         .build();
   }
 
+  // The purchase, the learner's course list, the instructor's balance and the sales rollup are all committed together
+  @Transactional
   public Optional<String> purchaseCourse(String courseId, String buyerId, LocalDateTime purchaseDateTime) {
     if (courseId == null || courseId.isEmpty()) {
       return Optional.of("Course ID is missing from the request.");
@@ -170,7 +422,7 @@ public class CourseService {
     // check whether the learner has already purchased this course
     boolean isAlreadyPurchased = learnerInfos.get().getMyPurchasedCourses().contains(targetCourse.getId());
     if (isAlreadyPurchased) {
-      return Optional.of("Learner has already purchased this course.");
+      return Optional.of(ALREADY_PURCHASED_ERROR);
     }
 
     learnerInfos.get().getMyPurchasedCourses().add(targetCourse.getId());
@@ -188,6 +440,10 @@ public class CourseService {
     try {
       learnerInfosRepo.save(learnerInfos.get());
       purchaseRepo.save(purchase);
+      courseStatsService.recordSale(purchase.getCourseId());
+      courseProgressService.onCoursePurchased(purchase.getBuyerId(), purchase.getCourseId());
+      courseViewCache.onCourseSold(purchase.getCourseId());
+      salesRollupService.recordSale(purchase);
 
       Optional<String> resp = instructorInfosService.courseSold(targetCourse.getInstructorId().toString(), targetCourse.getPrice());
       if (resp.isPresent()) {
@@ -197,11 +453,13 @@ public class CourseService {
       return Optional.empty();
     } catch (Exception e) {
       log.error("Failed to save purchase for course with id: {}. Reason: {}.", courseId, e.toString());
+      TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
 
       return Optional.of("Failed to purchase course.");
     }
   }
 
+  @Transactional
   public Optional<String> purchaseCourse(String courseId, String buyerId) {
     return purchaseCourse(courseId, buyerId, LocalDateTime.now());
   }
@@ -275,8 +533,9 @@ public class CourseService {
     }
 
     try {
-      targetCourse.get().setCourseItemIds(orderOfItemIds);
+      replaceInPlace(targetCourse.get().getCourseItemIds(), orderOfItemIds);
       courseRepo.save(targetCourse.get());
+      courseViewCache.invalidate(targetCourse.get().getId());
     } catch (Exception e) {
       log.error("Failed to update the order of the course item IDs. Reason: {}", e.toString());
 
@@ -311,7 +570,7 @@ public class CourseService {
   }
 
   public Optional<Long> getCourseSoldCount(UUID courseId) {
-    return purchaseRepo.countByCourseId(courseId);
+    return Optional.of(courseStatsService.getSoldCount(courseId));
   }
 
   // Instructors can update everything except the following:
@@ -344,8 +603,9 @@ public class CourseService {
     courseToBeModified.get().setLastModifiedAt(LocalDateTime.now());
 
     courseRepo.save(courseToBeModified.get());
+    courseViewCache.invalidate(courseToBeModified.get().getId());
 
-    meiliService.updateCourseInDocument(courseToBeModified.get());
+    courseSearchService.onCourseChanged(courseToBeModified.get());
 
     return Optional.empty();
   }
@@ -384,23 +644,27 @@ public class CourseService {
     }
 
     // if the size exceeds the available storage, reject it
-    long freeStorage = targetUser.get().getTotalStorageInBytes() - targetUser.get().getUsedStorageInBytes();
-    if (freeStorage < imageSize) {
+    if (!storageQuotaService.reserve(userId, imageSize)) {
       return res
           .result(false)
           .errorMessage("Not enough free storage available. Either free up space by deleting things or buy more storage.")
           .errorType(BackendOperationErrors.NotEnoughStorage)
           .build();
     }
-    targetUser.get().setUsedStorageInBytes(targetUser.get().getUsedStorageInBytes() + imageSize);
-    userRepo.save(targetUser.get());
 
+    String oldThumbnailFilename = courseToBeModified.get().getThumbnailImageName();
     courseToBeModified.get().setThumbnailImageName(newThumbnailFilename);
     courseToBeModified.get().setLastModifiedAt(LocalDateTime.now());
-    meiliService.updateCourseInDocument(courseToBeModified.get());
     courseRepo.save(courseToBeModified.get());
+    courseViewCache.invalidate(courseToBeModified.get().getId());
 
-    meiliService.updateCourseInDocument(courseToBeModified.get());
+    courseSearchService.onCourseChanged(courseToBeModified.get());
+
+    // every thumbnail reference is charged, so the replaced one is credited back (even if another course
+    // still uses the same picture)
+    if (oldThumbnailFilename != null) {
+      storageQuotaService.release(userId, storageService.releaseImage(oldThumbnailFilename));
+    }
 
     return res
         .result(true)
@@ -433,6 +697,11 @@ public class CourseService {
     }
 
     courseRepo.deleteById(courseToDelete);
+    courseViewCache.invalidate(courseToDelete);
+
+    if (targetCourse.get().getThumbnailImageName() != null) {
+      storageQuotaService.release(currentUserId, storageService.releaseImage(targetCourse.get().getThumbnailImageName()));
+    }
 
     ItemId deletedCourseId = new ItemId(targetCourse.get().getId().toString());
     Optional<String> respJson = jsonSerializer.serialize(deletedCourseId);
@@ -471,6 +740,7 @@ public class CourseService {
     courseToPublish.get().setIsPublished(true);
     courseToPublish.get().setLastModifiedAt(LocalDateTime.now());
     courseRepo.save(courseToPublish.get());
+    courseViewCache.invalidate(courseToPublish.get().getId());
 
     Optional<Users> instructor = userService.findUserById(courseToPublish.get().getInstructorId());
     if (instructor.isEmpty()) {
@@ -478,39 +748,42 @@ public class CourseService {
     }
 
     if (!courseToPublish.get().getIsHidden()) {
-      meiliService.addCourseToIndex(courseToPublish.get(), instructor.get().getUsername());
+      courseSearchService.onCourseChanged(courseToPublish.get(), instructor.get().getUsername());
     }
 
+    // most of the first viewers of a new course start with its first video
+    courseToPublish.get().getCourseItemIds().stream()
+        .filter(itemId -> itemId.startsWith("VM_"))
+        .findFirst()
+        .ifPresent(introVideoId -> hlsSegmentCache.warmUp(introVideoId.substring(3)));
+
     return Optional.empty();
   }
 
-  public Optional<String> addRating(UUID courseId, int starRating) {
-    Optional<String> invalidReason = Optional.empty();
+  // Hides all the courses of a user at once (e.g. when the account is deleted), and takes them out of search
+  public void hideCoursesOf(UUID userId) {
+    List<UUID> courseIds = courseRepo.findIdsByInstructorId(userId);
+    courseRepo.hideCoursesByUserId(userId, LocalDateTime.now());
+
+    courseIds.forEach(courseViewCache::invalidate);
+    courseSearchService.onCoursesHidden(courseIds);
+  }
 
+  // The rating is applied in the next flush of `CourseRatingAccumulator`, so it shows up after a few seconds
+  public Optional<String> addRating(UUID courseId, int starRating) {
     if (courseId == null) {
-      invalidReason = Optional.of("Course id must be provided to add a starRating");
+      return Optional.of("Course id must be provided to add a starRating");
     }
     if (starRating < 0 || starRating > 5) {
-      invalidReason = Optional.of("Rating must be between 0 and 5");
-    }
-
-    Optional<Course> courseToBeReviewed = courseRepo.findCourseById(courseId);
-    if (courseToBeReviewed.isEmpty()) {
-      invalidReason = Optional.of("Course by that id does not exist");
+      return Optional.of("Rating must be between 0 and 5");
     }
-
-    if (invalidReason.isPresent()) {
-      return invalidReason;
+    if (!courseRepo.existsById(courseId)) {
+      return Optional.of("Course by that id does not exist");
     }
 
-    courseToBeReviewed.get().setTotalStars(courseToBeReviewed.get().getTotalStars() + starRating);
-    courseToBeReviewed.get().setUsersWhoRatedCount(courseToBeReviewed.get().getUsersWhoRatedCount() + 1);
-    courseToBeReviewed.get().setLastModifiedAt(LocalDateTime.now());
-    courseRepo.save(courseToBeReviewed.get());
-
-    meiliService.updateCourseInDocument(courseToBeReviewed.get());
+    courseRatingAccumulator.record(courseId, starRating);
 
-    return invalidReason;
+    return Optional.empty();
   }
 
   public PaginatedCourses<CleanedCourse> getAllCoursesPaginated(int N, int pageNumber, Sort.Direction sorting) {
@@ -548,6 +821,76 @@ public class CourseService {
     return paginatedCourses.build();
   }
 
+  // Keyset pagination mode of the catalog. Unlike `getAllCoursesPaginated()` it doesn't skip over the previous
+  // pages with an OFFSET, and it only counts the courses when the caller asks for it.
+  public ResultOrError<CursorPaginatedCourses<CleanedCourse>, BackendOperationErrors> getAllCoursesAfterCursor(
+      String cursor,
+      int N,
+      Sort.Direction sorting,
+      boolean includeTotal
+  ) {
+    var res = ResultOrError.<CursorPaginatedCourses<CleanedCourse>, BackendOperationErrors>builder();
+    if (N < 1) {
+      return res
+          .errorType(BackendOperationErrors.InvalidRequest)
+          .errorMessage("Invalid page size. Page size can't be less than one.")
+          .build();
+    }
+    N = Math.min(N, MAX_CURSOR_PAGE_SIZE);
+
+    // an empty cursor means the first page
+    Optional<CourseCursor> position = Optional.empty();
+    if (cursor != null && !cursor.isBlank()) {
+      position = CursorCodec.decode(cursor);
+      if (position.isEmpty()) {
+        return res
+            .errorType(BackendOperationErrors.InvalidRequest)
+            .errorMessage("Failed to parse the provided cursor. Invalid cursor provided.")
+            .build();
+      }
+    }
+
+    // fetch one extra course to find out whether there's a next page
+    PageRequest limit = PageRequest.of(0, N + 1);
+    List<CleanedCourse> courses;
+    if (sorting == Sort.Direction.DESC) {
+      courses = position
+          .map(p -> courseRepo.findPublishedCoursesBefore(p.createdAt(), p.id(), limit))
+          .orElseGet(() -> courseRepo.findFirstPublishedCoursesDesc(limit));
+    } else {
+      courses = position
+          .map(p -> courseRepo.findPublishedCoursesAfter(p.createdAt(), p.id(), limit))
+          .orElseGet(() -> courseRepo.findFirstPublishedCoursesAsc(limit));
+    }
+
+    String nextCursor = null;
+    if (courses.size() > N) {
+      courses = courses.subList(0, N);
+      CleanedCourse last = courses.get(N - 1);
+      nextCursor = CursorCodec.encode(new CourseCursor(LocalDateTime.parse(last.createdAt()), last.id()));
+    }
+
+    courses = withCollections(courses);
+
+    Long totalCourseCount = null;
+    if (includeTotal) {
+      totalCourseCount = courseRepo.countByIsPublishedAndIsHidden(true, false);
+    }
+
+    return res
+        .result(
+            CursorPaginatedCourses
+                .<CleanedCourse>builder()
+                .retrievedCourseCount(courses.size())
+                .retrievedCourses(courses)
+                .pageSize(N)
+                .nextCursor(nextCursor)
+                .totalCourseCount(totalCourseCount)
+                .build()
+        )
+        .build();
+  }
+
   public PaginatedCourses<CleanedCoursesForInstructors> getInstructorCoursesPaginated(String instructorId, int pageSize, int pageNumber, Sort.Direction sortingDirection) {
     var paginatedCourses = PaginatedCourses.<CleanedCoursesForInstructors>builder();
     if (pageSize < 1) {
@@ -610,14 +953,19 @@ public class CourseService {
       return paginatedCourses.build();
     }
 
+    // fetch every course of the page (and its instructor's name) in one query (plus one for the tags and one for
+    // the items), then restore the purchase order
+    List<UUID> purchasedCourseIds = userPurchases.map(Purchase::getCourseId).getContent();
+    Map<UUID, CleanedCourse> coursesById = new HashMap<>();
+    withCollections(courseRepo.findCleanedCoursesByIdIn(purchasedCourseIds))
+        .forEach(course -> coursesById.put(course.id(), course));
+
     ArrayList<CleanedCourse> purchasedCourses = new ArrayList<>();
-    userPurchases.forEach(purchase -> {
-      Optional<Course> targetCourse = courseRepo.findCourseById(purchase.getCourseId());
-      targetCourse.ifPresent((course) -> {
-        //if (!course.getIsHidden()) {
-        purchasedCourses.add(new CleanedCourse(course));
-        //}
-      });
+    purchasedCourseIds.forEach(courseId -> {
+      CleanedCourse course = coursesById.get(courseId);
+      if (course != null) {
+        purchasedCourses.add(course);
+      }
     });
 
     paginatedCourses
@@ -657,7 +1005,8 @@ public class CourseService {
 
     targetCourse.get().getTags().addAll(tagsToAdd);
     courseRepo.save(targetCourse.get());
-    meiliService.updateCourseInDocument(targetCourse.get());
+    courseViewCache.invalidate(targetCourse.get().getId());
+    courseSearchService.onCourseChanged(targetCourse.get());
 
     ItemId resp = new ItemId(courseId.toString());
     Optional<String> respJson = jsonSerializer.serialize(resp);
@@ -698,9 +1047,17 @@ public class CourseService {
           .build();
     }
 
-    targetCourse.get().setTags(modifiedTagList);
+    if (modifiedTagList == null) {
+      return res
+          .errorMessage("The modified tag list must be provided.")
+          .errorType(BackendOperationErrors.InvalidRequest)
+          .build();
+    }
+
+    replaceInPlace(targetCourse.get().getTags(), modifiedTagList);
     courseRepo.save(targetCourse.get());
-    meiliService.updateCourseInDocument(targetCourse.get());
+    courseViewCache.invalidate(targetCourse.get().getId());
+    courseSearchService.onCourseChanged(targetCourse.get());
 
     ItemId resp = new ItemId(courseId.toString());
     Optional<String> respJson = jsonSerializer.serialize(resp);
@@ -743,7 +1100,8 @@ public class CourseService {
 
     targetCourse.get().getTags().removeAll(tagsToDelete);
     courseRepo.save(targetCourse.get());
-    meiliService.updateCourseInDocument(targetCourse.get());
+    courseViewCache.invalidate(targetCourse.get().getId());
+    courseSearchService.onCourseChanged(targetCourse.get());
 
     ItemId resp = new ItemId(courseId.toString());
     Optional<String> respJson = jsonSerializer.serialize(resp);
@@ -0,0 +1,79 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.repo.CourseStatsRepo;
+import com.akiramenai.backend.repo.PurchaseRepo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.UUID;
+
+// Keeps the number of copies sold of each course in `course_stats`, so that a course page reads one row
+// instead of counting all of its purchases.
+@Slf4j
+@Service
+public class CourseStatsService {
+  private final CourseStatsRepo courseStatsRepo;
+  private final PurchaseRepo purchaseRepo;
+  private final JdbcTemplate jdbcTemplate;
+
+  @Value("${application.course-stats.reconcile-on-startup:true}")
+  private boolean reconcileOnStartup;
+
+  public CourseStatsService(CourseStatsRepo courseStatsRepo, PurchaseRepo purchaseRepo, JdbcTemplate jdbcTemplate) {
+    this.courseStatsRepo = courseStatsRepo;
+    this.purchaseRepo = purchaseRepo;
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  // `ddl-auto: create-only` only creates the indexes of new tables, so existing databases get this one here.
+  // It covers the COUNT of the courses that don't have their stats yet.
+  @PostConstruct
+  void ensurePurchaseCourseIndexExists() {
+    try {
+      jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_purchases_course_id ON purchases (course_id)");
+    } catch (Exception e) {
+      log.error("Failed to create the purchases' course index. Reason: {}", e.toString());
+    }
+  }
+
+  // Has to be called in the transaction that saves the purchase, so that both are committed (or rolled back) together
+  public void recordSale(UUID courseId) {
+    courseStatsRepo.addSale(courseId);
+  }
+
+  public long getSoldCount(UUID courseId) {
+    Optional<Long> soldCount = courseStatsRepo.findSoldCountByCourseId(courseId);
+    if (soldCount.isPresent()) {
+      return soldCount.get();
+    }
+
+    // not sold since the stats were introduced and not reconciled yet (or never sold at all)
+    return purchaseRepo.countByCourseId(courseId).orElse(0L);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void reconcileOnStartup() {
+    if (reconcileOnStartup) {
+      reconcile();
+    }
+  }
+
+  @Scheduled(cron = "${application.course-stats.reconcile-cron:0 15 4 * * *}")
+  public void reconcile() {
+    try {
+      int fixedRowCount = courseStatsRepo.reconcileWithPurchases();
+      if (fixedRowCount > 0) {
+        log.info("Reconciled the sold count of {} course(s) with the purchases.", fixedRowCount);
+      }
+    } catch (Exception e) {
+      log.error("Failed to reconcile the course stats. Reason: {}", e.toString());
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.Course;
+import com.akiramenai.backend.model.DetailedCourse;
+import com.akiramenai.backend.repo.CourseRepo;
+import com.akiramenai.backend.utility.JsonSerializer;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The `api/public/get/course` responses, kept as serialized JSON. Course pages are our most requested public
+// endpoint, and each view used to load the course, count its purchases and serialize it again.
+//
+// The entries are dropped by the methods that change a course, and the sold counts (read from `course_stats`)
+// are incremented when a purchase commits, so a popular course page doesn't touch the DB at all. Both expire
+// after `ttl-seconds`, which bounds how long the other nodes (whose changes this node doesn't see) can serve a
+// stale page.
+@Slf4j
+@Service
+public class CourseViewCache {
+  public record CourseView(DetailedCourse course, byte[] json) {
+  }
+
+  private final JsonSerializer jsonSerializer = new JsonSerializer();
+
+  private final CourseRepo courseRepo;
+  private final CourseStatsService courseStatsService;
+  private final MeterRegistry meterRegistry;
+
+  @Value("${application.course-cache.max-courses:10000}")
+  private long maxCourses;
+
+  @Value("${application.course-cache.ttl-seconds:300}")
+  private long ttlSeconds;
+
+  private Cache<UUID, CourseView> views;
+  private Cache<UUID, AtomicLong> soldCounts;
+
+  public CourseViewCache(CourseRepo courseRepo, CourseStatsService courseStatsService, MeterRegistry meterRegistry) {
+    this.courseRepo = courseRepo;
+    this.courseStatsService = courseStatsService;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  public void createCaches() {
+    views = Caffeine.newBuilder()
+        .maximumSize(maxCourses)
+        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+        .recordStats()
+        .build();
+    soldCounts = Caffeine.newBuilder()
+        .maximumSize(maxCourses)
+        .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, views, "courses.views");
+  }
+
+  public Optional<CourseView> getCourseView(UUID courseId) {
+    long soldCount = getSoldCount(courseId);
+
+    CourseView view = views.get(courseId, this::load);
+    if (view == null) {
+      return Optional.empty();
+    }
+
+    // the course itself hasn't changed, only the number of sales
+    if (view.course().courseSoldCount() != soldCount) {
+      view = serialize(view.course().withCourseSoldCount(soldCount));
+      if (view == null) {
+        return Optional.empty();
+      }
+      views.put(courseId, view);
+    }
+
+    return Optional.of(view);
+  }
+
+  public long getSoldCount(UUID courseId) {
+    return soldCounts
+        .get(courseId, id -> new AtomicLong(courseStatsService.getSoldCount(id)))
+        .get();
+  }
+
+  public void invalidate(UUID courseId) {
+    views.invalidate(courseId);
+  }
+
+  // Counts the sale once the surrounding transaction (if any) has committed, so a rolled back purchase isn't
+  // counted
+  public void onCourseSold(UUID courseId) {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+      incrementSoldCount(courseId);
+      return;
+    }
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        incrementSoldCount(courseId);
+      }
+    });
+  }
+
+  private void incrementSoldCount(UUID courseId) {
+    // a count that isn't cached is read from the DB (including this sale) when it's needed
+    AtomicLong soldCount = soldCounts.getIfPresent(courseId);
+    if (soldCount != null) {
+      soldCount.incrementAndGet();
+    }
+  }
+
+  private CourseView load(UUID courseId) {
+    Optional<Course> course = courseRepo.findCourseWithInstructorById(courseId);
+    if (course.isEmpty()) {
+      return null;
+    }
+
+    return serialize(new DetailedCourse(course.get(), getSoldCount(courseId)));
+  }
+
+  private CourseView serialize(DetailedCourse course) {
+    Optional<String> json = jsonSerializer.serialize(course);
+    if (json.isEmpty()) {
+      return null;
+    }
+
+    return new CourseView(course, json.get().getBytes(StandardCharsets.UTF_8));
+  }
+}
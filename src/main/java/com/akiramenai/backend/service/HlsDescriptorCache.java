@@ -0,0 +1,177 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.HlsFileInfo;
+import com.akiramenai.backend.model.HlsVideoDescriptor;
+import com.akiramenai.backend.repo.VideoMetadataRepo;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// Lists the HLS files of a video once and remembers their sizes, modification times and content types, so
+// that serving a segment doesn't need any filesystem lookups. Requests for files that aren't in the listing
+// are rejected from memory.
+//
+// The videos are processed outside of this backend, so a video can be requested while its files are still
+// being written. Because of that a request for an unknown file may rescan the directory, but only once per
+// `min-rescan-interval-ms` per video. Until the video is processed the listed sizes and modification times
+// aren't trusted either: they're read again on every request, the descriptor is rescanned every
+// `min-rescan-interval-ms` (to notice that the processing is done), and the files are marked as not final.
+@Slf4j
+@Service
+public class HlsDescriptorCache {
+  private final StorageService storageService;
+  private final VideoMetadataRepo videoMetadataRepo;
+  private final MeterRegistry meterRegistry;
+
+  @Value("${application.hls.descriptors.max-videos:10000}")
+  private long maxVideos;
+
+  @Value("${application.hls.descriptors.min-rescan-interval-ms:30000}")
+  private long minRescanIntervalMs;
+
+  private Cache<String, HlsVideoDescriptor> descriptors;
+
+  public HlsDescriptorCache(StorageService storageService, VideoMetadataRepo videoMetadataRepo, MeterRegistry meterRegistry) {
+    this.storageService = storageService;
+    this.videoMetadataRepo = videoMetadataRepo;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  public void createCache() {
+    descriptors = Caffeine.newBuilder()
+        .maximumSize(maxVideos)
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, descriptors, "hls.descriptors");
+  }
+
+  public static String contentTypeOf(String fileName) {
+    if (fileName.endsWith(".m3u8")) {
+      return "application/vnd.apple.mpegurl";
+    } else if (fileName.endsWith(".ts")) {
+      return "video/MP2T";
+    } else if (fileName.endsWith(".vtt")) {
+      return "text/vtt";
+    } else {
+      return "application/octet-stream";
+    }
+  }
+
+  // `relativePath` uses `/` as the separator, e.g. `master.m3u8` or `720p/segment001.ts`
+  public Optional<HlsFileInfo> find(String videoDirectoryName, String relativePath) {
+    HlsVideoDescriptor descriptor = get(videoDirectoryName);
+    HlsFileInfo fileInfo = descriptor.files().get(relativePath);
+    if (fileInfo == null) {
+      if (System.currentTimeMillis() - descriptor.scannedAtMillis() < minRescanIntervalMs) {
+        return Optional.empty();
+      }
+
+      descriptor = rescan(videoDirectoryName, descriptor);
+      fileInfo = descriptor.files().get(relativePath);
+      if (fileInfo == null) {
+        return Optional.empty();
+      }
+    }
+
+    // the file may still be growing
+    if (!descriptor.isProcessed()) {
+      return Optional.ofNullable(readFileInfo(descriptor.directory(), fileInfo.path(), false));
+    }
+
+    return Optional.of(fileInfo);
+  }
+
+  public HlsVideoDescriptor get(String videoDirectoryName) {
+    HlsVideoDescriptor descriptor = descriptors.get(videoDirectoryName, this::scan);
+    if (!descriptor.isProcessed() && System.currentTimeMillis() - descriptor.scannedAtMillis() >= minRescanIntervalMs) {
+      return rescan(videoDirectoryName, descriptor);
+    }
+
+    return descriptor;
+  }
+
+  // Only the first of the concurrent requests rescans, the rest see its result.
+  private HlsVideoDescriptor rescan(String videoDirectoryName, HlsVideoDescriptor outdated) {
+    return descriptors.asMap().compute(
+        videoDirectoryName,
+        (name, current) -> (current == null || current.scannedAtMillis() == outdated.scannedAtMillis())
+            ? scan(name)
+            : current
+    );
+  }
+
+  // Called whenever the files of a video change (the video is deleted, the subtitles are replaced, ...).
+  public void invalidate(String videoDirectoryName) {
+    descriptors.invalidate(videoDirectoryName);
+  }
+
+  private HlsVideoDescriptor scan(String videoDirectoryName) {
+    Path directory = Paths.get(storageService.videoDirectoryString).resolve(videoDirectoryName).normalize();
+    long scannedAtMillis = System.currentTimeMillis();
+    // checked before listing the files, so that a processed video's listing is complete
+    boolean isProcessed = videoMetadataRepo
+        .findVideoMetadataByItemId("VM_" + videoDirectoryName)
+        .map(videoMetadata -> !videoMetadata.isProcessing())
+        .orElse(false);
+
+    Map<String, HlsFileInfo> files = new HashMap<>();
+    // the master playlist and the subtitles are in the video's directory, the renditions one level below
+    try (Stream<Path> paths = Files.walk(directory, 2)) {
+      paths.forEach(path -> {
+        HlsFileInfo fileInfo = readFileInfo(directory, path, isProcessed);
+        if (fileInfo != null) {
+          files.put(relativePathOf(directory, path), fileInfo);
+        }
+      });
+    } catch (NoSuchFileException e) {
+      // unknown video (or one that isn't processed yet), remembered as having no files
+    } catch (IOException | UncheckedIOException e) {
+      log.warn("Failed to list the HLS files of video {}. Reason: {}", videoDirectoryName, e.toString());
+    }
+
+    return new HlsVideoDescriptor(directory, Map.copyOf(files), scannedAtMillis, isProcessed);
+  }
+
+  private static String relativePathOf(Path directory, Path path) {
+    return directory.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+  }
+
+  // null when the path isn't a regular file (anymore)
+  private static HlsFileInfo readFileInfo(Path directory, Path path, boolean isFinal) {
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      if (!attributes.isRegularFile()) {
+        return null;
+      }
+
+      return new HlsFileInfo(
+          path,
+          attributes.size(),
+          attributes.lastModifiedTime().toMillis(),
+          contentTypeOf(relativePathOf(directory, path)),
+          isFinal
+      );
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      log.warn("Failed to read the attributes of HLS file {}. Reason: {}", path, e.toString());
+      return null;
+    }
+  }
+}
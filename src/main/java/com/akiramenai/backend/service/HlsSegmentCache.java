@@ -0,0 +1,193 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.HlsFileInfo;
+import com.akiramenai.backend.model.HlsVideoDescriptor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Keeps the hot HLS playlists and segments in off-heap memory, so that popular videos aren't read from disk
+// for every viewer. The eviction policy is Caffeine's W-TinyLFU: a segment has to be requested more often
+// than the one it would replace to get in, so one-off requests (e.g. someone scrubbing through an old video)
+// can't push out the segments everyone is watching.
+//
+// Segments and playlists never change after a video has been processed, so the entries are only dropped
+// when the video is deleted (see `invalidateVideo()`) or evicted. The files of videos that are still being
+// processed aren't cached, they could be cached half-written. The subtitles can be modified and are always
+// read from disk.
+@Slf4j
+@Service
+public class HlsSegmentCache {
+  public record CachedFile(ByteBuffer content, long lastModifiedMillis) {
+  }
+
+  private final StorageService storageService;
+  private final HlsDescriptorCache hlsDescriptorCache;
+  private final MeterRegistry meterRegistry;
+
+  @Value("${application.hls.cache.max-size-mb:512}")
+  private long maxSizeMb;
+
+  @Value("${application.hls.cache.max-file-size-kb:8192}")
+  private long maxFileSizeKb;
+
+  @Value("${application.hls.cache.warm-up-seconds:180}")
+  private double warmUpSeconds;
+
+  private Cache<Path, CachedFile> cache;
+
+  private final ExecutorService warmUpExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "hls-warm-up");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  public HlsSegmentCache(StorageService storageService, HlsDescriptorCache hlsDescriptorCache, MeterRegistry meterRegistry) {
+    this.storageService = storageService;
+    this.hlsDescriptorCache = hlsDescriptorCache;
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  public void createCache() {
+    cache = Caffeine.newBuilder()
+        .maximumWeight(maxSizeMb * 1024 * 1024)
+        .weigher((Path path, CachedFile file) -> file.content().capacity())
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "hls.segments");
+    Gauge.builder("hls.segments.cached.bytes", this, c -> c.cache.policy().eviction()
+            .map(eviction -> (double) eviction.weightedSize().orElse(0))
+            .orElse(0.0))
+        .description("Bytes of HLS playlists and segments held in memory")
+        .register(meterRegistry);
+  }
+
+  public static boolean isCacheable(String fileName) {
+    return fileName.endsWith(".ts") || fileName.endsWith(".m3u8");
+  }
+
+  // Returns the file's content, reading it into the cache first if needed. Files that aren't final yet, are
+  // missing, too large to be worth caching or unreadable come back empty, and the caller should fall back to the disk.
+  public Optional<CachedFile> get(HlsFileInfo fileInfo) {
+    if (!fileInfo.isFinal()) {
+      return Optional.empty();
+    }
+
+    return Optional.ofNullable(cache.get(fileInfo.path(), this::load));
+  }
+
+  // Called after a video's directory has been deleted.
+  public void invalidateVideo(String videoDirectoryName) {
+    Path videoDirectory = Paths.get(storageService.videoDirectoryString).resolve(videoDirectoryName).normalize();
+    cache.asMap().keySet().removeIf(path -> path.startsWith(videoDirectory));
+  }
+
+  // Loads the playlists and the first `warm-up-seconds` of every rendition of a video in the background, so
+  // that the viewers of a newly launched course don't all start by hitting the disk.
+  public void warmUp(String videoDirectoryName) {
+    warmUpExecutor.execute(() -> {
+      HlsVideoDescriptor descriptor = hlsDescriptorCache.get(videoDirectoryName);
+      if (!descriptor.isProcessed()) {
+        log.info("Skipped the warm-up of video {}, it's still being processed.", videoDirectoryName);
+        return;
+      }
+
+      List<String> playlists = descriptor.files().keySet().stream().filter(path -> path.endsWith(".m3u8")).toList();
+      int segmentCount = 0;
+      for (String playlist : playlists) {
+        segmentCount += warmUpPlaylist(descriptor, playlist);
+      }
+      log.info("Warmed up {} playlist(s) and {} segment(s) of video {}.", playlists.size(), segmentCount, videoDirectoryName);
+    });
+  }
+
+  private int warmUpPlaylist(HlsVideoDescriptor descriptor, String playlistRelativePath) {
+    Optional<CachedFile> playlist = get(descriptor.files().get(playlistRelativePath));
+    if (playlist.isEmpty()) {
+      return 0;
+    }
+
+    // the segments are listed relative to the playlist
+    String playlistDirectory = playlistRelativePath.substring(0, playlistRelativePath.lastIndexOf('/') + 1);
+
+    // master playlists only list other playlists, which are warmed up on their own
+    String content = StandardCharsets.UTF_8.decode(playlist.get().content().duplicate()).toString();
+    int segmentCount = 0;
+    double loadedSeconds = 0;
+    double nextSegmentSeconds = 0;
+    for (String line : content.split("\\R")) {
+      line = line.trim();
+      if (line.startsWith("#EXTINF:")) {
+        try {
+          nextSegmentSeconds = Double.parseDouble(line.substring("#EXTINF:".length()).split(",")[0]);
+        } catch (NumberFormatException e) {
+          nextSegmentSeconds = 0;
+        }
+        continue;
+      }
+      if (line.isEmpty() || line.startsWith("#") || !line.endsWith(".ts")) {
+        continue;
+      }
+      if (loadedSeconds >= warmUpSeconds) {
+        break;
+      }
+
+      HlsFileInfo segment = descriptor.files().get(playlistDirectory + line);
+      if (segment != null && get(segment).isPresent()) {
+        segmentCount++;
+      }
+      loadedSeconds += nextSegmentSeconds;
+    }
+
+    return segmentCount;
+  }
+
+  private CachedFile load(Path filePath) {
+    try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+      BasicFileAttributes attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+      if (!attributes.isRegularFile() || attributes.size() > maxFileSizeKb * 1024) {
+        return null;
+      }
+
+      ByteBuffer content = ByteBuffer.allocateDirect((int) attributes.size());
+      while (content.hasRemaining()) {
+        if (channel.read(content) < 0) {
+          break;
+        }
+      }
+      content.flip();
+
+      return new CachedFile(content.asReadOnlyBuffer(), attributes.lastModifiedTime().toMillis());
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      log.warn("Failed to read HLS file {} into the cache. Reason: {}", filePath, e.toString());
+      return null;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    warmUpExecutor.shutdownNow();
+  }
+}
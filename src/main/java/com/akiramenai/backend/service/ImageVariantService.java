@@ -0,0 +1,275 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.ImageSizes;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+// Resized variants of the uploaded pictures (course thumbnails, profile pictures) and a bounded in-memory
+// cache of their bytes. A catalog page shows dozens of thumbnails in small cards, so sending each of them
+// in full resolution (and reading it from disk every time) was the bulk of its load time.
+//
+// The variants are stored next to the originals in `<picture-directory>/variants/<file-name>.<size>` and keep
+// the original's format. They're generated when a picture is uploaded, and on first request for pictures
+// that existed before that (e.g. the default ones).
+@Slf4j
+@Service
+public class ImageVariantService {
+  public record CachedImage(byte[] content, String contentType, long lastModifiedMillis) {
+  }
+
+  // the generated file names (a UUID plus the uploaded extension) and the default pictures' names
+  private static final Pattern FILE_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]+(\\.[A-Za-z0-9]*)?");
+
+  private final MeterRegistry meterRegistry;
+
+  @Value("${application.default-values.media.picture-directory}")
+  private String pictureDirectoryString;
+
+  @Value("${application.images.cache.max-size-mb:64}")
+  private long maxCacheSizeMb;
+
+  @Value("${application.images.jpeg-quality:0.85}")
+  private float jpegQuality;
+
+  // A decoded picture takes 4 bytes per pixel, and a small file can declare a huge size. Larger pictures don't
+  // get variants, the original is served instead.
+  @Value("${application.images.max-pixels:25000000}")
+  private long maxPixels;
+
+  private Cache<String, CachedImage> cache;
+
+  public ImageVariantService(MeterRegistry meterRegistry) {
+    this.meterRegistry = meterRegistry;
+  }
+
+  @PostConstruct
+  public void createCache() {
+    cache = Caffeine.newBuilder()
+        .maximumWeight(maxCacheSizeMb * 1024 * 1024)
+        .weigher((String key, CachedImage image) -> image.content().length)
+        .recordStats()
+        .build();
+
+    CaffeineCacheMetrics.monitor(meterRegistry, cache, "images");
+  }
+
+  public static boolean isValidFileName(String fileName) {
+    return fileName != null && FILE_NAME_PATTERN.matcher(fileName).matches();
+  }
+
+  public Optional<CachedImage> getImage(String fileName, ImageSizes size) {
+    if (!isValidFileName(fileName)) {
+      return Optional.empty();
+    }
+
+    return Optional.ofNullable(cache.get(fileName + "/" + size.name(), key -> load(fileName, size)));
+  }
+
+  // Writes the variants that are smaller than the original. Failures aren't fatal, the missing variants are
+  // generated again when they're requested.
+  public void generateVariants(Path originalPath) {
+    try {
+      writeVariants(originalPath, Files.readAllBytes(originalPath));
+    } catch (IOException e) {
+      log.warn("Failed to generate the variants of picture {}. Reason: {}", originalPath, e.toString());
+    }
+  }
+
+  public void deleteVariants(String fileName) {
+    if (!isValidFileName(fileName)) {
+      return;
+    }
+
+    for (ImageSizes size : ImageSizes.values()) {
+      cache.invalidate(fileName + "/" + size.name());
+      if (size == ImageSizes.Original) {
+        continue;
+      }
+      try {
+        Files.deleteIfExists(variantPath(fileName, size));
+      } catch (IOException e) {
+        log.warn("Failed to delete the {} variant of picture {}. Reason: {}", size, fileName, e.toString());
+      }
+    }
+  }
+
+  private Path variantPath(String fileName, ImageSizes size) {
+    return Paths.get(pictureDirectoryString, "variants", fileName + "." + size.name().toLowerCase());
+  }
+
+  private CachedImage load(String fileName, ImageSizes size) {
+    Path originalPath = Paths.get(pictureDirectoryString, fileName);
+    try {
+      if (size != ImageSizes.Original) {
+        Path variantPath = variantPath(fileName, size);
+        if (!Files.exists(variantPath)) {
+          writeVariants(originalPath, Files.readAllBytes(originalPath));
+        }
+        // pictures that are already small enough don't have a variant, the original is served instead
+        if (Files.exists(variantPath)) {
+          return read(variantPath);
+        }
+      }
+
+      return read(originalPath);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      log.error("Failed to read picture {} ({}). Reason: {}", fileName, size, e.toString());
+      return null;
+    }
+  }
+
+  private CachedImage read(Path path) throws IOException {
+    byte[] content = Files.readAllBytes(path);
+    Optional<MediaType> contentType = detectContentType(content);
+    if (contentType.isEmpty()) {
+      log.error("Picture {} is neither a PNG nor a JPEG.", path);
+      return null;
+    }
+
+    return new CachedImage(content, contentType.get().toString(), Files.getLastModifiedTime(path).toMillis());
+  }
+
+  // The uploads are stored with the client's extension, so the format is read from the content itself.
+  static Optional<MediaType> detectContentType(byte[] content) {
+    if (content.length >= 8
+        && (content[0] & 0xFF) == 0x89 && content[1] == 'P' && content[2] == 'N' && content[3] == 'G') {
+      return Optional.of(MediaType.IMAGE_PNG);
+    }
+    if (content.length >= 3
+        && (content[0] & 0xFF) == 0xFF && (content[1] & 0xFF) == 0xD8 && (content[2] & 0xFF) == 0xFF) {
+      return Optional.of(MediaType.IMAGE_JPEG);
+    }
+
+    return Optional.empty();
+  }
+
+  private void writeVariants(Path originalPath, byte[] originalContent) throws IOException {
+    Optional<MediaType> contentType = detectContentType(originalContent);
+    if (contentType.isEmpty()) {
+      throw new IOException("unsupported image format");
+    }
+    BufferedImage original = decode(originalPath, originalContent);
+    if (original == null) {
+      return;
+    }
+    boolean isPng = contentType.get().equals(MediaType.IMAGE_PNG);
+
+    String fileName = originalPath.getFileName().toString();
+    Files.createDirectories(Paths.get(pictureDirectoryString, "variants"));
+    for (ImageSizes size : ImageSizes.values()) {
+      if (size.maxWidth >= original.getWidth()) {
+        continue;
+      }
+
+      BufferedImage resized = resize(original, size.maxWidth, isPng);
+
+      // written to a temporary file first, so that concurrent requests never see a partial variant
+      Path variantPath = variantPath(fileName, size);
+      Path temporaryPath = variantPath.resolveSibling(variantPath.getFileName() + ".tmp-" + UUID.randomUUID());
+      try (OutputStream out = Files.newOutputStream(temporaryPath)) {
+        if (isPng) {
+          ImageIO.write(resized, "png", out);
+        } else {
+          writeJpeg(resized, out);
+        }
+      }
+      Files.move(temporaryPath, variantPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  // The size is read from the header first, so that pictures above `max-pixels` are never decoded. Returns null
+  // for those.
+  private BufferedImage decode(Path originalPath, byte[] originalContent) throws IOException {
+    try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(originalContent))) {
+      Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+      if (!readers.hasNext()) {
+        throw new IOException("unsupported image format");
+      }
+
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        long pixelCount = (long) reader.getWidth(0) * reader.getHeight(0);
+        if (pixelCount > maxPixels) {
+          log.warn(
+              "Picture {} is {}x{}, larger than {} pixels. No variants were generated.",
+              originalPath, reader.getWidth(0), reader.getHeight(0), maxPixels
+          );
+          return null;
+        }
+
+        return reader.read(0);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  // Halves the image until it's close to the target width. A single bilinear step from a much larger image
+  // skips most of its pixels and looks noticeably worse.
+  private static BufferedImage resize(BufferedImage source, int targetWidth, boolean keepAlpha) {
+    int targetHeight = Math.max(1, (int) Math.round((double) source.getHeight() * targetWidth / source.getWidth()));
+    int imageType = keepAlpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+    BufferedImage current = source;
+    int width = source.getWidth();
+    int height = source.getHeight();
+    do {
+      width = Math.max(targetWidth, width / 2);
+      height = Math.max(targetHeight, height / 2);
+
+      BufferedImage step = new BufferedImage(width, height, imageType);
+      Graphics2D graphics = step.createGraphics();
+      graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+      graphics.drawImage(current, 0, 0, width, height, null);
+      graphics.dispose();
+
+      current = step;
+    } while (width != targetWidth || height != targetHeight);
+
+    return current;
+  }
+
+  private void writeJpeg(BufferedImage image, OutputStream out) throws IOException {
+    ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+    try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+      ImageWriteParam params = writer.getDefaultWriteParam();
+      params.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+      params.setCompressionQuality(jpegQuality);
+
+      writer.setOutput(imageOut);
+      writer.write(null, new IIOImage(image, null, null), params);
+    } finally {
+      writer.dispose();
+    }
+  }
+}
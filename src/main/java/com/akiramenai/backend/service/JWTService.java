@@ -6,11 +6,16 @@ import io.jsonwebtoken.*;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 
 @Service
@@ -29,6 +34,30 @@ public class JWTService {
   @Value("${application.security.jwt.refresh-token-validity-duration}")
   private String refreshTokenValidityDuration;
 
+  @Value("${application.security.jwt.verified-claims-cache-size:10000}")
+  private int verifiedClaimsCacheSize;
+
+  // The key and the parser are immutable and thread-safe, so we build them once instead of on every request
+  private SecretKey signingKey;
+  private JwtParser jwtParser;
+
+  private record VerifiedClaims(Claims claims, long expiresAtMillis) {
+  }
+
+  // Claims of tokens whose signature we've already verified, keyed by the SHA-256 digest of the token.
+  // Entries are dropped once the token expires, so a cache hit is always as good as a fresh verification.
+  private final Map<String, VerifiedClaims> verifiedClaimsCache = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  void init() {
+    byte[] keyBytes = Decoders.BASE64.decode(secretKey);
+    this.signingKey = Keys.hmacShaKeyFor(keyBytes);
+    this.jwtParser = Jwts
+        .parser()
+        .verifyWith(signingKey)
+        .build();
+  }
+
   public static Optional<String> extractTokenFromAuthHeader(String authHeader) {
     if (authHeader == null || !authHeader.startsWith("Bearer ")) {
       return Optional.empty();
@@ -55,15 +84,10 @@ public class JWTService {
         .add("accountType", userType)
         .add("userId", userId)
         .and()
-        .signWith(getKey())
+        .signWith(signingKey)
         .compact();
   }
 
-  private SecretKey getKey() {
-    byte[] keyBytes = Decoders.BASE64.decode(secretKey);
-    return Keys.hmacShaKeyFor(keyBytes);
-  }
-
   public ResultOrError<String, JwtErrorTypes> extractUserName(String token) {
     ResultOrError<Claims, JwtErrorTypes> resultOrError = extractClaim(token);
     if (resultOrError.errorMessage() != null) {
@@ -86,7 +110,59 @@ public class JWTService {
   }
 
   public ResultOrError<Claims, JwtErrorTypes> extractClaim(String token) {
-    return extractAllClaims(token);
+    String tokenDigest = digest(token);
+    long now = System.currentTimeMillis();
+
+    VerifiedClaims cached = (tokenDigest == null) ? null : verifiedClaimsCache.get(tokenDigest);
+    if (cached != null) {
+      if (cached.expiresAtMillis() > now) {
+        return ResultOrError
+            .<Claims, JwtErrorTypes>builder()
+            .result(cached.claims())
+            .build();
+      }
+
+      // expired since it was cached. Let the parser produce the usual expiry error.
+      verifiedClaimsCache.remove(tokenDigest);
+    }
+
+    ResultOrError<Claims, JwtErrorTypes> extracted = extractAllClaims(token);
+    if (tokenDigest != null && extracted.errorType() == null && extracted.result().getExpiration() != null) {
+      cacheVerifiedClaims(tokenDigest, extracted.result(), now);
+    }
+
+    return extracted;
+  }
+
+  private void cacheVerifiedClaims(String tokenDigest, Claims claims, long now) {
+    if (verifiedClaimsCacheSize < 1) {
+      return;
+    }
+
+    if (verifiedClaimsCache.size() >= verifiedClaimsCacheSize) {
+      verifiedClaimsCache.values().removeIf(verified -> verified.expiresAtMillis() <= now);
+
+      // still full of live tokens, so start over rather than growing without a bound
+      if (verifiedClaimsCache.size() >= verifiedClaimsCacheSize) {
+        verifiedClaimsCache.clear();
+      }
+    }
+
+    verifiedClaimsCache.put(tokenDigest, new VerifiedClaims(claims, claims.getExpiration().getTime()));
+  }
+
+  private static String digest(String token) {
+    if (token == null) {
+      return null;
+    }
+
+    try {
+      MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      // every JVM ships SHA-256, but if it ever doesn't we simply skip the cache
+      return null;
+    }
   }
 
   private <T> T usernameResolver(Claims claims, Function<Claims, T> claimResolver) {
@@ -99,10 +175,7 @@ public class JWTService {
     JwtErrorTypes errorType = null;
 
     try {
-      claims = Jwts
-          .parser()
-          .verifyWith(getKey())
-          .build()
+      claims = jwtParser
           .parseSignedClaims(token)
           .getPayload();
     } catch (ExpiredJwtException e) {
@@ -0,0 +1,339 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.CourseSearchResults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-process inverted index of the searchable courses, used when Meilisearch isn't (or can't be) used.
+//
+// Every course is stored as the same document that's sent to Meilisearch. The title, tags, instructor and
+// description are tokenized into a term -> (course -> term frequency per field) map. The terms are kept in a
+// TreeMap so that the last query word can be matched as a prefix (search-as-you-type), and longer words are
+// also matched with one or two typos. Results are ranked by the number of query words they match, then by a
+// BM25 score where each field has its own weight.
+@Slf4j
+@Service
+public class LocalCourseSearchIndex {
+  private static final String[] FIELDS = {"title", "tags", "instructor", "description"};
+  private static final double[] FIELD_WEIGHTS = {3.0, 2.0, 1.5, 1.0};
+
+  // the usual BM25 constants
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  private static final double PREFIX_MATCH_WEIGHT = 0.9;
+  private static final double WEIGHT_LOST_PER_TYPO = 0.3;
+  private static final int MAX_PREFIX_EXPANSIONS = 50;
+
+  private record IndexedCourse(
+      Map<String, Object> document,
+      Map<String, int[]> termFrequencies,
+      int[] fieldLengths
+  ) {
+  }
+
+  private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<UUID, IndexedCourse> courses = new HashMap<>();
+  private final TreeMap<String, Map<UUID, int[]>> postings = new TreeMap<>();
+  private final long[] totalFieldLengths = new long[FIELDS.length];
+
+  // courses removed while the startup load runs, so that it doesn't add them back from the chunk it read earlier
+  private final Set<UUID> removedCourseIds = new HashSet<>();
+
+  // Adds the course, or merges the fields of `partialDocument` into the one already indexed
+  public void upsert(UUID courseId, Map<String, Object> partialDocument) {
+    lock.writeLock().lock();
+    try {
+      Map<String, Object> document = new HashMap<>();
+      IndexedCourse existing = courses.get(courseId);
+      if (existing != null) {
+        document.putAll(existing.document());
+        removeLocked(courseId, existing);
+      }
+      document.putAll(partialDocument);
+
+      removedCourseIds.remove(courseId);
+      addLocked(courseId, document);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // Adds the course, or only the fields the one already indexed doesn't have. Used by the startup load, which can
+  // reach a course after a change already indexed it without some fields (like the instructor's name).
+  public void addIfAbsent(UUID courseId, Map<String, Object> document) {
+    lock.writeLock().lock();
+    try {
+      if (removedCourseIds.contains(courseId)) {
+        return;
+      }
+
+      IndexedCourse existing = courses.get(courseId);
+      if (existing == null) {
+        addLocked(courseId, new HashMap<>(document));
+        return;
+      }
+
+      Map<String, Object> merged = new HashMap<>(existing.document());
+      document.forEach(merged::putIfAbsent);
+      if (merged.size() != existing.document().size()) {
+        removeLocked(courseId, existing);
+        addLocked(courseId, merged);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(UUID courseId) {
+    lock.writeLock().lock();
+    try {
+      removedCourseIds.add(courseId);
+      IndexedCourse existing = courses.get(courseId);
+      if (existing != null) {
+        removeLocked(courseId, existing);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // Called once the startup load is over
+  public void forgetRemovals() {
+    lock.writeLock().lock();
+    try {
+      removedCourseIds.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return courses.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void addLocked(UUID courseId, Map<String, Object> document) {
+    Map<String, int[]> termFrequencies = new HashMap<>();
+    int[] fieldLengths = new int[FIELDS.length];
+    for (int field = 0; field < FIELDS.length; field++) {
+      for (String term : tokenize(fieldText(document.get(FIELDS[field])))) {
+        termFrequencies.computeIfAbsent(term, t -> new int[FIELDS.length])[field]++;
+        fieldLengths[field]++;
+      }
+      totalFieldLengths[field] += fieldLengths[field];
+    }
+
+    termFrequencies.forEach((term, frequencies) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(courseId, frequencies));
+    courses.put(courseId, new IndexedCourse(document, termFrequencies, fieldLengths));
+  }
+
+  private void removeLocked(UUID courseId, IndexedCourse indexedCourse) {
+    indexedCourse.termFrequencies().keySet().forEach(term -> {
+      Map<UUID, int[]> posting = postings.get(term);
+      if (posting != null) {
+        posting.remove(courseId);
+        if (posting.isEmpty()) {
+          postings.remove(term);
+        }
+      }
+    });
+
+    for (int field = 0; field < FIELDS.length; field++) {
+      totalFieldLengths[field] -= indexedCourse.fieldLengths()[field];
+    }
+    courses.remove(courseId);
+  }
+
+  private static String fieldText(Object value) {
+    if (value == null) {
+      return "";
+    }
+    if (value instanceof Collection<?> values) {
+      StringBuilder text = new StringBuilder();
+      values.forEach(v -> text.append(v).append(' '));
+      return text.toString();
+    }
+
+    return value.toString();
+  }
+
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    for (String token : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+      if (!token.isEmpty()) {
+        tokens.add(token);
+      }
+    }
+
+    return tokens;
+  }
+
+  // `page` is 1-based, like Meilisearch's
+  public CourseSearchResults search(String query, int page, int hitsPerPage) {
+    long startedAtNanos = System.nanoTime();
+    List<String> queryTerms = tokenize(query == null ? "" : query);
+
+    List<Map<String, Object>> rankedDocuments;
+    lock.readLock().lock();
+    try {
+      rankedDocuments = queryTerms.isEmpty() ? allNewestFirst() : rank(queryTerms);
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    int pageSize = Math.max(hitsPerPage, 1);
+    int from = Math.max(page - 1, 0) * pageSize;
+    List<Map<String, Object>> hits = from >= rankedDocuments.size()
+        ? List.of()
+        : rankedDocuments.subList(from, Math.min(from + pageSize, rankedDocuments.size()));
+
+    return CourseSearchResults
+        .builder()
+        .totalHits(rankedDocuments.size())
+        .hitsPerPage(hitsPerPage)
+        .page(page)
+        .totalPages((rankedDocuments.size() + pageSize - 1) / pageSize)
+        .hits(new ArrayList<>(hits))
+        .processingTimeMs((System.nanoTime() - startedAtNanos) / 1_000_000)
+        .query(query)
+        .build();
+  }
+
+  private List<Map<String, Object>> allNewestFirst() {
+    List<Map<String, Object>> documents = new ArrayList<>();
+    courses.values().forEach(course -> documents.add(course.document()));
+    documents.sort(Comparator.comparing((Map<String, Object> document) -> String.valueOf(document.get("createdAt"))).reversed());
+
+    return documents;
+  }
+
+  private List<Map<String, Object>> rank(List<String> queryTerms) {
+    int courseCount = courses.size();
+    double[] averageFieldLengths = new double[FIELDS.length];
+    for (int field = 0; field < FIELDS.length; field++) {
+      averageFieldLengths[field] = courseCount == 0 ? 1.0 : Math.max(1.0, (double) totalFieldLengths[field] / courseCount);
+    }
+
+    // course -> {score, number of query terms matched}
+    Map<UUID, double[]> scores = new HashMap<>();
+    for (int i = 0; i < queryTerms.size(); i++) {
+      Map<String, Double> candidates = candidateTerms(queryTerms.get(i), i == queryTerms.size() - 1);
+
+      // a query term counts once per course, with its best matching candidate
+      Map<UUID, Double> bestScores = new HashMap<>();
+      candidates.forEach((term, matchWeight) -> {
+        Map<UUID, int[]> posting = postings.get(term);
+        double idf = Math.log(1.0 + (courseCount - posting.size() + 0.5) / (posting.size() + 0.5));
+        posting.forEach((courseId, frequencies) -> {
+          double score = matchWeight * idf * fieldWeightedTermScore(frequencies, courses.get(courseId).fieldLengths(), averageFieldLengths);
+          bestScores.merge(courseId, score, Math::max);
+        });
+      });
+
+      bestScores.forEach((courseId, score) -> {
+        double[] total = scores.computeIfAbsent(courseId, id -> new double[2]);
+        total[0] += score;
+        total[1] += 1;
+      });
+    }
+
+    List<Map.Entry<UUID, double[]>> ranked = new ArrayList<>(scores.entrySet());
+    ranked.sort((a, b) -> {
+      int byMatchedTerms = Double.compare(b.getValue()[1], a.getValue()[1]);
+      return byMatchedTerms != 0 ? byMatchedTerms : Double.compare(b.getValue()[0], a.getValue()[0]);
+    });
+
+    List<Map<String, Object>> documents = new ArrayList<>(ranked.size());
+    ranked.forEach(entry -> documents.add(courses.get(entry.getKey()).document()));
+
+    return documents;
+  }
+
+  private static double fieldWeightedTermScore(int[] frequencies, int[] fieldLengths, double[] averageFieldLengths) {
+    double score = 0.0;
+    for (int field = 0; field < FIELDS.length; field++) {
+      int frequency = frequencies[field];
+      if (frequency == 0) {
+        continue;
+      }
+
+      double lengthNorm = 1.0 - B + B * (fieldLengths[field] / averageFieldLengths[field]);
+      score += FIELD_WEIGHTS[field] * (frequency * (K1 + 1.0)) / (frequency + K1 * lengthNorm);
+    }
+
+    return score;
+  }
+
+  // indexed terms that a query term matches, with how much a match is worth
+  private Map<String, Double> candidateTerms(String queryTerm, boolean isLastQueryTerm) {
+    Map<String, Double> candidates = new HashMap<>();
+    if (postings.containsKey(queryTerm)) {
+      candidates.put(queryTerm, 1.0);
+    }
+
+    if (isLastQueryTerm) {
+      int expansions = 0;
+      for (String term : postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, true).keySet()) {
+        if (++expansions > MAX_PREFIX_EXPANSIONS) {
+          break;
+        }
+        candidates.putIfAbsent(term, PREFIX_MATCH_WEIGHT);
+      }
+    }
+
+    // same thresholds as Meilisearch: 1 typo from 5 characters, 2 typos from 9
+    int maxTypos = queryTerm.length() >= 9 ? 2 : (queryTerm.length() >= 5 ? 1 : 0);
+    if (maxTypos > 0) {
+      // only terms with the same first letter are considered, which keeps the scan small
+      String firstLetter = queryTerm.substring(0, 1);
+      for (String term : postings.subMap(firstLetter, true, firstLetter + Character.MAX_VALUE, true).keySet()) {
+        if (Math.abs(term.length() - queryTerm.length()) > maxTypos || candidates.containsKey(term)) {
+          continue;
+        }
+
+        int typos = boundedEditDistance(queryTerm, term, maxTypos);
+        if (typos <= maxTypos) {
+          candidates.put(term, 1.0 - WEIGHT_LOST_PER_TYPO * typos);
+        }
+      }
+    }
+
+    return candidates;
+  }
+
+  // Levenshtein distance, or `maxDistance + 1` as soon as it's known to be larger than `maxDistance`
+  static int boundedEditDistance(String a, String b, int maxDistance) {
+    int[] previous = new int[b.length() + 1];
+    int[] current = new int[b.length() + 1];
+    for (int j = 0; j <= b.length(); j++) {
+      previous[j] = j;
+    }
+
+    for (int i = 1; i <= a.length(); i++) {
+      current[0] = i;
+      int rowMinimum = current[0];
+      for (int j = 1; j <= b.length(); j++) {
+        int substitutionCost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+        current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + substitutionCost);
+        rowMinimum = Math.min(rowMinimum, current[j]);
+      }
+      if (rowMinimum > maxDistance) {
+        return maxDistance + 1;
+      }
+
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+
+    return previous[b.length()];
+  }
+}
@@ -1,65 +1,155 @@
 package com.akiramenai.backend.service;
 
 import com.akiramenai.backend.model.LoginActivity;
+import com.akiramenai.backend.model.MonthActivityResponse;
 import com.akiramenai.backend.repo.LoginActivityRepo;
+import com.akiramenai.backend.utility.ActivityBitmap;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.YearMonth;
 import java.util.*;
 
 @Slf4j
 @Service
 public class LoginActivityService {
+  private static final int MIGRATION_BATCH_SIZE = 500;
+
   private final LoginActivityRepo loginActivityRepo;
+  private final JdbcTemplate jdbcTemplate;
 
-  public LoginActivityService(LoginActivityRepo loginActivityRepo) {
+  public LoginActivityService(LoginActivityRepo loginActivityRepo, JdbcTemplate jdbcTemplate) {
     this.loginActivityRepo = loginActivityRepo;
+    this.jdbcTemplate = jdbcTemplate;
   }
 
-  public void addLoginActivity(UUID userId, LocalDate date) {
-    Optional<LoginActivity> loginActivity = loginActivityRepo.findLoginActivitiesByAssociatedUserIdAndYear(
-        userId,
-        date.getYear()
-    );
-    if (loginActivity.isEmpty()) {
-      // No login activity in this year, so create one
-      ArrayList<Integer> initialActivityArray = new ArrayList<>(Collections.nCopies(367, 0));
-      if (date.isLeapYear()) {
-        initialActivityArray.set(366, -1);
-      } else {
-        initialActivityArray.set(60, -1);
+  // `ddl-auto: create-only` doesn't add columns to existing tables, so we add the bitmap column ourselves
+  // before the web server starts taking requests.
+  @PostConstruct
+  void ensureBitmapColumnExists() {
+    try {
+      jdbcTemplate.execute("ALTER TABLE IF EXISTS login_activity ADD COLUMN IF NOT EXISTS activity_bits bytea");
+    } catch (Exception e) {
+      log.error("Failed to add the `activity_bits` column to `login_activity`. Reason: {}", e.toString());
+    }
+  }
+
+  // Converts the rows that still use the old array encoding. Until then, the reads convert such a row in memory
+  // only (they don't write), and marking a day active saves the converted row.
+  @EventListener(ApplicationReadyEvent.class)
+  public void migrateLegacyActivity() {
+    int migratedRowCount = 0;
+    try {
+      List<LoginActivity> legacyRows = loginActivityRepo.findTop500ByActivityBitsIsNull();
+      while (!legacyRows.isEmpty()) {
+        legacyRows.forEach(this::bitsOf);
+        loginActivityRepo.saveAll(legacyRows);
+        migratedRowCount += legacyRows.size();
+
+        if (legacyRows.size() < MIGRATION_BATCH_SIZE) {
+          break;
+        }
+        legacyRows = loginActivityRepo.findTop500ByActivityBitsIsNull();
       }
+    } catch (Exception e) {
+      log.error("Failed to migrate the legacy login activity rows. Reason: {}", e.toString());
+    }
+
+    if (migratedRowCount > 0) {
+      log.info("Migrated {} login activity row(s) to the bitmap encoding.", migratedRowCount);
+    }
+  }
 
-      LoginActivity newLoginActivity = LoginActivity
-          .builder()
-          .associatedUserId(userId)
-          .year(date.getYear())
-          .activity(initialActivityArray)
-          .build();
+  // Returns the bitmap of the row, converting (and dropping) the legacy array if the row hasn't been migrated.
+  // The entity is only changed, saving it is up to the caller.
+  private byte[] bitsOf(LoginActivity loginActivity) {
+    if (loginActivity.getActivityBits() == null) {
+      loginActivity.setActivityBits(ActivityBitmap.fromLegacy(loginActivity.getLegacyActivity()));
+      loginActivity.setLegacyActivity(null);
+    }
+
+    return loginActivity.getActivityBits();
+  }
 
-      loginActivity = Optional.of(newLoginActivity);
+  public void addLoginActivity(UUID userId, LocalDate date) {
+    addLoginActivities(List.of(userId), date);
+  }
+
+  // Marks `date` as active for every user in `userIds` using one read and one batched write.
+  // Returns the login activity row of each user for the year of `date`.
+  public Map<UUID, LoginActivity> addLoginActivities(Collection<UUID> userIds, LocalDate date) {
+    Map<UUID, LoginActivity> activities = new HashMap<>();
+    if (userIds.isEmpty()) {
+      return activities;
     }
 
-    int indexToMark = date.getDayOfYear();
-    if ((!date.isLeapYear()) && (date.getDayOfYear() >= 60)) {
-      indexToMark += 1;
+    loginActivityRepo
+        .findAllByAssociatedUserIdInAndYear(userIds, date.getYear())
+        .forEach(activity -> activities.put(activity.getAssociatedUserId(), activity));
+
+    int slotToMark = ActivityBitmap.slotOf(date);
+
+    List<LoginActivity> toSave = new ArrayList<>();
+    for (UUID userId : userIds) {
+      LoginActivity loginActivity = activities.get(userId);
+      if (loginActivity == null) {
+        // No login activity in this year, so create one
+        loginActivity = LoginActivity
+            .builder()
+            .associatedUserId(userId)
+            .year(date.getYear())
+            .activityBits(ActivityBitmap.empty())
+            .build();
+        activities.put(userId, loginActivity);
+      } else if (loginActivity.getActivityBits() != null && ActivityBitmap.isSet(loginActivity.getActivityBits(), slotToMark)) {
+        // already marked by an earlier flush or by another node
+        continue;
+      }
+
+      ActivityBitmap.set(bitsOf(loginActivity), slotToMark);
+      toSave.add(loginActivity);
     }
-    loginActivity.get().getActivity().set(indexToMark, 1);
-    loginActivityRepo.save(loginActivity.get());
+
+    loginActivityRepo.saveAll(toSave);
+
+    return activities;
   }
 
-  public Optional<List<Integer>> getLoginActivityForMonth(UUID userId, LocalDate requestedMonth) {
-    Optional<LoginActivity> loginActivity = loginActivityRepo.findLoginActivitiesByAssociatedUserIdAndYear(
-        userId,
-        requestedMonth.getYear()
-    );
-    if (loginActivity.isEmpty()) {
-      return Optional.empty();
+  // Number of consecutive active days ending at `date`, continuing into the previous years if needed.
+  // `loginActivity` must be the row of the year of `date`.
+  public int getLoginStreak(LoginActivity loginActivity, LocalDate date) {
+    int streak = ActivityBitmap.trailingStreak(bitsOf(loginActivity), ActivityBitmap.slotOf(date), date.isLeapYear());
+
+    // the streak reaches January 1st, so it might go on in the previous year
+    LocalDate day = date.minusDays(streak);
+    while (streak > 0 && day.getDayOfYear() == day.lengthOfYear()) {
+      Optional<LoginActivity> previousYear = loginActivityRepo.findLoginActivitiesByAssociatedUserIdAndYear(
+          loginActivity.getAssociatedUserId(),
+          day.getYear()
+      );
+      if (previousYear.isEmpty()) {
+        break;
+      }
+
+      int streakInYear = ActivityBitmap.trailingStreak(bitsOf(previousYear.get()), ActivityBitmap.slotOf(day), day.isLeapYear());
+      streak += streakInYear;
+      if (streakInYear < day.getDayOfYear()) {
+        break;
+      }
+      day = day.minusDays(streakInYear);
     }
 
+    return streak;
+  }
 
+  private record SlotRange(int from, int to) {
+  }
+
+  private SlotRange getMonthSlotRange(LocalDate requestedMonth) {
     LocalDate requestedMonthBeginning = requestedMonth.withDayOfMonth(1);
     int startIdx = requestedMonthBeginning.getDayOfYear();
     int endIdx = startIdx + requestedMonth.lengthOfMonth();
@@ -72,12 +162,33 @@ public class LoginActivityService {
         endIdx += 1;
       }
     }
-    List<Integer> monthActivity = loginActivity.get().getActivity().subList(startIdx, endIdx);
 
-    return Optional.of(monthActivity);
+    return new SlotRange(startIdx, endIdx);
   }
 
-  public Optional<List<Integer>> getLoginActivityForYear(UUID userId, LocalDate requestedYear) {
+  public Optional<List<Integer>> getLoginActivityForMonth(UUID userId, LocalDate requestedMonth) {
+    return getActivityForMonth(userId, requestedMonth).map(MonthActivityResponse::activityInMonth);
+  }
+
+  // The activity of every day of the month and the number of active days, from one lookup
+  public Optional<MonthActivityResponse> getActivityForMonth(UUID userId, LocalDate requestedMonth) {
+    Optional<LoginActivity> loginActivity = loginActivityRepo.findLoginActivitiesByAssociatedUserIdAndYear(
+        userId,
+        requestedMonth.getYear()
+    );
+    if (loginActivity.isEmpty()) {
+      return Optional.empty();
+    }
+
+    byte[] bits = bitsOf(loginActivity.get());
+    SlotRange range = getMonthSlotRange(requestedMonth);
+    List<Integer> monthActivity = ActivityBitmap.toActivityList(bits, range.from(), range.to(), requestedMonth.isLeapYear());
+
+    return Optional.of(new MonthActivityResponse(monthActivity, ActivityBitmap.countSet(bits, range.from(), range.to())));
+  }
+
+  // Same as `getActivityForMonth()`, for the whole year
+  public Optional<MonthActivityResponse> getActivityForYear(UUID userId, LocalDate requestedYear) {
     Optional<LoginActivity> loginActivity = loginActivityRepo.findLoginActivitiesByAssociatedUserIdAndYear(
         userId,
         requestedYear.getYear()
@@ -86,7 +197,9 @@ public class LoginActivityService {
       return Optional.empty();
     }
 
-    ArrayList<Integer> activityInYear = loginActivity.get().getActivity();
-    return Optional.of(activityInYear.subList(1, activityInYear.size()));
+    byte[] bits = bitsOf(loginActivity.get());
+    List<Integer> activityInYear = ActivityBitmap.toActivityList(bits, 1, ActivityBitmap.SLOT_COUNT, requestedYear.isLeapYear());
+
+    return Optional.of(new MonthActivityResponse(activityInYear, ActivityBitmap.countSet(bits, 1, ActivityBitmap.SLOT_COUNT)));
   }
 }
@@ -0,0 +1,197 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.LoginActivity;
+import com.akiramenai.backend.model.Users;
+import com.akiramenai.backend.repo.UserRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Records "user was active today" in memory and writes it to the DB in batches. Every authenticated request
+// used to cost a user lookup plus a rewrite of the yearly login activity row. Now only the first request of
+// a user on a given day (per node) produces any DB work at all, and that work is deferred to the flusher.
+//
+// The requests never flush themselves. When the buffer is half full an early flush is started in the background
+// (unless the last flush failed, the scheduled one retries then), and once it's full new marks are dropped.
+@Slf4j
+@Service
+public class LoginActivityTracker {
+  private final LoginActivityService loginActivityService;
+  private final UserRepo userRepo;
+
+  @Value("${application.activity-tracker.max-tracked-users:100000}")
+  private int maxTrackedUsers;
+
+  // the last day we've seen each user on this node
+  private final Map<UUID, LocalDate> lastSeen = new ConcurrentHashMap<>();
+
+  // day-marks that haven't been written to the DB yet, by day. A user seen on several days before a flush has a
+  // mark for each of them, otherwise the earlier days would be missing from their streak.
+  private final Map<LocalDate, Set<UUID>> pending = new ConcurrentHashMap<>();
+  private final AtomicInteger pendingMarkCount = new AtomicInteger();
+
+  private final AtomicBoolean earlyFlushRequested = new AtomicBoolean();
+  private volatile boolean lastFlushFailed = false;
+  private final ExecutorService earlyFlushExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "login-activity-flush");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private final Counter droppedCounter;
+
+  public LoginActivityTracker(LoginActivityService loginActivityService, UserRepo userRepo, MeterRegistry meterRegistry) {
+    this.loginActivityService = loginActivityService;
+    this.userRepo = userRepo;
+
+    this.droppedCounter = Counter.builder("activity.tracker.dropped")
+        .description("Login activity marks dropped because the write-behind buffer was full")
+        .register(meterRegistry);
+  }
+
+  public void recordActivity(UUID userId, LocalDate date) {
+    if (date.equals(lastSeen.get(userId))) {
+      return;
+    }
+
+    if (lastSeen.size() >= maxTrackedUsers) {
+      // Entries from previous days can't suppress anything anymore, so they're the first to go. If that's
+      // not enough, forget everything. The worst case is one redundant (idempotent) write per user.
+      lastSeen.values().removeIf(seenOn -> seenOn.isBefore(date));
+      if (lastSeen.size() >= maxTrackedUsers) {
+        lastSeen.clear();
+      }
+    }
+    // not remembered as seen when it's dropped, so that the user's next request tries again
+    if (addPending(userId, date)) {
+      lastSeen.put(userId, date);
+    }
+
+    if (pendingMarkCount.get() >= maxTrackedUsers / 2) {
+      requestEarlyFlush();
+    }
+  }
+
+  private void requestEarlyFlush() {
+    if (lastFlushFailed || !earlyFlushRequested.compareAndSet(false, true)) {
+      return;
+    }
+
+    earlyFlushExecutor.execute(() -> {
+      try {
+        flush();
+      } finally {
+        earlyFlushRequested.set(false);
+      }
+    });
+  }
+
+  @Scheduled(
+      fixedDelayString = "${application.activity-tracker.flush-interval-ms:30000}",
+      initialDelayString = "${application.activity-tracker.flush-interval-ms:30000}"
+  )
+  public synchronized void flush() {
+    if (pending.isEmpty()) {
+      lastFlushFailed = false;
+      return;
+    }
+
+    boolean failed = false;
+    // oldest day first, so that each day's streak already includes the days before it
+    List<LocalDate> dates = new ArrayList<>(pending.keySet());
+    Collections.sort(dates);
+
+    for (LocalDate date : dates) {
+      Set<UUID> userIds = pending.remove(date);
+      if (userIds == null) {
+        continue;
+      }
+      pendingMarkCount.addAndGet(-userIds.size());
+
+      try {
+        writeActivity(new ArrayList<>(userIds), date);
+      } catch (Exception e) {
+        log.error("Failed to flush login activity of {} user(s) for {}. Reason: {}", userIds.size(), date, e.toString());
+        failed = true;
+
+        // put them back so that the next flush retries them (as long as they fit)
+        userIds.forEach(userId -> addPending(userId, date));
+      }
+    }
+    lastFlushFailed = failed;
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    earlyFlushExecutor.shutdownNow();
+    log.info("Flushing {} pending login activity mark(s) before shutdown.", pendingMarkCount.get());
+    flush();
+  }
+
+  // Returns false when the mark was dropped because the buffer is full
+  private boolean addPending(UUID userId, LocalDate date) {
+    boolean[] added = {true};
+    // the set is only changed inside `compute`, so a mark can't be added to a set that `flush` has already taken
+    pending.compute(date, (day, userIds) -> {
+      Set<UUID> updated = (userIds == null) ? new HashSet<>() : userIds;
+      if (updated.contains(userId)) {
+        return updated;
+      }
+      if (pendingMarkCount.get() >= maxTrackedUsers) {
+        added[0] = false;
+        return userIds;
+      }
+
+      updated.add(userId);
+      pendingMarkCount.incrementAndGet();
+      return updated;
+    });
+
+    if (!added[0]) {
+      droppedCounter.increment();
+    }
+    return added[0];
+  }
+
+  private void writeActivity(List<UUID> userIds, LocalDate date) {
+    List<Users> users = userRepo.findAllById(userIds);
+    if (users.size() != userIds.size()) {
+      log.warn("{} user(s) with recorded activity no longer exist.", userIds.size() - users.size());
+    }
+
+    List<UUID> existingUserIds = users.stream().map(Users::getId).toList();
+    Map<UUID, LoginActivity> activities = loginActivityService.addLoginActivities(existingUserIds, date);
+
+    for (Users user : users) {
+      // A retried day can be written after a later one. The streak is then recounted up to the later day (which
+      // may have been broken by this one missing), without moving the last login date back.
+      LocalDate streakDate = date;
+      if (user.getLastLoginDate() != null && user.getLastLoginDate().isAfter(date)) {
+        if (user.getLastLoginDate().getYear() != date.getYear()) {
+          continue;
+        }
+        streakDate = user.getLastLoginDate();
+      }
+
+      int loginStreak = loginActivityService.getLoginStreak(activities.get(user.getId()), streakDate);
+      if (loginStreak == user.getLoginStreak() && streakDate.equals(user.getLastLoginDate())) {
+        continue;
+      }
+
+      // targeted update so that we don't overwrite the rest of the row with what we read above
+      userRepo.updateLoginStreak(user.getId(), loginStreak, streakDate);
+    }
+  }
+}
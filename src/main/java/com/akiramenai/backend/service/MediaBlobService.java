@@ -0,0 +1,170 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.MediaBlob;
+import com.akiramenai.backend.model.MediaStores;
+import com.akiramenai.backend.repo.MediaBlobRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+// Content-addressed storage of the uploaded pictures and scripts. An upload is hashed while it's written to
+// disk and stored as `<sha-256>.<extension>`, so uploading a file that's already stored only adds a reference
+// to it. The file is deleted when its last reference is released.
+//
+// The reference count is changed while the blob's row is locked, and the file is moved into place (or
+// deleted) before that lock is released, so a concurrent upload of the same content never loses its file.
+@Slf4j
+@Service
+public class MediaBlobService {
+  public record StoredBlob(Path path, long sizeBytes, boolean isNewFile) {
+  }
+
+  public record ReleasedBlob(long sizeBytes, boolean isDeleted) {
+  }
+
+  private static final Pattern FILE_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_-]+(\\.[A-Za-z0-9]*)?");
+  private static final Pattern EXTENSION_PATTERN = Pattern.compile("[a-z0-9]{1,10}");
+
+  private final MediaBlobRepo mediaBlobRepo;
+  private final TransactionTemplate transactionTemplate;
+  private final Counter deduplicatedCounter;
+
+  @Value("${application.default-values.media.picture-directory}")
+  private String pictureDirectoryString;
+
+  @Value("${application.default-values.scripts.script-storage-directory}")
+  private String scriptDirectoryString;
+
+  public MediaBlobService(
+      MediaBlobRepo mediaBlobRepo,
+      TransactionTemplate transactionTemplate,
+      MeterRegistry meterRegistry
+  ) {
+    this.mediaBlobRepo = mediaBlobRepo;
+    this.transactionTemplate = transactionTemplate;
+    this.deduplicatedCounter = Counter.builder("media.blobs.deduplicated").register(meterRegistry);
+  }
+
+  public Path directoryOf(MediaStores store) {
+    return switch (store) {
+      case Pictures -> Paths.get(pictureDirectoryString);
+      case Scripts -> Paths.get(scriptDirectoryString);
+    };
+  }
+
+  // Stores the content and adds a reference to it. `isNewFile` is false if the same content was already stored.
+  public StoredBlob store(MediaStores store, InputStream content, String extension) throws IOException {
+    Path directory = directoryOf(store);
+    Files.createDirectories(directory);
+
+    // written next to the final file, so that it can be moved into place atomically
+    Path temporaryPath = directory.resolve(".upload-" + UUID.randomUUID() + ".tmp");
+    try {
+      MessageDigest digest = sha256();
+      try (InputStream in = new DigestInputStream(content, digest)) {
+        Files.copy(in, temporaryPath);
+      }
+      long sizeBytes = Files.size(temporaryPath);
+
+      String fileName = HexFormat.of().formatHex(digest.digest()) + normalizeExtension(extension);
+      Path filePath = directory.resolve(fileName);
+
+      Boolean isNewFile = transactionTemplate.execute(status -> {
+        mediaBlobRepo.addReference(store.name(), fileName, sizeBytes, LocalDateTime.now());
+        if (Files.exists(filePath)) {
+          return false;
+        }
+
+        try {
+          Files.move(temporaryPath, filePath, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return true;
+      });
+      if (!Boolean.TRUE.equals(isNewFile)) {
+        deduplicatedCounter.increment();
+      }
+
+      return new StoredBlob(filePath, sizeBytes, Boolean.TRUE.equals(isNewFile));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      Files.deleteIfExists(temporaryPath);
+    }
+  }
+
+  // Releases one reference to the file and deletes it if that was the last one. Files stored before the blobs
+  // were tracked (random file names, no row) only ever had one reference, so they're deleted right away.
+  public Optional<ReleasedBlob> release(MediaStores store, String fileName) {
+    if (fileName == null || !FILE_NAME_PATTERN.matcher(fileName).matches()) {
+      return Optional.empty();
+    }
+    Path filePath = directoryOf(store).resolve(fileName);
+
+    try {
+      return Optional.ofNullable(transactionTemplate.execute(status -> {
+        Optional<MediaBlob> blob = mediaBlobRepo.lockByStoreAndFileName(store, fileName);
+        if (blob.isPresent() && blob.get().getReferenceCount() > 1) {
+          blob.get().setReferenceCount(blob.get().getReferenceCount() - 1);
+          mediaBlobRepo.save(blob.get());
+          return new ReleasedBlob(blob.get().getSizeBytes(), false);
+        }
+
+        try {
+          long sizeBytes;
+          if (blob.isPresent()) {
+            sizeBytes = blob.get().getSizeBytes();
+            mediaBlobRepo.delete(blob.get());
+          } else if (Files.exists(filePath)) {
+            sizeBytes = Files.size(filePath);
+          } else {
+            return null;
+          }
+
+          Files.deleteIfExists(filePath);
+          return new ReleasedBlob(sizeBytes, true);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }));
+    } catch (Exception e) {
+      log.error("Failed to release {} file {}. Reason: {}", store, fileName, e.toString());
+      return Optional.empty();
+    }
+  }
+
+  static String normalizeExtension(String extension) {
+    if (extension == null) {
+      return "";
+    }
+
+    String normalized = extension.toLowerCase();
+    return EXTENSION_PATTERN.matcher(normalized).matches() ? "." + normalized : "";
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      // every JVM has to provide SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+}
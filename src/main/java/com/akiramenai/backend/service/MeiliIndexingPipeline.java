@@ -0,0 +1,216 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.Course;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Nullable;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sends the course changes to Meilisearch in the background, so that the requests don't wait for it.
+//
+// Changes are coalesced per course: a document that's updated several times within a flush window is sent
+// once, with the fields of all the updates merged (the latest value of a field wins). The pending documents
+// are then sent in batches with a single `updateDocuments` call each, and put back if that fails.
+//
+// Removals (courses that were hidden or unpublished) are queued the same way and sent before the updates. A
+// removal replaces the pending update of the course, and a later update replaces the pending removal.
+@Slf4j
+@Service
+public class MeiliIndexingPipeline {
+  private final MeiliService meiliService;
+
+  @Value("${application.meili-search.indexing.max-pending-courses:20000}")
+  private int maxPendingCourses;
+
+  @Value("${application.meili-search.indexing.batch-size:1000}")
+  private int batchSize;
+
+  @Value("${application.meili-search.indexing.max-retry-delay-ms:60000}")
+  private long maxRetryDelayMs;
+
+  @Value("${application.meili-search.indexing.flush-interval-ms:1000}")
+  private long flushIntervalMs;
+
+  private final Map<UUID, JSONObject> pendingDocuments = new ConcurrentHashMap<>();
+  private final Set<UUID> pendingRemovals = ConcurrentHashMap.newKeySet();
+
+  // set after a failed batch, so that we don't hammer Meilisearch while it's down
+  private int consecutiveFailures = 0;
+  private long nextAttemptAtMillis = 0;
+
+  private final Counter sentCounter;
+  private final Counter failedBatchCounter;
+  private final Counter droppedCounter;
+
+  public MeiliIndexingPipeline(MeiliService meiliService, MeterRegistry meterRegistry) {
+    this.meiliService = meiliService;
+
+    Gauge.builder("search.indexing.backlog", this, pipeline -> pipeline.pendingDocuments.size() + pipeline.pendingRemovals.size())
+        .description("Courses with changes (or removals) that haven't been sent to Meilisearch yet")
+        .register(meterRegistry);
+    this.sentCounter = Counter.builder("search.indexing.sent").register(meterRegistry);
+    this.failedBatchCounter = Counter.builder("search.indexing.failed-batches").register(meterRegistry);
+    this.droppedCounter = Counter.builder("search.indexing.dropped").register(meterRegistry);
+  }
+
+  // `instructorName` is only needed when the course is added to the index for the first time
+  public void enqueue(Course course, @Nullable String instructorName) {
+    enqueueDocument(course.getId(), meiliService.getExtractedCourseJson(course, instructorName));
+  }
+
+  public void enqueue(Course course) {
+    enqueue(course, null);
+  }
+
+  private void enqueueDocument(UUID courseId, JSONObject document) {
+    // updates of courses that are already pending don't take any extra space
+    if (pendingDocuments.size() >= maxPendingCourses && !pendingDocuments.containsKey(courseId)) {
+      droppedCounter.increment();
+      log.warn("Search indexing backlog is full. Dropped the update of course `{}`, a reindex will pick it up.", courseId);
+      return;
+    }
+
+    pendingRemovals.remove(courseId);
+    pendingDocuments.merge(courseId, document, MeiliIndexingPipeline::mergeDocuments);
+  }
+
+  public void enqueueRemoval(UUID courseId) {
+    pendingDocuments.remove(courseId);
+    if (pendingRemovals.size() >= maxPendingCourses && !pendingRemovals.contains(courseId)) {
+      droppedCounter.increment();
+      log.warn("Search indexing backlog is full. Dropped the removal of course `{}`, a reindex will pick it up.", courseId);
+      return;
+    }
+
+    pendingRemovals.add(courseId);
+  }
+
+  private static JSONObject mergeDocuments(JSONObject older, JSONObject newer) {
+    JSONObject merged = new JSONObject(older, JSONObject.getNames(older));
+    newer.keySet().forEach(key -> merged.put(key, newer.get(key)));
+
+    return merged;
+  }
+
+  @Scheduled(
+      fixedDelayString = "${application.meili-search.indexing.flush-interval-ms:1000}",
+      initialDelayString = "${application.meili-search.indexing.flush-interval-ms:1000}"
+  )
+  public synchronized void flush() {
+    if ((pendingDocuments.isEmpty() && pendingRemovals.isEmpty()) || System.currentTimeMillis() < nextAttemptAtMillis) {
+      return;
+    }
+
+    while (!pendingRemovals.isEmpty()) {
+      List<UUID> removals = takeRemovals();
+      if (removals.isEmpty()) {
+        break;
+      }
+
+      if (!meiliService.deleteCourseDocuments(removals.stream().map(UUID::toString).toList())) {
+        // the ones updated since then were removed from `pendingRemovals` by `enqueueDocument`, they stay updates
+        removals.forEach(courseId -> {
+          if (!pendingDocuments.containsKey(courseId)) {
+            pendingRemovals.add(courseId);
+          }
+        });
+        backOff(removals.size());
+        return;
+      }
+
+      sentCounter.increment(removals.size());
+      consecutiveFailures = 0;
+      nextAttemptAtMillis = 0;
+    }
+
+    while (!pendingDocuments.isEmpty()) {
+      Map<UUID, JSONObject> batch = takeBatch();
+      if (batch.isEmpty()) {
+        return;
+      }
+
+      JSONArray documents = new JSONArray();
+      batch.values().forEach(documents::put);
+      if (!meiliService.updateCourseDocuments(documents.toString())) {
+        putBack(batch);
+        return;
+      }
+
+      sentCounter.increment(batch.size());
+      consecutiveFailures = 0;
+      nextAttemptAtMillis = 0;
+    }
+  }
+
+  private Map<UUID, JSONObject> takeBatch() {
+    Map<UUID, JSONObject> batch = new HashMap<>();
+    Iterator<UUID> courseIds = pendingDocuments.keySet().iterator();
+    while (courseIds.hasNext() && batch.size() < batchSize) {
+      UUID courseId = courseIds.next();
+      JSONObject document = pendingDocuments.remove(courseId);
+      if (document != null) {
+        batch.put(courseId, document);
+      }
+    }
+
+    return batch;
+  }
+
+  private List<UUID> takeRemovals() {
+    List<UUID> removals = new ArrayList<>();
+    Iterator<UUID> courseIds = pendingRemovals.iterator();
+    while (courseIds.hasNext() && removals.size() < batchSize) {
+      UUID courseId = courseIds.next();
+      if (pendingRemovals.remove(courseId)) {
+        removals.add(courseId);
+      }
+    }
+
+    return removals;
+  }
+
+  private void putBack(Map<UUID, JSONObject> failedBatch) {
+    // the changes made since the batch was taken are newer, so they're merged on top of the failed ones. Courses
+    // removed since then stay removed.
+    failedBatch.forEach((courseId, failedDocument) -> {
+      if (!pendingRemovals.contains(courseId)) {
+        pendingDocuments.merge(courseId, failedDocument, (newer, failed) -> mergeDocuments(failed, newer));
+      }
+    });
+
+    backOff(failedBatch.size());
+  }
+
+  private void backOff(int failedCourseCount) {
+    failedBatchCounter.increment();
+    consecutiveFailures++;
+    long retryDelayMs = Math.min(maxRetryDelayMs, flushIntervalMs << Math.min(consecutiveFailures, 16));
+    nextAttemptAtMillis = System.currentTimeMillis() + retryDelayMs;
+    log.warn(
+        "Failed to send {} course(s) to Meilisearch ({} failure(s) in a row). Retrying in {}ms.",
+        failedCourseCount, consecutiveFailures, retryDelayMs
+    );
+  }
+
+  @PreDestroy
+  public void flushOnShutdown() {
+    nextAttemptAtMillis = 0;
+    flush();
+    if (!pendingDocuments.isEmpty() || !pendingRemovals.isEmpty()) {
+      log.warn(
+          "{} course update(s) and {} removal(s) couldn't be sent to Meilisearch before shutdown.",
+          pendingDocuments.size(), pendingRemovals.size()
+      );
+    }
+  }
+}
@@ -6,6 +6,9 @@ import com.meilisearch.sdk.Config;
 import com.meilisearch.sdk.Index;
 import com.meilisearch.sdk.SearchRequest;
 import com.meilisearch.sdk.model.SearchResultPaginated;
+import com.meilisearch.sdk.model.Settings;
+import com.meilisearch.sdk.model.SwapIndexesParams;
+import com.meilisearch.sdk.model.TaskStatus;
 import jakarta.annotation.Nullable;
 import lombok.extern.slf4j.Slf4j;
 import org.json.JSONArray;
@@ -13,33 +16,45 @@ import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
 @Service
 public class MeiliService {
+  public static final String COURSES_INDEX_UID = "courses";
+
   @Value("${application.meili-search.master-key}")
   private String meiliSearchMasterKey;
 
-  private Client meiliClient = null;
-  private Index coursesIndex = null;
+  @Value("${application.meili-search.host:http://localhost:7700}")
+  private String meiliSearchHost;
+
+  private volatile Client meiliClient = null;
+  private volatile Index coursesIndex = null;
 
   public MeiliService() {
   }
 
-  private void initConnection() {
-    this.meiliClient = new Client(
+  // searches and the indexing threads may get here at the same time
+  private synchronized void initConnection() {
+    if (this.meiliClient != null) {
+      return;
+    }
+
+    Client client = new Client(
         new Config(
-            "http://localhost:7700",
+            meiliSearchHost,
             meiliSearchMasterKey
         )
     );
 
-    this.coursesIndex = meiliClient.index("courses");
+    this.coursesIndex = client.index(COURSES_INDEX_UID);
+    this.meiliClient = client;
   }
 
-  private JSONObject getExtractedCourseJson(Course course, @Nullable String instructorName) {
+  public JSONObject getExtractedCourseJson(Course course, @Nullable String instructorName) {
     double rating = course.getTotalStars() / (double) course.getUsersWhoRatedCount();
     String truncatedRating = (course.getUsersWhoRatedCount() == 0) ? "0.0" : String.format("%.2f", rating);
 
@@ -114,6 +129,140 @@ public class MeiliService {
     return true;
   }
 
+  // Adds or partially updates a batch of course documents. `documentsJson` is a JSON array of documents that
+  // contain at least their "id". Returns false if the batch couldn't be sent.
+  public boolean updateCourseDocuments(String documentsJson) {
+    if (meiliClient == null) {
+      initConnection();
+    }
+
+    try {
+      this.coursesIndex.updateDocuments(documentsJson, "id");
+    } catch (Exception e) {
+      log.error("Couldn't update the batch of courses. Reason: {}", e.toString());
+      return false;
+    }
+
+    return true;
+  }
+
+  // Returns false if the batch couldn't be sent
+  public boolean deleteCourseDocuments(List<String> courseIds) {
+    if (meiliClient == null) {
+      initConnection();
+    }
+
+    try {
+      this.coursesIndex.deleteDocuments(courseIds);
+    } catch (Exception e) {
+      log.error("Couldn't delete the batch of courses. Reason: {}", e.toString());
+      return false;
+    }
+
+    return true;
+  }
+
+  public Optional<Long> getCourseDocumentCount() {
+    if (meiliClient == null) {
+      initConnection();
+    }
+
+    try {
+      return Optional.of(this.coursesIndex.getStats().getNumberOfDocuments());
+    } catch (Exception e) {
+      log.error("Couldn't get the stats of the courses index. Reason: {}", e.toString());
+      return Optional.empty();
+    }
+  }
+
+  // (Re)creates an empty index with the settings of the courses index
+  public boolean createEmptyCopyOfCoursesIndex(String indexUid) {
+    if (meiliClient == null) {
+      initConnection();
+    }
+
+    try {
+      meiliClient.waitForTask(meiliClient.deleteIndex(indexUid).getTaskUid());
+      meiliClient.waitForTask(meiliClient.createIndex(indexUid, "id").getTaskUid());
+    } catch (Exception e) {
+      log.error("Couldn't create the index `{}`. Reason: {}", indexUid, e.toString());
+      return false;
+    }
+
+    try {
+      Settings coursesIndexSettings = this.coursesIndex.getSettings();
+      meiliClient.waitForTask(meiliClient.index(indexUid).updateSettings(coursesIndexSettings).getTaskUid());
+    } catch (Exception e) {
+      // the courses index may not exist at all, which is fine since the copy replaces it
+      log.warn("Couldn't copy the settings of the courses index to `{}`. Reason: {}", indexUid, e.toString());
+    }
+
+    return true;
+  }
+
+  // Sends a batch of documents without waiting for Meilisearch to index them. Returns the ID of the indexing task.
+  public Optional<Integer> addDocumentsToIndex(String indexUid, String documentsJson) {
+    if (meiliClient == null) {
+      initConnection();
+    }
+
+    try {
+      return Optional.of(meiliClient.index(indexUid).addDocuments(documentsJson, "id").getTaskUid());
+    } catch (Exception e) {
+      log.error("Couldn't add the batch of documents to `{}`. Reason: {}", indexUid, e.toString());
+      return Optional.empty();
+    }
+  }
+
+  public boolean haveTasksSucceeded(List<Integer> taskUids) {
+    if (meiliClient == null) {
+      initConnection();
+    }
+
+    try {
+      for (int taskUid : taskUids) {
+        meiliClient.waitForTask(taskUid);
+        if (meiliClient.getTask(taskUid).getStatus() != TaskStatus.SUCCEEDED) {
+          log.error("Meilisearch task `{}` didn't succeed.", taskUid);
+          return false;
+        }
+      }
+    } catch (Exception e) {
+      log.error("Couldn't wait for the Meilisearch tasks. Reason: {}", e.toString());
+      return false;
+    }
+
+    return true;
+  }
+
+  // Atomically replaces the courses index with `indexUid`, then deletes the old courses index
+  public boolean replaceCoursesIndexWith(String indexUid) {
+    if (meiliClient == null) {
+      initConnection();
+    }
+
+    try {
+      // swapping needs both indexes to exist
+      meiliClient.waitForTask(meiliClient.createIndex(COURSES_INDEX_UID, "id").getTaskUid());
+
+      SwapIndexesParams swapParams = new SwapIndexesParams();
+      swapParams.setIndexes(new String[]{COURSES_INDEX_UID, indexUid});
+      int swapTaskUid = meiliClient.swapIndexes(new SwapIndexesParams[]{swapParams}).getTaskUid();
+      meiliClient.waitForTask(swapTaskUid);
+      if (meiliClient.getTask(swapTaskUid).getStatus() != TaskStatus.SUCCEEDED) {
+        log.error("Swapping `{}` with the courses index didn't succeed.", indexUid);
+        return false;
+      }
+
+      meiliClient.deleteIndex(indexUid);
+    } catch (Exception e) {
+      log.error("Couldn't replace the courses index with `{}`. Reason: {}", indexUid, e.toString());
+      return false;
+    }
+
+    return true;
+  }
+
   public boolean deleteCourseInDocument(String courseId) {
     if (meiliClient == null) {
       initConnection();
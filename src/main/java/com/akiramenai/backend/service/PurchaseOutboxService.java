@@ -0,0 +1,304 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.OutboxStatus;
+import com.akiramenai.backend.model.PurchaseInfo;
+import com.akiramenai.backend.model.PurchaseOutbox;
+import com.akiramenai.backend.model.PurchaseTypes;
+import com.akiramenai.backend.repo.PurchaseOutboxRepo;
+import com.akiramenai.backend.repo.UserRepo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Durable queue of the purchases that were paid for but not fulfilled yet.
+//
+// The webhook only inserts a row and returns, the rows are then claimed by a pool of workers with
+// `SELECT ... FOR UPDATE SKIP LOCKED`, so any number of workers (on any number of nodes) can drain the
+// table without stepping on each other. A purchase is fulfilled in the same transaction that marks its
+// row as done. Failed attempts are retried with exponential backoff until `max-attempts` is reached.
+@Slf4j
+@Service
+public class PurchaseOutboxService {
+  private static final long BYTES_PER_GB = 1073741824L;
+
+  private final PurchaseOutboxRepo purchaseOutboxRepo;
+  private final UserRepo userRepo;
+  private final CourseService courseService;
+  private final TransactionTemplate transactionTemplate;
+
+  @Value("${application.purchase-outbox.workers:4}")
+  private int workerCount;
+
+  @Value("${application.purchase-outbox.poll-interval-ms:1000}")
+  private long pollIntervalMs;
+
+  @Value("${application.purchase-outbox.batch-size:10}")
+  private int batchSize;
+
+  @Value("${application.purchase-outbox.max-attempts:8}")
+  private int maxAttempts;
+
+  @Value("${application.purchase-outbox.base-backoff-ms:2000}")
+  private long baseBackoffMs;
+
+  @Value("${application.purchase-outbox.max-backoff-ms:600000}")
+  private long maxBackoffMs;
+
+  @Value("${application.purchase-outbox.claim-timeout-ms:300000}")
+  private long claimTimeoutMs;
+
+  private ScheduledExecutorService workerPool;
+
+  private final AtomicLong queueDepth = new AtomicLong();
+  private final AtomicLong oldestPendingAgeSeconds = new AtomicLong();
+  private final Counter fulfilledCounter;
+  private final Counter retriedCounter;
+  private final Counter failedCounter;
+  private final Timer fulfilmentTimer;
+
+  public PurchaseOutboxService(
+      PurchaseOutboxRepo purchaseOutboxRepo,
+      UserRepo userRepo,
+      CourseService courseService,
+      TransactionTemplate transactionTemplate,
+      MeterRegistry meterRegistry
+  ) {
+    this.purchaseOutboxRepo = purchaseOutboxRepo;
+    this.userRepo = userRepo;
+    this.courseService = courseService;
+    this.transactionTemplate = transactionTemplate;
+
+    Gauge.builder("purchase.outbox.depth", queueDepth, AtomicLong::get)
+        .description("Purchases waiting to be fulfilled (pending or being processed)")
+        .register(meterRegistry);
+    Gauge.builder("purchase.outbox.lag", oldestPendingAgeSeconds, AtomicLong::get)
+        .description("Age of the oldest purchase waiting to be fulfilled")
+        .baseUnit("seconds")
+        .register(meterRegistry);
+    this.fulfilledCounter = Counter.builder("purchase.outbox.fulfilled").register(meterRegistry);
+    this.retriedCounter = Counter.builder("purchase.outbox.retried").register(meterRegistry);
+    this.failedCounter = Counter.builder("purchase.outbox.failed").register(meterRegistry);
+    this.fulfilmentTimer = Timer.builder("purchase.outbox.fulfilment").register(meterRegistry);
+  }
+
+  // Throws if the purchase couldn't be stored, in which case the webhook has to fail so that Stripe retries it
+  public void enqueue(PurchaseInfo purchaseInfo) {
+    LocalDateTime ldtNow = LocalDateTime.now();
+    PurchaseOutbox entry = PurchaseOutbox
+        .builder()
+        .purchaseType(purchaseInfo.purchaseTypes())
+        .userId(UUID.fromString(purchaseInfo.userId()))
+        .courseId(purchaseInfo.courseId() == null ? null : UUID.fromString(purchaseInfo.courseId()))
+        .storageToAddInGBs(purchaseInfo.storageToAddInGBs())
+        .status(OutboxStatus.Pending)
+        .attempts(0)
+        .nextAttemptAt(ldtNow)
+        .createdAt(ldtNow)
+        .build();
+
+    purchaseOutboxRepo.save(entry);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void startWorkers() {
+    AtomicInteger workerNumber = new AtomicInteger();
+    workerPool = Executors.newScheduledThreadPool(workerCount, runnable -> {
+      Thread thread = new Thread(runnable, "purchase-outbox-worker-" + workerNumber.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    // stagger the workers so that they don't all poll at the same moment
+    for (int i = 0; i < workerCount; i++) {
+      workerPool.scheduleWithFixedDelay(this::drain, (pollIntervalMs * i) / workerCount, pollIntervalMs, TimeUnit.MILLISECONDS);
+    }
+    log.info("Started {} purchase outbox worker(s).", workerCount);
+  }
+
+  @PreDestroy
+  public void stopWorkers() throws InterruptedException {
+    if (workerPool == null) {
+      return;
+    }
+
+    workerPool.shutdown();
+    if (!workerPool.awaitTermination(10, TimeUnit.SECONDS)) {
+      // the claimed rows are given to another worker once `claim-timeout-ms` passes
+      workerPool.shutdownNow();
+    }
+  }
+
+  // keeps claiming batches for as long as they come back full, so that bursts are drained without waiting for the next poll
+  private void drain() {
+    try {
+      List<PurchaseOutbox> claimed;
+      do {
+        claimed = claimBatch();
+        claimed.forEach(this::process);
+      } while (claimed.size() == batchSize && !Thread.currentThread().isInterrupted());
+    } catch (Exception e) {
+      // an exception would cancel the worker's schedule
+      log.error("Purchase outbox worker failed to drain the queue. Reason: {}", e.toString());
+    }
+  }
+
+  private List<PurchaseOutbox> claimBatch() {
+    List<PurchaseOutbox> claimed = transactionTemplate.execute(status -> {
+      LocalDateTime ldtNow = LocalDateTime.now();
+
+      List<PurchaseOutbox> due = purchaseOutboxRepo.lockDueEntries(ldtNow, batchSize);
+      due.forEach(entry -> {
+        entry.setStatus(OutboxStatus.Processing);
+        entry.setClaimedAt(ldtNow);
+        entry.setAttempts(entry.getAttempts() + 1);
+      });
+
+      return purchaseOutboxRepo.saveAll(due);
+    });
+
+    return claimed == null ? List.of() : claimed;
+  }
+
+  private void process(PurchaseOutbox entry) {
+    long startNanos = System.nanoTime();
+
+    Optional<String> error;
+    try {
+      error = transactionTemplate.execute(status -> {
+        Optional<String> fulfilmentError = fulfil(entry);
+        if (fulfilmentError.isPresent()) {
+          status.setRollbackOnly();
+          return fulfilmentError;
+        }
+
+        entry.setStatus(OutboxStatus.Done);
+        entry.setCompletedAt(LocalDateTime.now());
+        entry.setLastError(null);
+        purchaseOutboxRepo.save(entry);
+
+        return Optional.empty();
+      });
+    } catch (Exception e) {
+      error = Optional.of(e.toString());
+    }
+    fulfilmentTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+
+    if (error == null || error.isEmpty()) {
+      fulfilledCounter.increment();
+      return;
+    }
+
+    scheduleRetry(entry, error.get());
+  }
+
+  // runs inside the transaction of `process()`, so whatever it writes is committed together with the "done" mark
+  private Optional<String> fulfil(PurchaseOutbox entry) {
+    switch (entry.getPurchaseType()) {
+      case Course: {
+        Optional<String> resp = courseService.purchaseCourse(entry.getCourseId().toString(), entry.getUserId().toString());
+        if (resp.isPresent() && resp.get().equals(CourseService.ALREADY_PURCHASED_ERROR)) {
+          log.info("Course `{}` was already fulfilled for user `{}`.", entry.getCourseId(), entry.getUserId());
+          return Optional.empty();
+        }
+
+        return resp;
+      }
+
+      case Storage: {
+        int updatedRows = userRepo.addTotalStorage(entry.getUserId(), entry.getStorageToAddInGBs() * BYTES_PER_GB);
+        if (updatedRows == 0) {
+          return Optional.of("User `" + entry.getUserId() + "` not found.");
+        }
+
+        log.info("Added {}GB of storage for user `{}`.", entry.getStorageToAddInGBs(), entry.getUserId());
+        return Optional.empty();
+      }
+
+      default: {
+        return Optional.of("Unknown purchase type `" + entry.getPurchaseType() + "`.");
+      }
+    }
+  }
+
+  private void scheduleRetry(PurchaseOutbox entry, String error) {
+    entry.setClaimedAt(null);
+    entry.setLastError(error.length() > 1000 ? error.substring(0, 1000) : error);
+
+    if (entry.getAttempts() >= maxAttempts) {
+      entry.setStatus(OutboxStatus.Failed);
+      failedCounter.increment();
+      log.error(
+          "Giving up on the {} purchase `{}` of user `{}` after {} attempt(s). Reason: {}",
+          entry.getPurchaseType(), entry.getId(), entry.getUserId(), entry.getAttempts(), error
+      );
+    } else {
+      entry.setStatus(OutboxStatus.Pending);
+      entry.setNextAttemptAt(LocalDateTime.now().plus(backoffFor(entry.getAttempts())));
+      retriedCounter.increment();
+      log.warn(
+          "Failed to fulfil the {} purchase `{}` (attempt {}). Retrying at {}. Reason: {}",
+          entry.getPurchaseType(), entry.getId(), entry.getAttempts(), entry.getNextAttemptAt(), error
+      );
+    }
+
+    try {
+      purchaseOutboxRepo.save(entry);
+    } catch (Exception e) {
+      // the claim times out eventually and the row is retried anyway
+      log.error("Failed to save the retry state of purchase `{}`. Reason: {}", entry.getId(), e.toString());
+    }
+  }
+
+  // exponential backoff with jitter, so that the retries of a burst don't all land at the same moment
+  private Duration backoffFor(int attempts) {
+    long backoffMs = baseBackoffMs << Math.min(attempts - 1, 20);
+    backoffMs = Math.min(backoffMs, maxBackoffMs);
+
+    return Duration.ofMillis(backoffMs / 2 + ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1));
+  }
+
+  // Gives the rows of workers that died mid-purchase to the other workers, and refreshes the queue metrics
+  @Scheduled(
+      fixedDelayString = "${application.purchase-outbox.maintenance-interval-ms:15000}",
+      initialDelayString = "${application.purchase-outbox.maintenance-interval-ms:15000}"
+  )
+  public void maintain() {
+    try {
+      int releasedCount = purchaseOutboxRepo.releaseStaleClaims(LocalDateTime.now().minus(Duration.ofMillis(claimTimeoutMs)));
+      if (releasedCount > 0) {
+        log.warn("Released {} stale purchase outbox claim(s).", releasedCount);
+      }
+
+      queueDepth.set(purchaseOutboxRepo.countByStatusIn(List.of(OutboxStatus.Pending, OutboxStatus.Processing)));
+      oldestPendingAgeSeconds.set(
+          purchaseOutboxRepo
+              .findFirstByStatusOrderByCreatedAtAsc(OutboxStatus.Pending)
+              .map(entry -> Duration.between(entry.getCreatedAt(), LocalDateTime.now()).toSeconds())
+              .orElse(0L)
+      );
+    } catch (Exception e) {
+      log.error("Failed to maintain the purchase outbox. Reason: {}", e.toString());
+    }
+  }
+}
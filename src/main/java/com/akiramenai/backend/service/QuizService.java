@@ -17,10 +17,14 @@ public class QuizService {
   JsonSerializer jsonSerializer = new JsonSerializer();
   private final QuizRepo quizRepo;
   private final CourseRepo courseRepo;
+  private final CourseViewCache courseViewCache;
+  private final CourseProgressService courseProgressService;
 
-  public QuizService(QuizRepo quizRepo, CourseRepo courseRepo) {
+  public QuizService(QuizRepo quizRepo, CourseRepo courseRepo, CourseViewCache courseViewCache, CourseProgressService courseProgressService) {
     this.quizRepo = quizRepo;
     this.courseRepo = courseRepo;
+    this.courseViewCache = courseViewCache;
+    this.courseProgressService = courseProgressService;
   }
 
   public ResultOrError<String, BackendOperationErrors> addQuiz(AddQuizRequest addQuizRequest, UUID currentUserId) {
@@ -72,6 +76,7 @@ public class QuizService {
       quizRepo.save(quizToAdd);
       targetCourse.get().getCourseItemIds().add(quizToAdd.getItemId());
       courseRepo.save(targetCourse.get());
+      courseViewCache.invalidate(targetCourse.get().getId());
 
       ItemId quizItemId = new ItemId(quizToAdd.getItemId());
       Optional<String> responseJson = jsonSerializer.serialize(quizItemId);
@@ -144,6 +149,8 @@ public class QuizService {
     try {
       targetCourse.get().getCourseItemIds().remove(retrievedQuiz.get().getItemId());
       courseRepo.save(targetCourse.get());
+      courseViewCache.invalidate(targetCourse.get().getId());
+      courseProgressService.onCourseItemsRemoved(targetCourse.get().getId());
 
       quizRepo.delete(retrievedQuiz.get());
     } catch (Exception e) {
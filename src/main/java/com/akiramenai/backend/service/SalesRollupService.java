@@ -0,0 +1,114 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.DailySalesTotal;
+import com.akiramenai.backend.model.Purchase;
+import com.akiramenai.backend.repo.DailyCourseSalesRepo;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+// Keeps the `daily_course_sales` rollup in sync with the purchases, so that the sales analytics read one row
+// per day instead of every purchase in the period.
+@Slf4j
+@Service
+public class SalesRollupService {
+  private final DailyCourseSalesRepo dailyCourseSalesRepo;
+  private final TransactionTemplate transactionTemplate;
+  private final JdbcTemplate jdbcTemplate;
+
+  @Value("${application.sales-rollup.backfill-on-startup:true}")
+  private boolean backfillOnStartup;
+
+  public SalesRollupService(
+      DailyCourseSalesRepo dailyCourseSalesRepo,
+      TransactionTemplate transactionTemplate,
+      JdbcTemplate jdbcTemplate
+  ) {
+    this.dailyCourseSalesRepo = dailyCourseSalesRepo;
+    this.transactionTemplate = transactionTemplate;
+    this.jdbcTemplate = jdbcTemplate;
+  }
+
+  // One row, inserted once the rollup has been built from the purchases made before it existed
+  @PostConstruct
+  void ensureBackfillMarkerTableExists() {
+    try {
+      jdbcTemplate.execute(
+          "CREATE TABLE IF NOT EXISTS daily_course_sales_backfill (id smallint PRIMARY KEY, completed_at timestamptz NOT NULL)"
+      );
+    } catch (Exception e) {
+      log.error("Failed to create the daily course sales backfill marker table. Reason: {}", e.toString());
+    }
+  }
+
+  // Has to be called in the transaction that saves the purchase, so that both are committed (or rolled back) together
+  public void recordSale(Purchase purchase) {
+    dailyCourseSalesRepo.addSale(
+        purchase.getAuthorId(),
+        purchase.getCourseId(),
+        purchase.getPurchaseDate(),
+        purchase.getPrice()
+    );
+  }
+
+  public List<DailySalesTotal> getDailyTotals(UUID authorId, LocalDate startDate, LocalDate endDate) {
+    return dailyCourseSalesRepo.findDailyTotals(authorId, startDate, endDate);
+  }
+
+  // Builds the rollup of the purchases made before it existed, unless that was already done. The purchases made
+  // afterward are added by `recordSale()`. If it fails, it's tried again on the next startup.
+  @EventListener(ApplicationReadyEvent.class)
+  public void backfillIfNotDone() {
+    if (!backfillOnStartup) {
+      return;
+    }
+
+    try {
+      if (isBackfillDone()) {
+        return;
+      }
+
+      Integer rollupRowCount = transactionTemplate.execute(status -> {
+        lockRollup();
+        // another node may have done it while we were waiting for the lock
+        return isBackfillDone() ? null : rebuildAndMarkDone();
+      });
+      if (rollupRowCount != null) {
+        log.info("Backfilled {} daily course sales row(s) from the purchases.", rollupRowCount);
+      }
+    } catch (Exception e) {
+      log.error("Failed to backfill the daily course sales. Reason: {}", e.toString());
+    }
+  }
+
+  private boolean isBackfillDone() {
+    Integer markerCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM daily_course_sales_backfill", Integer.class);
+    return markerCount != null && markerCount > 0;
+  }
+
+  // Waits for the purchases that are adding their sale to commit, and makes the next ones wait until this
+  // transaction commits. So every purchase is either counted by the rebuild or added on top of it, never both or
+  // neither. The lock mode conflicts with itself too, so only one node rebuilds at a time.
+  private void lockRollup() {
+    jdbcTemplate.execute("LOCK TABLE daily_course_sales IN SHARE ROW EXCLUSIVE MODE");
+  }
+
+  private int rebuildAndMarkDone() {
+    int rollupRowCount = dailyCourseSalesRepo.rebuildFromPurchases();
+    jdbcTemplate.update("""
+        INSERT INTO daily_course_sales_backfill (id, completed_at) VALUES (1, now())
+        ON CONFLICT (id) DO UPDATE SET completed_at = EXCLUDED.completed_at
+        """);
+
+    return rollupRowCount;
+  }
+}
@@ -0,0 +1,140 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.repo.UserRepo;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The used/total storage of the users. Every change is a single conditional UPDATE of the user's row, so
+// concurrent uploads can't lose each other's charges or go past the quota.
+//
+// Optionally (`reservation-chunk-bytes` > 0) a node reserves storage in chunks and hands it out locally, so a
+// burst of uploads from the same instructor doesn't update their row for every file. The unused part of a
+// chunk is given back once it has been idle for a while (and on shutdown). Until then it shows as used, and
+// if the node crashes it stays used, which is why it's off by default.
+@Slf4j
+@Service
+public class StorageQuotaService {
+  private static class Lease {
+    long bytes;
+    long lastUsedMillis;
+  }
+
+  private final UserRepo userRepo;
+
+  @Value("${application.storage-quota.reservation-chunk-bytes:0}")
+  private long reservationChunkBytes;
+
+  @Value("${application.storage-quota.lease-idle-ms:30000}")
+  private long leaseIdleMillis;
+
+  // storage this node has reserved in the DB but not handed out yet
+  private final Map<UUID, Lease> leases = new ConcurrentHashMap<>();
+
+  public StorageQuotaService(UserRepo userRepo) {
+    this.userRepo = userRepo;
+  }
+
+  // Charges `bytes` to the user's used storage. Returns false (and charges nothing) if they don't have enough
+  // free storage or don't exist.
+  public boolean reserve(UUID userId, long bytes) {
+    if (bytes <= 0) {
+      return true;
+    }
+    if (reservationChunkBytes <= 0) {
+      return userRepo.reserveUsedStorage(userId, bytes) == 1;
+    }
+
+    if (takeFromLease(userId, bytes)) {
+      return true;
+    }
+
+    long chunk = Math.max(bytes, reservationChunkBytes);
+    if (chunk > bytes && userRepo.reserveUsedStorage(userId, chunk) == 1) {
+      addToLease(userId, chunk - bytes);
+      return true;
+    }
+
+    // not enough free storage for a whole chunk, but maybe for the file itself
+    return userRepo.reserveUsedStorage(userId, bytes) == 1;
+  }
+
+  // Gives `bytes` of used storage back to the user (never going below 0)
+  public void release(UUID userId, long bytes) {
+    if (bytes <= 0) {
+      return;
+    }
+
+    try {
+      userRepo.releaseUsedStorage(userId, bytes);
+    } catch (Exception e) {
+      log.error("Failed to release {} byte(s) of storage for user `{}`. Reason: {}", bytes, userId, e.toString());
+    }
+  }
+
+  @Scheduled(
+      fixedDelayString = "${application.storage-quota.lease-idle-ms:30000}",
+      initialDelayString = "${application.storage-quota.lease-idle-ms:30000}"
+  )
+  public void returnIdleLeases() {
+    long idleSince = System.currentTimeMillis() - leaseIdleMillis;
+    for (UUID userId : new ArrayList<>(leases.keySet())) {
+      long[] idleBytes = {0};
+      leases.computeIfPresent(userId, (id, lease) -> {
+        if (lease.lastUsedMillis > idleSince) {
+          return lease;
+        }
+        idleBytes[0] = lease.bytes;
+        return null;
+      });
+      release(userId, idleBytes[0]);
+    }
+  }
+
+  @PreDestroy
+  public void returnLeasesOnShutdown() {
+    if (!leases.isEmpty()) {
+      log.info("Giving back the unused storage reservations of {} user(s) before shutdown.", leases.size());
+    }
+    for (UUID userId : new ArrayList<>(leases.keySet())) {
+      returnLease(userId);
+    }
+  }
+
+  private boolean takeFromLease(UUID userId, long bytes) {
+    boolean[] isTaken = {false};
+    leases.computeIfPresent(userId, (id, lease) -> {
+      if (lease.bytes >= bytes) {
+        lease.bytes -= bytes;
+        lease.lastUsedMillis = System.currentTimeMillis();
+        isTaken[0] = true;
+      }
+      return lease;
+    });
+
+    return isTaken[0];
+  }
+
+  private void addToLease(UUID userId, long bytes) {
+    leases.compute(userId, (id, lease) -> {
+      Lease updated = (lease == null) ? new Lease() : lease;
+      updated.bytes += bytes;
+      updated.lastUsedMillis = System.currentTimeMillis();
+      return updated;
+    });
+  }
+
+  private void returnLease(UUID userId) {
+    Lease lease = leases.remove(userId);
+    if (lease != null) {
+      release(userId, lease.bytes);
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package com.akiramenai.backend.service;
 
 import com.akiramenai.backend.model.FileUploadErrorTypes;
+import com.akiramenai.backend.model.MediaStores;
 import com.akiramenai.backend.model.ResultOrError;
+import com.akiramenai.backend.utility.SizeLimitedInputStream;
 import jakarta.validation.constraints.NotNull;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -9,8 +11,11 @@ import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.*;
+import java.util.Optional;
 import java.util.UUID;
 
 @Slf4j
@@ -28,6 +33,17 @@ public class StorageService {
   @Value("${application.default-values.scripts.script-storage-directory}")
   public String scriptDirectoryString;
 
+  @Value("${application.uploads.max-image-size-mb:10}")
+  private long maxImageSizeMb;
+
+  private final ImageVariantService imageVariantService;
+  private final MediaBlobService mediaBlobService;
+
+  public StorageService(ImageVariantService imageVariantService, MediaBlobService mediaBlobService) {
+    this.imageVariantService = imageVariantService;
+    this.mediaBlobService = mediaBlobService;
+  }
+
   public static MediaType getFileType(MultipartFile file) {
     if (file.getContentType() == null) {
       return MediaType.APPLICATION_OCTET_STREAM;
@@ -60,15 +76,8 @@ public class StorageService {
           .build();
     }
 
-    try {
-      Path uploadPath = Paths.get(this.pictureDirectoryString);
-      if (!Files.exists(uploadPath)) {
-        Files.createDirectories(uploadPath);
-      }
-
-      String fileName = getGeneratedFileName(file.getOriginalFilename());
-      Path filePath = uploadPath.resolve(fileName);
-      Files.copy(file.getInputStream(), filePath);
+    try (InputStream content = file.getInputStream()) {
+      Path filePath = storeImage(content, getFileType(file)).path();
 
       return ResultOrError
           .<String, FileUploadErrorTypes>builder()
@@ -97,6 +106,70 @@ public class StorageService {
     }
   }
 
+  // Stores a picture sent as the raw request body. Unlike a multipart upload it isn't buffered to a temporary
+  // file first: the body is hashed while it's written next to its final location, and the format is read from
+  // its first bytes. Fails with `FileTooLarge` as soon as more than `maxBytes` have been read.
+  public ResultOrError<MediaBlobService.StoredBlob, FileUploadErrorTypes> saveImage(InputStream body, long maxBytes) {
+    var resp = ResultOrError.<MediaBlobService.StoredBlob, FileUploadErrorTypes>builder();
+    long limit = Math.min(maxBytes, maxImageSizeMb * 1024 * 1024);
+
+    try (InputStream content = new BufferedInputStream(body)) {
+      content.mark(8);
+      byte[] header = content.readNBytes(8);
+      content.reset();
+      if (header.length == 0) {
+        return resp
+            .errorMessage("Uploaded file is empty.")
+            .errorType(FileUploadErrorTypes.FileIsEmpty)
+            .build();
+      }
+
+      Optional<MediaType> contentType = ImageVariantService.detectContentType(header);
+      if (contentType.isEmpty()) {
+        return resp
+            .errorMessage("Unsupported image file format. We only support PNG and JPEG.")
+            .errorType(FileUploadErrorTypes.UnsupportedFileType)
+            .build();
+      }
+
+      return resp
+          .result(storeImage(new SizeLimitedInputStream(content, limit), contentType.get()))
+          .build();
+    } catch (SizeLimitedInputStream.SizeLimitExceededException e) {
+      return resp
+          .errorMessage(e.getMessage())
+          .errorType(FileUploadErrorTypes.FileTooLarge)
+          .build();
+    } catch (InvalidPathException e) {
+      return resp
+          .errorMessage(e.getMessage())
+          .errorType(FileUploadErrorTypes.InvalidUploadDir)
+          .build();
+    } catch (UnsupportedOperationException e) {
+      return resp
+          .errorMessage(e.getMessage())
+          .errorType(FileUploadErrorTypes.FailedToCreateUploadDir)
+          .build();
+    } catch (IOException e) {
+      return resp
+          .errorMessage(e.getMessage())
+          .errorType(FileUploadErrorTypes.FailedToSaveFile)
+          .build();
+    }
+  }
+
+  private MediaBlobService.StoredBlob storeImage(InputStream content, MediaType contentType) throws IOException {
+    // the extension follows the content type, so identical pictures get the same name whatever they were called
+    String extension = contentType.equals(MediaType.IMAGE_PNG) ? "png" : "jpg";
+    MediaBlobService.StoredBlob storedBlob = mediaBlobService.store(MediaStores.Pictures, content, extension);
+    // a picture that was already stored has its variants already
+    if (storedBlob.isNewFile()) {
+      imageVariantService.generateVariants(storedBlob.path());
+    }
+
+    return storedBlob;
+  }
+
   public ResultOrError<Path, FileUploadErrorTypes> saveVtt(MultipartFile file) {
     var resp = ResultOrError.<Path, FileUploadErrorTypes>builder();
     if (file.isEmpty()) {
@@ -158,15 +231,12 @@ public class StorageService {
           .build();
     }
 
-    try {
-      Path uploadPath = Paths.get(this.scriptDirectoryString);
-      if (!Files.exists(uploadPath)) {
-        Files.createDirectories(uploadPath);
-      }
-
-      String fileName = getGeneratedFileName(file.getOriginalFilename());
-      Path filePath = uploadPath.resolve(fileName);
-      Files.copy(file.getInputStream(), filePath);
+    try (InputStream content = file.getInputStream()) {
+      Path filePath = mediaBlobService.store(
+          MediaStores.Scripts,
+          content,
+          getFileExtension(Optional.ofNullable(file.getOriginalFilename()).orElse(""))
+      ).path();
 
       return resp
           .result(filePath)
@@ -194,6 +264,26 @@ public class StorageService {
     }
   }
 
+  // Releases a reference to an uploaded picture. Its file and resized variants are deleted once nothing
+  // references it anymore. Returns the size of the released picture, to be credited to the user's storage.
+  public long releaseImage(String fileName) {
+    Optional<MediaBlobService.ReleasedBlob> released = mediaBlobService.release(MediaStores.Pictures, fileName);
+    if (released.isEmpty()) {
+      return 0;
+    }
+
+    if (released.get().isDeleted()) {
+      imageVariantService.deleteVariants(fileName);
+    }
+    return released.get().sizeBytes();
+  }
+
+  public long releaseScript(String fileName) {
+    return mediaBlobService.release(MediaStores.Scripts, fileName)
+        .map(MediaBlobService.ReleasedBlob::sizeBytes)
+        .orElse(0L);
+  }
+
   private String getFileExtension(@NotNull String filename) {
     int dotIndex = filename.lastIndexOf(".");
     if (dotIndex >= 0) {
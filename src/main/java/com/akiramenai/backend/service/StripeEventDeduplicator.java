@@ -0,0 +1,91 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.PurchaseInfo;
+import com.akiramenai.backend.repo.ProcessedStripeEventRepo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Makes the ingestion of Stripe's webhook events idempotent.
+//
+// The event and session IDs of the stored purchases are recorded in `processed_stripe_events` in the same
+// transaction as the purchase itself. An LRU of the recently seen IDs sits in front of the table, so that
+// the redeliveries of a retry storm are acknowledged without any DB work at all.
+@Slf4j
+@Service
+public class StripeEventDeduplicator {
+  private final ProcessedStripeEventRepo processedStripeEventRepo;
+  private final PurchaseOutboxService purchaseOutboxService;
+  private final TransactionTemplate transactionTemplate;
+
+  @Value("${application.stripe.seen-event-cache-size:10000}")
+  private int seenCacheSize;
+
+  // Stripe keeps retrying an event for up to 3 days
+  @Value("${application.stripe.processed-event-retention-days:30}")
+  private int retentionDays;
+
+  private final LinkedHashMap<String, Boolean> recentlySeenIds = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+      return size() > seenCacheSize;
+    }
+  };
+
+  public StripeEventDeduplicator(
+      ProcessedStripeEventRepo processedStripeEventRepo,
+      PurchaseOutboxService purchaseOutboxService,
+      TransactionTemplate transactionTemplate
+  ) {
+    this.processedStripeEventRepo = processedStripeEventRepo;
+    this.purchaseOutboxService = purchaseOutboxService;
+    this.transactionTemplate = transactionTemplate;
+  }
+
+  // true if this node has recently stored the purchase of this event (or session)
+  public synchronized boolean isRecentlySeen(String id) {
+    return id != null && recentlySeenIds.containsKey(id);
+  }
+
+  // Stores the purchase unless the event or its session has been stored before. Returns false for duplicates.
+  // Throws if the purchase couldn't be stored.
+  public boolean enqueueOnce(String eventId, String sessionId, PurchaseInfo purchaseInfo) {
+    Boolean isStored = transactionTemplate.execute(status -> {
+      int insertedRows = processedStripeEventRepo.insertIfAbsent(eventId, sessionId, LocalDateTime.now());
+      if (insertedRows == 0) {
+        return false;
+      }
+
+      purchaseOutboxService.enqueue(purchaseInfo);
+      return true;
+    });
+
+    // either way the IDs are now known to be committed
+    remember(eventId, sessionId);
+
+    return Boolean.TRUE.equals(isStored);
+  }
+
+  private synchronized void remember(String eventId, String sessionId) {
+    recentlySeenIds.put(eventId, true);
+    if (sessionId != null) {
+      recentlySeenIds.put(sessionId, true);
+    }
+  }
+
+  @Scheduled(cron = "${application.stripe.processed-event-cleanup-cron:0 30 3 * * *}")
+  public void deleteExpiredEvents() {
+    try {
+      int deletedCount = processedStripeEventRepo.deleteReceivedBefore(LocalDateTime.now().minusDays(retentionDays));
+      log.info("Deleted {} processed Stripe event(s) older than {} day(s).", deletedCount, retentionDays);
+    } catch (Exception e) {
+      log.error("Failed to delete the expired processed Stripe events. Reason: {}", e.toString());
+    }
+  }
+}
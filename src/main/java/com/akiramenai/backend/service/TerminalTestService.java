@@ -8,11 +8,8 @@ import com.akiramenai.backend.utility.JsonSerializer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -26,12 +23,16 @@ public class TerminalTestService {
   private final TerminalTestRepo terminalTestRepo;
   private final StorageService storageService;
   private final PurchaseRepo purchaseRepo;
+  private final CourseViewCache courseViewCache;
+  private final CourseProgressService courseProgressService;
 
-  public TerminalTestService(TerminalTestRepo terminalTestRepo, CourseRepo courseRepo, StorageService storageService, PurchaseRepo purchaseRepo) {
+  public TerminalTestService(TerminalTestRepo terminalTestRepo, CourseRepo courseRepo, StorageService storageService, PurchaseRepo purchaseRepo, CourseViewCache courseViewCache, CourseProgressService courseProgressService) {
     this.terminalTestRepo = terminalTestRepo;
     this.courseRepo = courseRepo;
     this.storageService = storageService;
     this.purchaseRepo = purchaseRepo;
+    this.courseViewCache = courseViewCache;
+    this.courseProgressService = courseProgressService;
   }
 
   public ResultOrError<String, BackendOperationErrors> addTerminalTest(
@@ -82,6 +83,7 @@ public class TerminalTestService {
       terminalTestRepo.save(terminalTest);
       targetCourse.get().getCourseItemIds().add(terminalTest.getItemId());
       courseRepo.save(targetCourse.get());
+      courseViewCache.invalidate(targetCourse.get().getId());
 
       ItemId responseObj = new ItemId(terminalTest.getItemId());
       Optional<String> respJson = jsonSerializer.serialize(responseObj);
@@ -152,16 +154,12 @@ public class TerminalTestService {
     try {
       targetCourse.get().getCourseItemIds().remove(retrievedTerminalTest.get().getItemId());
       courseRepo.save(targetCourse.get());
+      courseViewCache.invalidate(targetCourse.get().getId());
+      courseProgressService.onCourseItemsRemoved(targetCourse.get().getId());
 
       terminalTestRepo.delete(retrievedTerminalTest.get());
 
-      Path scriptFileToRemove = Paths.get(
-          storageService.scriptDirectoryString,
-          retrievedTerminalTest.get().getVerificationScriptFilename()
-      );
-      if (!scriptFileToRemove.toFile().delete()) {
-        log.warn("Failed to remove deleted script file: {}", scriptFileToRemove);
-      }
+      storageService.releaseScript(retrievedTerminalTest.get().getVerificationScriptFilename());
     } catch (Exception e) {
       log.error("Failed to delete the terminal test requested for removal. Reason: ", e);
 
@@ -237,21 +235,13 @@ public class TerminalTestService {
     if (modifyCodingTestRequest.description() != null) {
       terminalTestToModify.get().setDescription(modifyCodingTestRequest.description().trim());
     }
+    String oldScriptFilename = null;
     if (modifyCodingTestRequest.newScript() != null) {
-      // replace the old script with the new script
-      Path oldScriptPath = Paths.get(
-          storageService.scriptDirectoryString,
-          terminalTestToModify.get().getVerificationScriptFilename()
+      // the scripts are stored by content, so the test points at the new one and the old one is released
+      oldScriptFilename = terminalTestToModify.get().getVerificationScriptFilename();
+      terminalTestToModify.get().setVerificationScriptFilename(
+          modifyCodingTestRequest.newScript().getFileName().toString()
       );
-      try {
-        Files.move(modifyCodingTestRequest.newScript(), oldScriptPath, StandardCopyOption.REPLACE_EXISTING);
-      } catch (IOException e) {
-        return resp
-            .result(null)
-            .errorMessage("Failed to save the new script file.")
-            .errorType(BackendOperationErrors.ItemNotFound)
-            .build();
-      }
     }
 
     try {
@@ -264,6 +254,10 @@ public class TerminalTestService {
           .errorType(BackendOperationErrors.FailedToSaveToDb)
           .build();
     }
+    // released even if the new script is identical, the upload has added a reference of its own
+    if (oldScriptFilename != null) {
+      storageService.releaseScript(oldScriptFilename);
+    }
 
     ItemId terminalTest = new ItemId(terminalTestToModify.get().getItemId());
     Optional<String> responseJson = jsonSerializer.serialize(terminalTest);
@@ -12,9 +12,6 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.UUID;
@@ -32,6 +29,8 @@ public class UserService {
   private final UserRepo userRepo;
   private final LearnerInfosRepo learnerInfosRepo;
   private final InstructorInfosRepo instructorInfosRepo;
+  private final AuthorInfoCache authorInfoCache;
+  private final StorageService storageService;
 
   @Value("${application.default-values.default-user-pfp-filename}")
   private String defaultProfilePictureFilename;
@@ -42,7 +41,7 @@ public class UserService {
   public UserService(
       UserRepo userRepo, AuthenticationManager authManager, JWTService jwtService,
       LearnerInfosRepo learnerInfos, InstructorInfosRepo instructorInfos,
-      PasswordHashingService passwordHashingService
+      PasswordHashingService passwordHashingService, AuthorInfoCache authorInfoCache, StorageService storageService
   ) {
     this.userRepo = userRepo;
     this.authManager = authManager;
@@ -50,6 +49,8 @@ public class UserService {
     this.learnerInfosRepo = learnerInfos;
     this.instructorInfosRepo = instructorInfos;
     this.passwordHashingService = passwordHashingService;
+    this.authorInfoCache = authorInfoCache;
+    this.storageService = storageService;
   }
 
   public Optional<Users> findUserById(UUID id) {
@@ -196,6 +197,7 @@ public class UserService {
     currentUser.get().setUsername(newUsername);
     try {
       userRepo.save(currentUser.get());
+      authorInfoCache.invalidate(currentUser.get().getId());
       return Optional.empty();
     } catch (Exception e) {
       logger.error("ERROR in `changeUsername`: {}", e.getMessage());
@@ -236,30 +238,21 @@ public class UserService {
     String oldPictureFilename = currentUser.get().getPfpFileName();
     currentUser.get().setPfpFileName(newPfpFilename);
 
-    // if the old profile picture wasn't the default one, delete it after saving the new one's path
-    if (!oldPictureFilename.equals(defaultProfilePictureFilename)) {
-      try {
-        Path oldProfilePicturePath = Paths.get(oldPictureFilename);
-        boolean isDeleted = Files.deleteIfExists(oldProfilePicturePath);
-        if (!isDeleted) {
-          logger.warn("Failed to delete the old profile picture file: {}", oldProfilePicturePath);
-        } else {
-          logger.info("Successfully deleted the old profile picture file: {}", oldProfilePicturePath);
-        }
-      } catch (Exception e) {
-        // Just log the error as this isn't a fatal error
-        logger.warn("Failed to delete the old profile picture: {}", e.getMessage());
-      }
-    }
-
     try {
       userRepo.save(currentUser.get());
+      authorInfoCache.invalidate(userId);
     } catch (Exception e) {
       logger.error("ERROR in `updatePfp()`: {}", e.getMessage());
 
       return Optional.of("Failed to save the changed profile picture path.");
     }
 
+    // if the old profile picture wasn't the default one, release it after saving the new one's path (it's
+    // deleted along with its resized variants if nothing else uses it)
+    if (oldPictureFilename != null && !oldPictureFilename.equals(defaultProfilePictureFilename)) {
+      storageService.releaseImage(oldPictureFilename);
+    }
+
     return Optional.empty();
   }
 }
@@ -2,7 +2,6 @@ package com.akiramenai.backend.service;
 
 import com.akiramenai.backend.model.*;
 import com.akiramenai.backend.repo.CourseRepo;
-import com.akiramenai.backend.repo.UserRepo;
 import com.akiramenai.backend.repo.VideoMetadataRepo;
 import com.akiramenai.backend.utility.IdParser;
 import com.akiramenai.backend.utility.JsonSerializer;
@@ -23,7 +22,11 @@ import java.util.UUID;
 public class VideoMetadataService {
   private final UserService userService;
   private final StorageService storageService;
-  private final UserRepo userRepo;
+  private final StorageQuotaService storageQuotaService;
+  private final HlsSegmentCache hlsSegmentCache;
+  private final HlsDescriptorCache hlsDescriptorCache;
+  private final CourseViewCache courseViewCache;
+  private final CourseProgressService courseProgressService;
   JsonSerializer jsonSerializer = new JsonSerializer();
 
   private final VideoMetadataRepo videoMetadataRepo;
@@ -32,12 +35,18 @@ public class VideoMetadataService {
   public VideoMetadataService(
       VideoMetadataRepo videoMetadataRepo,
       CourseRepo courseRepo,
-      UserService userService, StorageService storageService, UserRepo userRepo) {
+      UserService userService, StorageService storageService, StorageQuotaService storageQuotaService,
+      HlsSegmentCache hlsSegmentCache, HlsDescriptorCache hlsDescriptorCache, CourseViewCache courseViewCache,
+      CourseProgressService courseProgressService) {
     this.videoMetadataRepo = videoMetadataRepo;
     this.courseRepo = courseRepo;
     this.userService = userService;
     this.storageService = storageService;
-    this.userRepo = userRepo;
+    this.storageQuotaService = storageQuotaService;
+    this.hlsSegmentCache = hlsSegmentCache;
+    this.hlsDescriptorCache = hlsDescriptorCache;
+    this.courseViewCache = courseViewCache;
+    this.courseProgressService = courseProgressService;
   }
 
   public ResultOrError<String, BackendOperationErrors> modifyVideoMetadata(
@@ -178,6 +187,8 @@ public class VideoMetadataService {
     targetCourse.get().getCourseItemIds().remove(itemId);
     targetCourse.get().setLastModifiedAt(LocalDateTime.now());
     courseRepo.save(targetCourse.get());
+    courseViewCache.invalidate(targetCourse.get().getId());
+    courseProgressService.onCourseItemsRemoved(targetCourse.get().getId());
 
     videoMetadataRepo.delete(videoMetadata.get());
 
@@ -192,9 +203,10 @@ public class VideoMetadataService {
       long contentSize = FileUtils.sizeOf(videoIdDirPath.toFile());
 
       FileUtils.deleteDirectory(videoIdDirPath.toFile());
+      hlsDescriptorCache.invalidate(videoItemIdWithoutPrefix);
+      hlsSegmentCache.invalidateVideo(videoItemIdWithoutPrefix);
 
-      targetUser.get().setUsedStorageInBytes(targetUser.get().getUsedStorageInBytes() - contentSize);
-      userRepo.save(targetUser.get());
+      storageQuotaService.release(currentUserId, contentSize);
 
     } catch (Exception e) {
       log.error("Error getting VideoItemId path. Reason: ", e);
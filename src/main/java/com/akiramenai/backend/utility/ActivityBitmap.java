@@ -0,0 +1,89 @@
+package com.akiramenai.backend.utility;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// Login activity of one user for one year, stored as one bit per day.
+//
+// The slots are the same ones the old `ArrayList<Integer>` encoding used: slot 0 is unused and slots
+// 1..366 are the days of the year, with slot 60 always being February 29th. In non-leap years slot 60
+// is never set, and it's reported as -1 to keep the API output unchanged.
+public class ActivityBitmap {
+  public static final int SLOT_COUNT = 367;
+  public static final int BYTE_LENGTH = (SLOT_COUNT + 7) / 8;
+  public static final int LEAP_DAY_SLOT = 60;
+
+  public static byte[] empty() {
+    return new byte[BYTE_LENGTH];
+  }
+
+  public static int slotOf(LocalDate date) {
+    int slot = date.getDayOfYear();
+    if ((!date.isLeapYear()) && (slot >= LEAP_DAY_SLOT)) {
+      slot += 1;
+    }
+
+    return slot;
+  }
+
+  public static boolean isSet(byte[] bits, int slot) {
+    return (bits[slot >> 3] & (1 << (slot & 7))) != 0;
+  }
+
+  public static void set(byte[] bits, int slot) {
+    bits[slot >> 3] |= (byte) (1 << (slot & 7));
+  }
+
+  // number of active days in the slot range [fromSlot, toSlot)
+  public static int countSet(byte[] bits, int fromSlot, int toSlot) {
+    return BitSet.valueOf(bits).get(fromSlot, toSlot).cardinality();
+  }
+
+  // expands the slot range [fromSlot, toSlot) into the 0/1/-1 list format the API returns
+  public static List<Integer> toActivityList(byte[] bits, int fromSlot, int toSlot, boolean isLeapYear) {
+    List<Integer> activity = new ArrayList<>(toSlot - fromSlot);
+    for (int slot = fromSlot; slot < toSlot; slot++) {
+      if (!isLeapYear && slot == LEAP_DAY_SLOT) {
+        activity.add(-1);
+      } else {
+        activity.add(isSet(bits, slot) ? 1 : 0);
+      }
+    }
+
+    return activity;
+  }
+
+  // number of consecutive active days ending at (and including) `slot`, stopping at the start of the year
+  public static int trailingStreak(byte[] bits, int slot, boolean isLeapYear) {
+    int streak = 0;
+    for (int current = slot; current >= 1; current--) {
+      if (!isLeapYear && current == LEAP_DAY_SLOT) {
+        continue;
+      }
+      if (!isSet(bits, current)) {
+        break;
+      }
+      streak++;
+    }
+
+    return streak;
+  }
+
+  public static byte[] fromLegacy(List<Integer> legacyActivity) {
+    byte[] bits = empty();
+    if (legacyActivity == null) {
+      return bits;
+    }
+
+    for (int slot = 1; slot < Math.min(legacyActivity.size(), SLOT_COUNT); slot++) {
+      Integer value = legacyActivity.get(slot);
+      if (value != null && value == 1) {
+        set(bits, slot);
+      }
+    }
+
+    return bits;
+  }
+}
@@ -0,0 +1,41 @@
+package com.akiramenai.backend.utility;
+
+import com.akiramenai.backend.model.CourseCursor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Optional;
+import java.util.UUID;
+
+// Cursors are handed to the clients as opaque strings, so that we're free to change what's inside them
+@Slf4j
+public class CursorCodec {
+  private static final String SEPARATOR = "|";
+
+  public static String encode(CourseCursor cursor) {
+    String raw = cursor.createdAt().toString() + SEPARATOR + cursor.id().toString();
+
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public static Optional<CourseCursor> decode(String encodedCursor) {
+    try {
+      String raw = new String(Base64.getUrlDecoder().decode(encodedCursor), StandardCharsets.UTF_8);
+      int separatorIndex = raw.indexOf(SEPARATOR);
+      if (separatorIndex < 0) {
+        return Optional.empty();
+      }
+
+      return Optional.of(new CourseCursor(
+          LocalDateTime.parse(raw.substring(0, separatorIndex)),
+          UUID.fromString(raw.substring(separatorIndex + 1))
+      ));
+    } catch (Exception e) {
+      log.error("Failed to decode the provided cursor. Reason: {}", e.getMessage());
+
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,261 @@
+package com.akiramenai.backend.utility;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Writes files (or their cached bytes) to the response the way a static file server would: with validators
+// (ETag, Last-Modified), conditional GET (304), single byte-range requests (206) and the caller's
+// Cache-Control policy.
+//
+// The body is handed to Tomcat's sendfile when the connector supports it, so the bytes go from the page
+// cache to the socket without passing through the JVM. Otherwise it's copied with `FileChannel.transferTo`.
+@Slf4j
+public class HttpFileWriter {
+  private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+  private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+  private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+  private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+  // inclusive on both ends, like the `Range` header itself
+  record ByteRange(long start, long end) {
+    long length() {
+      return end - start + 1;
+    }
+  }
+
+  // What the `Range` header asks for
+  sealed interface RangeRequest {
+    // the whole file (malformed header or multiple ranges, which the players don't use)
+    record Full() implements RangeRequest {
+    }
+
+    record Partial(ByteRange range) implements RangeRequest {
+    }
+
+    record Unsatisfiable() implements RangeRequest {
+    }
+  }
+
+  // Same format nginx uses. It changes whenever the file is replaced (e.g. a modified subtitle file).
+  public static String etagOf(long size, long lastModifiedMillis) {
+    return "\"" + Long.toHexString(lastModifiedMillis) + "-" + Long.toHexString(size) + "\"";
+  }
+
+  public void writeFile(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      Path filePath,
+      long size,
+      long lastModifiedMillis,
+      String contentType,
+      String cacheControl
+  ) {
+    ByteRange range = writeHeaders(request, response, size, lastModifiedMillis, contentType, cacheControl);
+    if (range == null) {
+      return;
+    }
+
+    if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+      request.setAttribute(SENDFILE_FILENAME, filePath.toAbsolutePath().toString());
+      request.setAttribute(SENDFILE_START, range.start());
+      request.setAttribute(SENDFILE_END, range.end() + 1);
+      return;
+    }
+
+    try (FileChannel fileChannel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      long position = range.start();
+      long remaining = range.length();
+      while (remaining > 0) {
+        long transferred = fileChannel.transferTo(position, remaining, out);
+        if (transferred <= 0) {
+          // the file got shorter while we were sending it
+          break;
+        }
+        position += transferred;
+        remaining -= transferred;
+      }
+      response.flushBuffer();
+    } catch (IOException e) {
+      // usually the player aborting a request it no longer needs (seeking, switching quality)
+      log.debug("Failed to send file {}. Reason: {}", filePath, e.toString());
+    }
+  }
+
+  // Same as `writeFile()`, for content that's already in memory. The buffer itself isn't modified.
+  public void writeBuffer(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      ByteBuffer content,
+      long lastModifiedMillis,
+      String contentType,
+      String cacheControl
+  ) {
+    ByteRange range = writeHeaders(request, response, content.remaining(), lastModifiedMillis, contentType, cacheControl);
+    if (range == null) {
+      return;
+    }
+
+    ByteBuffer body = content.duplicate();
+    body.position(content.position() + (int) range.start());
+    body.limit(content.position() + (int) range.end() + 1);
+    try {
+      WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+      while (body.hasRemaining()) {
+        out.write(body);
+      }
+      response.flushBuffer();
+    } catch (IOException e) {
+      log.debug("Failed to send buffered content. Reason: {}", e.toString());
+    }
+  }
+
+  // Sets the status and headers. Returns the part of the content to send as the body, or null when the
+  // response is already complete (304, 416, HEAD requests and empty content).
+  private ByteRange writeHeaders(
+      HttpServletRequest request,
+      HttpServletResponse response,
+      long size,
+      long lastModifiedMillis,
+      String contentType,
+      String cacheControl
+  ) {
+    String etag = etagOf(size, lastModifiedMillis);
+    // HTTP dates only have second precision
+    long lastModifiedSeconds = lastModifiedMillis / 1000 * 1000;
+
+    response.setHeader(HttpHeaders.ETAG, etag);
+    response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModifiedSeconds);
+    response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl);
+    response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+    if (isNotModified(request, etag, lastModifiedSeconds)) {
+      response.setStatus(HttpStatus.NOT_MODIFIED.value());
+      return null;
+    }
+
+    response.setStatus(HttpStatus.OK.value());
+    ByteRange range = new ByteRange(0, size - 1);
+    String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+    if (rangeHeader != null && size > 0 && isRangeApplicable(request, etag, lastModifiedSeconds)) {
+      switch (parseRange(rangeHeader, size)) {
+        case RangeRequest.Full full -> {
+        }
+        case RangeRequest.Partial partial -> {
+          range = partial.range();
+          response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + range.start() + "-" + range.end() + "/" + size);
+          response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+        }
+        case RangeRequest.Unsatisfiable unsatisfiable -> {
+          response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+          response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+          return null;
+        }
+      }
+    }
+
+    response.setContentType(contentType);
+    response.setContentLengthLong(Math.max(range.length(), 0));
+    if (request.getMethod().equals("HEAD") || range.length() <= 0) {
+      return null;
+    }
+
+    return range;
+  }
+
+  private boolean isNotModified(HttpServletRequest request, String etag, long lastModifiedSeconds) {
+    String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (ifNoneMatch != null) {
+      return matchesAny(ifNoneMatch, etag);
+    }
+
+    long ifModifiedSince = getDateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+    return ifModifiedSince != -1 && lastModifiedSeconds <= ifModifiedSince;
+  }
+
+  // `If-Range` asks for the range only if the file is still the one the client has the other parts of
+  private boolean isRangeApplicable(HttpServletRequest request, String etag, long lastModifiedSeconds) {
+    String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+    if (ifRange == null) {
+      return true;
+    }
+    if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+      return ifRange.trim().equals(etag);
+    }
+
+    long ifRangeDate = getDateHeader(request, HttpHeaders.IF_RANGE);
+    return ifRangeDate != -1 && ifRangeDate == lastModifiedSeconds;
+  }
+
+  private static boolean matchesAny(String ifNoneMatch, String etag) {
+    for (String candidate : ifNoneMatch.split(",")) {
+      String trimmed = candidate.trim();
+      if (trimmed.startsWith("W/")) {
+        trimmed = trimmed.substring(2);
+      }
+      if (trimmed.equals("*") || trimmed.equals(etag)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  private static long getDateHeader(HttpServletRequest request, String name) {
+    try {
+      return request.getDateHeader(name);
+    } catch (IllegalArgumentException e) {
+      return -1;
+    }
+  }
+
+  static RangeRequest parseRange(String rangeHeader, long size) {
+    if (!rangeHeader.startsWith("bytes=") || rangeHeader.contains(",")) {
+      return new RangeRequest.Full();
+    }
+
+    String spec = rangeHeader.substring("bytes=".length()).trim();
+    int dashIndex = spec.indexOf('-');
+    if (dashIndex < 0) {
+      return new RangeRequest.Full();
+    }
+
+    try {
+      String startString = spec.substring(0, dashIndex).trim();
+      String endString = spec.substring(dashIndex + 1).trim();
+
+      // suffix range: the last N bytes
+      if (startString.isEmpty()) {
+        long suffixLength = Long.parseLong(endString);
+        if (suffixLength <= 0) {
+          return new RangeRequest.Unsatisfiable();
+        }
+        return new RangeRequest.Partial(new ByteRange(Math.max(size - suffixLength, 0), size - 1));
+      }
+
+      long start = Long.parseLong(startString);
+      long end = endString.isEmpty() ? size - 1 : Math.min(Long.parseLong(endString), size - 1);
+      if (start >= size) {
+        return new RangeRequest.Unsatisfiable();
+      }
+      if (start < 0 || end < start) {
+        return new RangeRequest.Full();
+      }
+
+      return new RangeRequest.Partial(new ByteRange(start, end));
+    } catch (NumberFormatException e) {
+      return new RangeRequest.Full();
+    }
+  }
+}
@@ -58,6 +58,23 @@ public class HttpResponseWriter {
     }
   }
 
+  public void writeOkResponse(
+      HttpServletResponse response,
+      byte[] respJson,
+      HttpStatus httpStatusCode
+  ) {
+    response.setContentType("application/json");
+    response.setContentLength(respJson.length);
+    response.setStatus(httpStatusCode.value());
+
+    try {
+      response.getOutputStream().write(respJson);
+      response.getOutputStream().flush();
+    } catch (Exception e) {
+      log.error("Failed to write response. Reason: ", e);
+    }
+  }
+
   public void writeIdResponse(
       HttpServletResponse response,
       String id,
@@ -1,9 +1,12 @@
 package com.akiramenai.backend.utility;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.extern.slf4j.Slf4j;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Optional;
 
 @Slf4j
@@ -24,4 +27,9 @@ public class JsonSerializer {
       return Optional.empty();
     }
   }
+
+  // For responses that are written piece by piece instead of being serialized into a String first
+  public JsonGenerator createGenerator(OutputStream out) throws IOException {
+    return mapper.createGenerator(out);
+  }
 }
@@ -0,0 +1,59 @@
+package com.akiramenai.backend.utility;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Fails the read that goes past `maxBytes`, so a streamed upload can't write more than it's allowed to
+public class SizeLimitedInputStream extends FilterInputStream {
+  public static class SizeLimitExceededException extends IOException {
+    public SizeLimitExceededException(long maxBytes) {
+      super("Uploaded file is larger than " + maxBytes + " bytes.");
+    }
+  }
+
+  private final long maxBytes;
+  private long readBytes = 0;
+
+  public SizeLimitedInputStream(InputStream in, long maxBytes) {
+    super(in);
+    this.maxBytes = maxBytes;
+  }
+
+  @Override
+  public int read() throws IOException {
+    int b = super.read();
+    if (b != -1) {
+      count(1);
+    }
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    int n = super.read(buffer, offset, length);
+    if (n > 0) {
+      count(n);
+    }
+    return n;
+  }
+
+  @Override
+  public long skip(long n) throws IOException {
+    long skipped = super.skip(n);
+    count(skipped);
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  private void count(long n) throws SizeLimitExceededException {
+    readBytes += n;
+    if (readBytes > maxBytes) {
+      throw new SizeLimitExceededException(maxBytes);
+    }
+  }
+}
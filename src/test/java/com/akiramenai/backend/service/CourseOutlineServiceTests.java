@@ -0,0 +1,77 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.*;
+import com.akiramenai.backend.repo.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CourseOutlineServiceTests {
+  @Mock
+  private CourseRepo courseRepo;
+
+  @Mock
+  private QuizRepo quizRepo;
+
+  @Mock
+  private VideoMetadataRepo videoMetadataRepo;
+
+  @Mock
+  private CodingTestRepo codingTestRepo;
+
+  @Mock
+  private TerminalTestRepo terminalTestRepo;
+
+  @Mock
+  private CompletedCourseItemsRepo completedCourseItemsRepo;
+
+  @InjectMocks
+  private CourseOutlineService courseOutlineService;
+
+  @Test
+  void itemsAreFetchedWithOneQueryPerTypeAndKeepTheCourseOrder() {
+    UUID learnerId = UUID.randomUUID();
+    UUID courseId = UUID.randomUUID();
+
+    List<String> itemIds = new ArrayList<>();
+    List<Quiz> quizzes = new ArrayList<>();
+    List<CodingTest> codingTests = new ArrayList<>();
+    for (int i = 0; i < 30; i++) {
+      Quiz quiz = Quiz.builder().itemId("QZ_" + UUID.randomUUID()).courseId(courseId).build();
+      CodingTest codingTest = CodingTest.builder().itemId("CT_" + UUID.randomUUID()).courseId(courseId).build();
+      quizzes.add(quiz);
+      codingTests.add(codingTest);
+      itemIds.add(quiz.getItemId());
+      itemIds.add(codingTest.getItemId());
+    }
+
+    when(courseRepo.findCourseById(courseId))
+        .thenReturn(Optional.of(Course.builder().id(courseId).courseItemIds(itemIds).build()));
+    when(quizRepo.findAllByItemIdIn(anyCollection())).thenReturn(quizzes.reversed());
+    when(codingTestRepo.findAllByItemIdIn(anyCollection())).thenReturn(codingTests);
+    when(completedCourseItemsRepo.findCompletedItemIds(learnerId, courseId))
+        .thenReturn(List.of(quizzes.get(0).getItemId()));
+
+    List<CourseOutlineService.OutlineItem> outline = courseOutlineService.getOutline(learnerId, courseId).result();
+
+    verify(quizRepo, times(1)).findAllByItemIdIn(anyCollection());
+    verify(codingTestRepo, times(1)).findAllByItemIdIn(anyCollection());
+    verifyNoInteractions(videoMetadataRepo, terminalTestRepo);
+
+    assertThat(outline).extracting(CourseOutlineService.OutlineItem::itemId).containsExactlyElementsOf(itemIds);
+    assertThat(((CleanedQuiz) outline.get(0).item()).isCompleted()).isTrue();
+    assertThat(((CleanedQuiz) outline.get(2).item()).isCompleted()).isFalse();
+  }
+}
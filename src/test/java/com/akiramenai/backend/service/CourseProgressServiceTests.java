@@ -0,0 +1,99 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.CleanedCourseProgress;
+import com.akiramenai.backend.model.CourseItemCount;
+import com.akiramenai.backend.model.CourseItems;
+import com.akiramenai.backend.model.CourseProgress;
+import com.akiramenai.backend.repo.CompletedCourseItemsRepo;
+import com.akiramenai.backend.repo.CourseProgressRepo;
+import com.akiramenai.backend.repo.CourseRepo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CourseProgressServiceTests {
+  @Mock
+  private CourseProgressRepo courseProgressRepo;
+
+  @Mock
+  private CompletedCourseItemsRepo completedCourseItemsRepo;
+
+  @Mock
+  private CourseRepo courseRepo;
+
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private CourseProgressService courseProgressService;
+
+  @BeforeEach
+  void setUp() {
+    lenient().when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+    courseProgressService = new CourseProgressService(
+        courseProgressRepo,
+        completedCourseItemsRepo,
+        courseRepo,
+        new TransactionTemplate(transactionManager),
+        null
+    );
+  }
+
+  @Test
+  void aCompletionIsCountedOnlyTheFirstTime() {
+    UUID learnerId = UUID.randomUUID();
+    UUID courseId = UUID.randomUUID();
+    String itemId = "QZ_" + UUID.randomUUID();
+    when(completedCourseItemsRepo.addIfAbsent(eq(learnerId), eq(courseId), eq(itemId), anyInt(), any()))
+        .thenReturn(1)
+        .thenReturn(0);
+
+    assertThat(courseProgressService.recordCompletion(learnerId, courseId, itemId, CourseItems.Quiz)).isTrue();
+    assertThat(courseProgressService.recordCompletion(learnerId, courseId, itemId, CourseItems.Quiz)).isFalse();
+
+    verify(courseProgressRepo, times(1)).addCompletedItem(eq(learnerId), eq(courseId), eq(itemId), any());
+  }
+
+  @Test
+  void theTotalIsCountedFromTheCurrentItems() {
+    UUID learnerId = UUID.randomUUID();
+    UUID courseId = UUID.randomUUID();
+    UUID emptyCourseId = UUID.randomUUID();
+    when(courseProgressRepo.findAllByLearnerIdOrderByLastActivityDesc(learnerId)).thenReturn(List.of(
+        progress(learnerId, courseId, 3),
+        progress(learnerId, emptyCourseId, 0)
+    ));
+    when(courseRepo.countItemsByCourseIdIn(anyCollection()))
+        .thenReturn(List.of(new CourseItemCount(courseId, 12)));
+
+    List<CleanedCourseProgress> result = courseProgressService.getLearnerProgress(learnerId);
+
+    assertThat(result.get(0).totalCount()).isEqualTo(12);
+    assertThat(result.get(0).completionPercentage()).isEqualTo(25.0);
+    assertThat(result.get(1).totalCount()).isZero();
+    assertThat(result.get(1).completionPercentage()).isZero();
+  }
+
+  private static CourseProgress progress(UUID learnerId, UUID courseId, long completedCount) {
+    return CourseProgress
+        .builder()
+        .learnerId(learnerId)
+        .courseId(courseId)
+        .completedCount(completedCount)
+        .lastActivity(LocalDateTime.now())
+        .build();
+  }
+}
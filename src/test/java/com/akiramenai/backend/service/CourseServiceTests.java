@@ -0,0 +1,164 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.BackendOperationErrors;
+import com.akiramenai.backend.model.CleanedCourse;
+import com.akiramenai.backend.model.CourseCollectionEntry;
+import com.akiramenai.backend.model.CourseCursor;
+import com.akiramenai.backend.model.CursorPaginatedCourses;
+import com.akiramenai.backend.model.PaginatedCourses;
+import com.akiramenai.backend.model.Purchase;
+import com.akiramenai.backend.repo.CourseRepo;
+import com.akiramenai.backend.repo.PurchaseRepo;
+import com.akiramenai.backend.utility.CursorCodec;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CourseServiceTests {
+  @Mock
+  private CourseRepo courseRepo;
+
+  @Mock
+  private PurchaseRepo purchaseRepo;
+
+  @InjectMocks
+  private CourseService courseService;
+
+  @ParameterizedTest
+  @ValueSource(ints = {1, 10, 100})
+  void learnerCoursesAreFetchedWithOneQueryPerTableInPurchaseOrder(int pageSize) {
+    UUID buyerId = UUID.randomUUID();
+    Pageable pageable = PageRequest.of(0, pageSize, Sort.by(Sort.Direction.DESC, "purchaseTimestamp"));
+
+    List<Purchase> purchases = new ArrayList<>();
+    List<CleanedCourse> courses = new ArrayList<>();
+    for (int i = 0; i < pageSize; i++) {
+      UUID courseId = UUID.randomUUID();
+      purchases.add(Purchase.builder().courseId(courseId).buyerId(buyerId).build());
+      courses.add(cleanedCourse(courseId));
+    }
+    // the database doesn't return the rows in any particular order
+    Collections.shuffle(courses);
+
+    when(purchaseRepo.findPurchaseByBuyerId(eq(buyerId), any(Pageable.class)))
+        .thenReturn(new PageImpl<>(purchases, pageable, pageSize));
+    when(courseRepo.findCleanedCoursesByIdIn(anyCollection())).thenReturn(courses);
+
+    PaginatedCourses<CleanedCourse> result = courseService.getLearnerCoursesPaginated(
+        buyerId.toString(), pageSize, 0, Sort.Direction.DESC
+    );
+
+    verify(courseRepo, times(1)).findCleanedCoursesByIdIn(anyCollection());
+    verify(courseRepo, times(1)).findTagsByCourseIdIn(anyCollection());
+    verify(courseRepo, times(1)).findItemIdsByCourseIdIn(anyCollection());
+    verify(courseRepo, never()).findCourseById(any());
+    verifyNoMoreInteractions(courseRepo);
+
+    assertThat(result.retrievedCourseCount()).isEqualTo(pageSize);
+    assertThat(result.retrievedCourses())
+        .extracting(CleanedCourse::id)
+        .containsExactlyElementsOf(purchases.stream().map(Purchase::getCourseId).toList());
+  }
+
+  @Test
+  void cursorPagesSkipTheCountQueryAndPointPastTheirLastCourse() {
+    int pageSize = 3;
+    List<CleanedCourse> courses = new ArrayList<>();
+    for (int i = 0; i <= pageSize; i++) {
+      courses.add(cleanedCourse(UUID.randomUUID()));
+    }
+    when(courseRepo.findFirstPublishedCoursesAsc(any(Pageable.class))).thenReturn(courses);
+
+    CursorPaginatedCourses<CleanedCourse> firstPage = courseService
+        .getAllCoursesAfterCursor("", pageSize, Sort.Direction.ASC, false)
+        .result();
+
+    verify(courseRepo, never()).countByIsPublishedAndIsHidden(any(), any());
+    assertThat(firstPage.retrievedCourseCount()).isEqualTo(pageSize);
+    assertThat(firstPage.totalCourseCount()).isNull();
+
+    CleanedCourse lastCourse = courses.get(pageSize - 1);
+    assertThat(CursorCodec.decode(firstPage.nextCursor()))
+        .contains(new CourseCursor(LocalDateTime.parse(lastCourse.createdAt()), lastCourse.id()));
+  }
+
+  @Test
+  void cursorPageSizesAreCappedAndMustBePositive() {
+    when(courseRepo.findFirstPublishedCoursesAsc(any(Pageable.class))).thenReturn(List.of());
+
+    CursorPaginatedCourses<CleanedCourse> hugePage = courseService
+        .getAllCoursesAfterCursor("", Integer.MAX_VALUE, Sort.Direction.ASC, false)
+        .result();
+
+    ArgumentCaptor<Pageable> limit = ArgumentCaptor.forClass(Pageable.class);
+    verify(courseRepo).findFirstPublishedCoursesAsc(limit.capture());
+    assertThat(limit.getValue().getPageSize()).isEqualTo(CourseService.MAX_CURSOR_PAGE_SIZE + 1);
+    assertThat(hugePage.pageSize()).isEqualTo(CourseService.MAX_CURSOR_PAGE_SIZE);
+
+    assertThat(courseService.getAllCoursesAfterCursor("", 0, Sort.Direction.ASC, false).errorType())
+        .isEqualTo(BackendOperationErrors.InvalidRequest);
+  }
+
+  @Test
+  void catalogPagesGetTheTagsAndItemsOfEachCourseInOrder() {
+    CleanedCourse first = cleanedCourse(UUID.randomUUID());
+    CleanedCourse second = cleanedCourse(UUID.randomUUID());
+    when(courseRepo.findFirstPublishedCoursesAsc(any(Pageable.class))).thenReturn(List.of(first, second));
+    when(courseRepo.findTagsByCourseIdIn(anyCollection())).thenReturn(List.of(
+        new CourseCollectionEntry(first.id(), "java"),
+        new CourseCollectionEntry(first.id(), "spring")
+    ));
+    when(courseRepo.findItemIdsByCourseIdIn(anyCollection())).thenReturn(List.of(
+        new CourseCollectionEntry(second.id(), "QZ_1"),
+        new CourseCollectionEntry(second.id(), "VM_2")
+    ));
+
+    List<CleanedCourse> page = courseService
+        .getAllCoursesAfterCursor("", 10, Sort.Direction.ASC, false)
+        .result()
+        .retrievedCourses();
+
+    assertThat(page.get(0).tags()).containsExactly("java", "spring");
+    assertThat(page.get(0).courseItemIds()).isEmpty();
+    assertThat(page.get(1).tags()).isEmpty();
+    assertThat(page.get(1).courseItemIds()).containsExactly("QZ_1", "VM_2");
+  }
+
+  private static CleanedCourse cleanedCourse(UUID courseId) {
+    return new CleanedCourse(
+        courseId,
+        UUID.randomUUID(),
+        "instructor",
+        "title",
+        "description",
+        null,
+        10.0,
+        0L,
+        0L,
+        LocalDateTime.now(),
+        LocalDateTime.now()
+    );
+  }
+}
@@ -0,0 +1,105 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.model.CourseSearchResults;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LocalCourseSearchIndexTests {
+  private final LocalCourseSearchIndex index = new LocalCourseSearchIndex();
+
+  private final UUID springCourseId = UUID.randomUUID();
+  private final UUID kotlinCourseId = UUID.randomUUID();
+
+  @BeforeEach
+  void addCourses() {
+    index.upsert(springCourseId, Map.of(
+        "id", springCourseId.toString(),
+        "title", "Spring Boot for beginners",
+        "description", "Build REST APIs with Java",
+        "tags", List.of("java", "backend"),
+        "instructor", "Amanda",
+        "createdAt", "2025-09-15T22:55:31.859383"
+    ));
+    index.upsert(kotlinCourseId, Map.of(
+        "id", kotlinCourseId.toString(),
+        "title", "Kotlin coroutines",
+        "description", "Concurrency on the JVM, compared with Java threads",
+        "tags", List.of("kotlin"),
+        "instructor", "johnny",
+        "createdAt", "2025-09-16T22:55:31.859383"
+    ));
+  }
+
+  private List<Object> idsOf(CourseSearchResults results) {
+    return results.hits().stream().map(hit -> hit.get("id")).toList();
+  }
+
+  @Test
+  void matchesInTheTagsRankAboveMatchesInTheDescription() {
+    CourseSearchResults results = index.search("java", 1, 10);
+
+    assertThat(idsOf(results)).containsExactly(springCourseId.toString(), kotlinCourseId.toString());
+  }
+
+  @Test
+  void theLastQueryWordMatchesAsAPrefix() {
+    assertThat(idsOf(index.search("corout", 1, 10))).containsExactly(kotlinCourseId.toString());
+  }
+
+  @Test
+  void longerWordsAreMatchedWithTypos() {
+    assertThat(idsOf(index.search("begginers", 1, 10))).containsExactly(springCourseId.toString());
+    assertThat(idsOf(index.search("ktolin", 1, 10))).isEmpty();
+  }
+
+  @Test
+  void updatesReplaceTheIndexedTermsAndRemovalsDropTheCourse() {
+    index.upsert(springCourseId, Map.of("title", "Quarkus for beginners"));
+
+    assertThat(idsOf(index.search("spring", 1, 10))).isEmpty();
+    assertThat(idsOf(index.search("quarkus", 1, 10))).containsExactly(springCourseId.toString());
+    assertThat(index.search("quarkus", 1, 10).hits().get(0).get("instructor")).isEqualTo("Amanda");
+
+    index.remove(springCourseId);
+    assertThat(idsOf(index.search("", 1, 10))).containsExactly(kotlinCourseId.toString());
+  }
+
+  @Test
+  void theStartupLoadFillsInTheFieldsAChangeLeftOut() {
+    UUID goCourseId = UUID.randomUUID();
+    index.upsert(goCourseId, Map.of("id", goCourseId.toString(), "title", "Go in practice"));
+
+    index.addIfAbsent(goCourseId, Map.of(
+        "id", goCourseId.toString(),
+        "title", "Go for beginners",
+        "instructor", "Rob"
+    ));
+
+    assertThat(idsOf(index.search("rob", 1, 10))).containsExactly(goCourseId.toString());
+    assertThat(idsOf(index.search("practice", 1, 10))).containsExactly(goCourseId.toString());
+    assertThat(idsOf(index.search("beginners", 1, 10))).doesNotContain(goCourseId.toString());
+  }
+
+  @Test
+  void theStartupLoadDoesntAddBackACourseRemovedMeanwhile() {
+    index.remove(kotlinCourseId);
+    index.addIfAbsent(kotlinCourseId, Map.of("id", kotlinCourseId.toString(), "title", "Kotlin coroutines"));
+
+    assertThat(idsOf(index.search("kotlin", 1, 10))).isEmpty();
+  }
+
+  @Test
+  void resultsArePaginated() {
+    CourseSearchResults secondPage = index.search("", 2, 1);
+
+    assertThat(secondPage.totalHits()).isEqualTo(2);
+    assertThat(secondPage.totalPages()).isEqualTo(2);
+    assertThat(idsOf(secondPage)).containsExactly(springCourseId.toString());
+  }
+}
@@ -0,0 +1,73 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.repo.UserRepo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LoginActivityTrackerTests {
+  @Mock
+  private LoginActivityService loginActivityService;
+
+  @Mock
+  private UserRepo userRepo;
+
+  private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+  private LoginActivityTracker loginActivityTracker;
+
+  @BeforeEach
+  void createTracker() {
+    loginActivityTracker = new LoginActivityTracker(loginActivityService, userRepo, meterRegistry);
+  }
+
+  @Test
+  void everyDayAUserWasSeenOnIsFlushedOldestFirst() {
+    ReflectionTestUtils.setField(loginActivityTracker, "maxTrackedUsers", 100);
+    UUID userId = UUID.randomUUID();
+    LocalDate today = LocalDate.of(2025, 3, 10);
+
+    loginActivityTracker.recordActivity(userId, today.minusDays(1));
+    loginActivityTracker.recordActivity(userId, today);
+    loginActivityTracker.flush();
+
+    InOrder inOrder = inOrder(loginActivityService);
+    inOrder.verify(loginActivityService).addLoginActivities(any(), eq(today.minusDays(1)));
+    inOrder.verify(loginActivityService).addLoginActivities(any(), eq(today));
+  }
+
+  @Test
+  void marksArentKeptPastTheBoundWhileTheDbIsDown() {
+    ReflectionTestUtils.setField(loginActivityTracker, "maxTrackedUsers", 4);
+    // a failed flush doesn't start early flushes until a scheduled one succeeds
+    ReflectionTestUtils.setField(loginActivityTracker, "lastFlushFailed", true);
+    LocalDate today = LocalDate.of(2025, 3, 10);
+
+    for (int i = 0; i < 6; i++) {
+      loginActivityTracker.recordActivity(UUID.randomUUID(), today);
+    }
+
+    // nothing was written on the calling thread
+    verifyNoInteractions(userRepo, loginActivityService);
+    assertThat(meterRegistry.counter("activity.tracker.dropped").count()).isEqualTo(2.0);
+
+    when(userRepo.findAllById(any())).thenReturn(List.of());
+    loginActivityTracker.flush();
+    verify(userRepo).findAllById(argThat(userIds -> ((List<?>) userIds).size() == 4));
+  }
+}
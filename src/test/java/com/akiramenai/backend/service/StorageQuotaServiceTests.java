@@ -0,0 +1,69 @@
+package com.akiramenai.backend.service;
+
+import com.akiramenai.backend.repo.UserRepo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StorageQuotaServiceTests {
+  @Mock
+  private UserRepo userRepo;
+
+  @InjectMocks
+  private StorageQuotaService storageQuotaService;
+
+  @Test
+  void reservationsGoStraightToTheDatabaseByDefault() {
+    UUID userId = UUID.randomUUID();
+    when(userRepo.reserveUsedStorage(userId, 100)).thenReturn(1);
+    when(userRepo.reserveUsedStorage(userId, 200)).thenReturn(0);
+
+    assertThat(storageQuotaService.reserve(userId, 100)).isTrue();
+    assertThat(storageQuotaService.reserve(userId, 200)).isFalse();
+  }
+
+  @Test
+  void burstsAreServedFromTheReservedChunk() {
+    ReflectionTestUtils.setField(storageQuotaService, "reservationChunkBytes", 1000L);
+    UUID userId = UUID.randomUUID();
+    when(userRepo.reserveUsedStorage(userId, 1000)).thenReturn(1);
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(storageQuotaService.reserve(userId, 100)).isTrue();
+    }
+
+    verify(userRepo, times(1)).reserveUsedStorage(eq(userId), anyLong());
+  }
+
+  @Test
+  void fallsBackToTheExactSizeWhenAChunkDoesNotFit() {
+    ReflectionTestUtils.setField(storageQuotaService, "reservationChunkBytes", 1000L);
+    UUID userId = UUID.randomUUID();
+    when(userRepo.reserveUsedStorage(userId, 1000)).thenReturn(0);
+    when(userRepo.reserveUsedStorage(userId, 100)).thenReturn(1);
+
+    assertThat(storageQuotaService.reserve(userId, 100)).isTrue();
+  }
+
+  @Test
+  void unusedPartsOfAChunkAreGivenBack() {
+    ReflectionTestUtils.setField(storageQuotaService, "reservationChunkBytes", 1000L);
+    UUID userId = UUID.randomUUID();
+    when(userRepo.reserveUsedStorage(userId, 1000)).thenReturn(1);
+
+    storageQuotaService.reserve(userId, 100);
+    storageQuotaService.returnLeasesOnShutdown();
+
+    verify(userRepo).releaseUsedStorage(userId, 900);
+  }
+}
@@ -0,0 +1,62 @@
+package com.akiramenai.backend.utility;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ActivityBitmapTests {
+
+  @Test
+  void slotsSkipTheLeapDayInNonLeapYears() {
+    assertThat(ActivityBitmap.slotOf(LocalDate.of(2025, 2, 28))).isEqualTo(59);
+    assertThat(ActivityBitmap.slotOf(LocalDate.of(2025, 3, 1))).isEqualTo(61);
+    assertThat(ActivityBitmap.slotOf(LocalDate.of(2024, 2, 29))).isEqualTo(60);
+    assertThat(ActivityBitmap.slotOf(LocalDate.of(2025, 12, 31))).isEqualTo(366);
+  }
+
+  @Test
+  void setBitsAreCountedAndExpanded() {
+    byte[] bits = ActivityBitmap.empty();
+    ActivityBitmap.set(bits, 59);
+    ActivityBitmap.set(bits, 61);
+    ActivityBitmap.set(bits, 366);
+
+    assertThat(bits).hasSize(ActivityBitmap.BYTE_LENGTH);
+    assertThat(ActivityBitmap.countSet(bits, 1, ActivityBitmap.SLOT_COUNT)).isEqualTo(3);
+    assertThat(ActivityBitmap.countSet(bits, 60, 62)).isEqualTo(1);
+    assertThat(ActivityBitmap.toActivityList(bits, 59, 62, false)).containsExactly(1, -1, 1);
+    assertThat(ActivityBitmap.toActivityList(bits, 59, 62, true)).containsExactly(1, 0, 1);
+  }
+
+  @Test
+  void streakSkipsTheLeapDayInNonLeapYears() {
+    byte[] bits = ActivityBitmap.empty();
+    ActivityBitmap.set(bits, 58);
+    ActivityBitmap.set(bits, 59);
+    ActivityBitmap.set(bits, 61);
+
+    assertThat(ActivityBitmap.trailingStreak(bits, 61, false)).isEqualTo(3);
+    assertThat(ActivityBitmap.trailingStreak(bits, 61, true)).isEqualTo(1);
+    assertThat(ActivityBitmap.trailingStreak(bits, 62, false)).isZero();
+  }
+
+  @Test
+  void legacyArraysAreConverted() {
+    List<Integer> legacy = new ArrayList<>(Collections.nCopies(367, 0));
+    legacy.set(60, -1);
+    legacy.set(1, 1);
+    legacy.set(100, 1);
+
+    byte[] bits = ActivityBitmap.fromLegacy(legacy);
+
+    assertThat(ActivityBitmap.isSet(bits, 1)).isTrue();
+    assertThat(ActivityBitmap.isSet(bits, 60)).isFalse();
+    assertThat(ActivityBitmap.isSet(bits, 100)).isTrue();
+    assertThat(ActivityBitmap.countSet(bits, 0, ActivityBitmap.SLOT_COUNT)).isEqualTo(2);
+  }
+}
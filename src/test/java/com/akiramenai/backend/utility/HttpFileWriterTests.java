@@ -0,0 +1,36 @@
+package com.akiramenai.backend.utility;
+
+import com.akiramenai.backend.utility.HttpFileWriter.ByteRange;
+import com.akiramenai.backend.utility.HttpFileWriter.RangeRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpFileWriterTests {
+  @Test
+  void explicitAndOpenEndedRangesAreClampedToTheFile() {
+    assertThat(HttpFileWriter.parseRange("bytes=0-99", 1000)).isEqualTo(new RangeRequest.Partial(new ByteRange(0, 99)));
+    assertThat(HttpFileWriter.parseRange("bytes=900-", 1000)).isEqualTo(new RangeRequest.Partial(new ByteRange(900, 999)));
+    assertThat(HttpFileWriter.parseRange("bytes=900-5000", 1000)).isEqualTo(new RangeRequest.Partial(new ByteRange(900, 999)));
+  }
+
+  @Test
+  void suffixRangesSelectTheEndOfTheFile() {
+    assertThat(HttpFileWriter.parseRange("bytes=-100", 1000)).isEqualTo(new RangeRequest.Partial(new ByteRange(900, 999)));
+    assertThat(HttpFileWriter.parseRange("bytes=-5000", 1000)).isEqualTo(new RangeRequest.Partial(new ByteRange(0, 999)));
+  }
+
+  @Test
+  void rangesPastTheEndAreUnsatisfiable() {
+    assertThat(HttpFileWriter.parseRange("bytes=1000-", 1000)).isEqualTo(new RangeRequest.Unsatisfiable());
+    assertThat(HttpFileWriter.parseRange("bytes=-0", 1000)).isEqualTo(new RangeRequest.Unsatisfiable());
+  }
+
+  @Test
+  void malformedAndMultipleRangesFallBackToTheWholeFile() {
+    assertThat(HttpFileWriter.parseRange("bytes=abc-", 1000)).isEqualTo(new RangeRequest.Full());
+    assertThat(HttpFileWriter.parseRange("bytes=50-10", 1000)).isEqualTo(new RangeRequest.Full());
+    assertThat(HttpFileWriter.parseRange("bytes=0-1,5-6", 1000)).isEqualTo(new RangeRequest.Full());
+    assertThat(HttpFileWriter.parseRange("items=0-1", 1000)).isEqualTo(new RangeRequest.Full());
+  }
+}